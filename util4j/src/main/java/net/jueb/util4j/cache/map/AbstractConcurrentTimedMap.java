@@ -0,0 +1,927 @@
+package net.jueb.util4j.cache.map;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jueb.util4j.cache.map.AssistTimedMap.TimeOutAssister;
+import net.jueb.util4j.cache.map.TimedMap.EventListener;
+
+/**
+ * 分段并发的生命周期map
+ * 键值对保存在ConcurrentHashMap中,读取不加锁;增删按键的hash分段加锁,只与同一段的写入互斥.
+ * 活动时间用lazySet发布,同一毫秒内的重复访问不写入.
+ * 每段有自己的过期索引(同{@link TimedMapImpl}按过期时间分桶),清理逐段进行,每次持有段锁最多处理{@link #CLEAN_BATCH}个键值对.
+ * 使用自定义超时判断({@link TimeOutAssister})的键值对无法按时间索引,放在段内单独的链表中,清理时逐个判断.
+ * 移除事件由{@link ExpireEventDispatcher}派发,清理时在段锁外提交.
+ * @author Administrator
+ * @param <K>
+ * @param <V>
+ */
+public abstract class AbstractConcurrentTimedMap<K,V> implements Map<K,V>{
+	protected Logger log=LoggerFactory.getLogger(getClass());
+
+	/**
+	 * 默认分段数量
+	 */
+	public static final int DEFAULT_CONCURRENCY_LEVEL=16;
+
+	/**
+	 * 过期索引的时间精度,毫秒
+	 */
+	public static final long EXPIRE_TICK_MILLIS=TimedMapImpl.EXPIRE_TICK_MILLIS;
+
+	/**
+	 * 清理时每次持有段锁最多处理的键值对数量
+	 */
+	public static final int CLEAN_BATCH=TimedMapImpl.CLEAN_BATCH;
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicLongFieldUpdater<Node> LAST_ACTIVE_TIME=AtomicLongFieldUpdater.newUpdater(Node.class, "lastActiveTime");
+
+	private volatile ExpireEventDispatcher<K,V> eventDispatcher;
+	private final ConcurrentHashMap<K,Node<K,V>> entryMap;
+	private final Segment<K,V>[] segments;
+	private final int segmentMask;
+	private volatile boolean iteratorUpdate;//对map集合进行迭代时,是否刷新时间
+
+	/**
+	 * @param lisenterExecutor 指定处理超时监听的executor
+	 * @param iteratorUpdate 是否在迭代的时候也更新ttl
+	 * @param concurrencyLevel 分段数量,向上取2的幂
+	 */
+	protected AbstractConcurrentTimedMap(Executor lisenterExecutor,boolean iteratorUpdate,int concurrencyLevel) {
+		this(new ExpireEventDispatcher<K,V>(lisenterExecutor), iteratorUpdate, concurrencyLevel);
+	}
+
+	/**
+	 * @param eventDispatcher 移除事件派发
+	 * @param iteratorUpdate 是否在迭代的时候也更新ttl
+	 * @param concurrencyLevel 分段数量,向上取2的幂
+	 */
+	@SuppressWarnings({"unchecked","rawtypes"})
+	protected AbstractConcurrentTimedMap(ExpireEventDispatcher<K,V> eventDispatcher,boolean iteratorUpdate,int concurrencyLevel) {
+		Objects.requireNonNull(eventDispatcher);
+		if(concurrencyLevel<=0)
+		{
+			throw new IllegalArgumentException("concurrencyLevel:"+concurrencyLevel);
+		}
+		this.eventDispatcher=eventDispatcher;
+		this.iteratorUpdate=iteratorUpdate;
+		int size=1;
+		while(size<concurrencyLevel && size<(1<<16))
+		{
+			size<<=1;
+		}
+		this.segments=new Segment[size];
+		for(int i=0;i<size;i++)
+		{
+			segments[i]=new Segment<>();
+		}
+		this.segmentMask=size-1;
+		this.entryMap=new ConcurrentHashMap<>(16, 0.75f, size);
+	}
+
+	/**
+	 * 键值对
+	 * 索引字段只在所属段的锁内访问
+	 */
+	static final class Node<K,V> implements Entry<K, V>{
+		final K key;
+		volatile V value;
+		final long createTime=System.currentTimeMillis();
+		volatile long lastActiveTime=createTime;
+		volatile long ttl;
+		final TimeOutAssister<K,V> assister;
+		volatile EventListener<K,V> listener;
+
+		Bucket<K,V> bucket;
+		Node<K,V> prev;
+		Node<K,V> next;
+
+		Node(K key, V value, long ttl, TimeOutAssister<K, V> assister, EventListener<K, V> listener) {
+			this.key = key;
+			this.value = value;
+			this.ttl = ttl;
+			this.assister = assister;
+			this.listener = listener;
+		}
+
+		boolean isTimeOut(long now)
+		{
+			if(assister!=null)
+			{
+				return assister.isTimeOut(key, value, createTime, lastActiveTime);
+			}
+			long t=ttl;
+			return t>0 && now>=lastActiveTime+t;
+		}
+
+		/**
+		 * 刷新活动时间,不需要立即可见
+		 * @param now
+		 */
+		void touch(long now)
+		{
+			if(lastActiveTime!=now)
+			{
+				LAST_ACTIVE_TIME.lazySet(this, now);
+			}
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+		@Override
+		public V getValue() {
+			return value;
+		}
+
+		@Override
+		public V setValue(V value) {
+			this.value = value;
+			return value;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry))
+			{
+				return false;
+			}
+			Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+			return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(key) ^ Objects.hashCode(value);
+		}
+
+		@Override
+		public String toString() {
+			return "Node [createTime=" + createTime + ", lastActiveTime=" + lastActiveTime + ", ttl=" + ttl
+					+ ", key=" + key + ", value=" + value + "]";
+		}
+	}
+
+	/**
+	 * 过期桶,桶内键值对组成双向链表
+	 */
+	static final class Bucket<K,V>{
+		final long tick;
+		Node<K,V> head;
+
+		Bucket(long tick) {
+			this.tick = tick;
+		}
+
+		void link(Node<K,V> node)
+		{
+			node.bucket=this;
+			node.prev=null;
+			node.next=head;
+			if(head!=null)
+			{
+				head.prev=node;
+			}
+			head=node;
+		}
+
+		void unlink(Node<K,V> node)
+		{
+			if(node.prev!=null)
+			{
+				node.prev.next=node.next;
+			}else
+			{
+				head=node.next;
+			}
+			if(node.next!=null)
+			{
+				node.next.prev=node.prev;
+			}
+			node.bucket=null;
+			node.prev=null;
+			node.next=null;
+		}
+	}
+
+	/**
+	 * 分段,锁住同一段键的增删和过期索引
+	 */
+	@SuppressWarnings("serial")
+	static final class Segment<K,V> extends ReentrantLock{
+		/**
+		 * 过期时间/EXPIRE_TICK_MILLIS->桶
+		 */
+		final TreeMap<Long,Bucket<K,V>> expireIndex=new TreeMap<>();
+
+		/**
+		 * 自定义超时判断的键值对
+		 */
+		final Bucket<K,V> assisted=new Bucket<>(-1);
+
+		void index(Node<K,V> node)
+		{
+			if(node.assister!=null)
+			{
+				assisted.link(node);
+				return;
+			}
+			long ttl=node.ttl;
+			if(ttl<=0)
+			{
+				return;
+			}
+			long tick=(node.lastActiveTime+ttl)/EXPIRE_TICK_MILLIS;
+			Bucket<K,V> bucket=expireIndex.get(tick);
+			if(bucket==null)
+			{
+				bucket=new Bucket<>(tick);
+				expireIndex.put(tick, bucket);
+			}
+			bucket.link(node);
+		}
+
+		void unindex(Node<K,V> node)
+		{
+			Bucket<K,V> bucket=node.bucket;
+			if(bucket==null)
+			{
+				return;
+			}
+			bucket.unlink(node);
+			if(bucket.head==null && bucket!=assisted)
+			{
+				expireIndex.remove(bucket.tick);
+			}
+		}
+	}
+
+	private Segment<K,V> segmentFor(Object key)
+	{
+		int h=key.hashCode();
+		h^=(h>>>16);
+		return segments[h & segmentMask];
+	}
+
+	/**
+	 * 通知被移除
+	 * @param node
+	 * @param expire 是否超时才执行的移除
+	 */
+	private void fireRemoved(Node<K,V> node,boolean expire)
+	{
+		EventListener<K, V> listener=node.listener;
+		node.listener=null;
+		if(listener!=null)
+		{
+			eventDispatcher.dispatch(listener, node, expire);
+		}
+	}
+
+	/**
+	 * 清理时收集到批次,段锁释放后提交
+	 * @param node
+	 * @param events
+	 */
+	private void fireRemoved(Node<K,V> node,ExpireEventDispatcher<K,V>.Batch events)
+	{
+		EventListener<K, V> listener=node.listener;
+		node.listener=null;
+		if(listener!=null)
+		{
+			events.add(listener, node);
+		}
+	}
+
+	/**
+	 * 存放键值对
+	 * @param key
+	 * @param value
+	 * @param ttl 生命周期 <=0 永不过期,>0 过期时间,assister不为null时无效
+	 * @param assister 自定义超时判断
+	 * @param listener 移除监听器
+	 * @return
+	 */
+	protected V putNode(K key, V value, long ttl,TimeOutAssister<K, V> assister,EventListener<K, V> listener) {
+		if (key == null || value == null) throw new NullPointerException();
+		Node<K,V> node=new Node<>(key, value, ttl, assister, listener);
+		Segment<K,V> seg=segmentFor(key);
+		seg.lock();
+		try {
+			Node<K,V> old=entryMap.put(key, node);
+			if(old!=null)
+			{
+				seg.unindex(old);
+			}
+			seg.index(node);
+		}finally {
+			seg.unlock();
+		}
+		return value;
+	}
+
+	/**
+	 * 移除指定键值对,已被替换或移除时忽略
+	 * @param node
+	 * @param expire
+	 * @return
+	 */
+	private boolean removeNode(Node<K,V> node,boolean expire)
+	{
+		Segment<K,V> seg=segmentFor(node.key);
+		seg.lock();
+		try {
+			if(entryMap.get(node.key)!=node)
+			{
+				return false;
+			}
+			entryMap.remove(node.key);
+			seg.unindex(node);
+		}finally {
+			seg.unlock();
+		}
+		fireRemoved(node, expire);
+		return true;
+	}
+
+	/**
+	 * 获取未过期的键值对,过期的移除
+	 * @param key
+	 * @param now
+	 * @return
+	 */
+	private Node<K,V> getNode(Object key,long now)
+	{
+		if(key==null)
+		{
+			return null;
+		}
+		Node<K,V> node=entryMap.get(key);
+		if(node!=null && node.isTimeOut(now))
+		{
+			removeNode(node, true);
+			return null;
+		}
+		return node;
+	}
+
+	@Override
+	public V get(Object key) {
+		long now=System.currentTimeMillis();
+		Node<K,V> node=getNode(key, now);
+		if(node==null)
+		{
+			return null;
+		}
+		node.touch(now);
+		return node.value;
+	}
+
+	public V getBy(K key) {
+		return get(key);
+	}
+
+	@Override
+	public V remove(Object key) {
+		if(key==null)
+		{
+			return null;
+		}
+		Node<K,V> node;
+		Segment<K,V> seg=segmentFor(key);
+		seg.lock();
+		try {
+			node=entryMap.remove(key);
+			if(node!=null)
+			{
+				seg.unindex(node);
+			}
+		}finally {
+			seg.unlock();
+		}
+		if(node==null)
+		{
+			return null;
+		}
+		fireRemoved(node, false);
+		return node.value;
+	}
+
+	public V removeBy(K key) {
+		return remove(key);
+	}
+
+	/**
+	 * 更新生命周期
+	 * @param key
+	 * @param ttl 生命周期 <=0 永不过期,>0 过期时间
+	 * @return
+	 */
+	public V updateTTL(K key, long ttl) {
+		if(key==null)
+		{
+			return null;
+		}
+		Node<K,V> expired=null;
+		V result=null;
+		Segment<K,V> seg=segmentFor(key);
+		seg.lock();
+		try {
+			Node<K,V> node=entryMap.get(key);
+			if(node!=null)
+			{
+				long now=System.currentTimeMillis();
+				if(node.isTimeOut(now))
+				{
+					entryMap.remove(key);
+					seg.unindex(node);
+					expired=node;
+				}else
+				{//过期时间可能提前,重新索引
+					seg.unindex(node);
+					node.lastActiveTime=now;
+					node.ttl=ttl;
+					seg.index(node);
+					result=node.value;
+				}
+			}
+		}finally {
+			seg.unlock();
+		}
+		if(expired!=null)
+		{
+			fireRemoved(expired, true);
+		}
+		return result;
+	}
+
+	/**
+	 * >0 剩余过期时间
+	 * =0 永不过期
+	 * <0 不存在此键,或者已经过期
+	 * @param key
+	 * @return
+	 */
+	public long getExpireTime(K key) {
+		long now=System.currentTimeMillis();
+		Node<K,V> node=getNode(key, now);
+		if(node==null)
+		{
+			return -1;
+		}
+		long ttl=node.ttl;
+		if(node.assister!=null || ttl<=0)
+		{
+			return 0;
+		}
+		return node.lastActiveTime+ttl-now;
+	}
+
+	/**
+	 * 给键值对加事件监听器
+	 * @param key
+	 * @param lisnener
+	 * @return
+	 */
+	public V setEventListener(K key, EventListener<K, V> lisnener) {
+		long now=System.currentTimeMillis();
+		Node<K,V> node=getNode(key, now);
+		if(node==null)
+		{
+			return null;
+		}
+		node.touch(now);
+		node.listener=lisnener;
+		return node.value;
+	}
+
+	transient volatile Runnable cleanTask;
+
+	/**
+	 * 获取清理超时的任务,执行后将会触发监听器执行
+	 * @return
+	 */
+	public Runnable getCleanTask()
+	{
+		if(cleanTask==null)
+		{
+			cleanTask=new CleanTask();
+		}
+		return cleanTask;
+	}
+
+	private class CleanTask implements Runnable{
+		@Override
+		public void run() {
+			try {
+				cleanExpire();
+			} catch (Throwable e) {
+				log.error(e.getMessage(),e);
+			}
+		}
+	}
+
+	/**
+	 * 逐段清理过期,返回被清理的键值对
+	 * @return
+	 */
+	public Map<K, V> cleanExpire() {
+		Map<K,V> map=new HashMap<>();
+		final long nowTick=System.currentTimeMillis()/EXPIRE_TICK_MILLIS;
+		ExpireEventDispatcher<K,V>.Batch events=eventDispatcher.newBatch(true);
+		for(Segment<K,V> seg:segments)
+		{
+			boolean more=true;
+			while(more)
+			{//分批持有段锁,批次之间写入可以进入
+				seg.lock();
+				try {
+					more=cleanBatch(seg, nowTick, map, events);
+				} catch (Exception e) {
+					log.error(e.getMessage(),e);
+					more=false;
+				}finally {
+					seg.unlock();
+				}
+				events.flush();
+			}
+			if(seg.assisted.head!=null)
+			{
+				seg.lock();
+				try {
+					cleanAssisted(seg, map, events);
+				} catch (Exception e) {
+					log.error(e.getMessage(),e);
+				}finally {
+					seg.unlock();
+				}
+				events.flush();
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * 处理一批到期的桶,调用者需持有段锁
+	 * @param seg
+	 * @param nowTick
+	 * @param removed 被清理的键值对
+	 * @param events 移除事件,释放段锁后提交
+	 * @return 是否还有未处理的到期桶
+	 */
+	private boolean cleanBatch(Segment<K,V> seg,long nowTick,Map<K,V> removed,ExpireEventDispatcher<K,V>.Batch events)
+	{
+		final long now=System.currentTimeMillis();
+		Bucket<K,V> bucket=null;
+		for(int i=0;i<CLEAN_BATCH;i++)
+		{
+			if(bucket==null || bucket.head==null)
+			{//桶取空后才查找下一个桶
+				Map.Entry<Long,Bucket<K,V>> first=seg.expireIndex.firstEntry();
+				if(first==null || first.getKey()>=nowTick)
+				{
+					return false;
+				}
+				bucket=first.getValue();
+			}
+			Node<K,V> node=bucket.head;
+			seg.unindex(node);
+			if(node.isTimeOut(now))
+			{
+				entryMap.remove(node.key);
+				removed.put(node.key, node.value);
+				fireRemoved(node, events);
+			}else
+			{//索引之后被访问过,按新的过期时间重新入桶
+				seg.index(node);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 逐个判断自定义超时的键值对,调用者需持有段锁
+	 * @param seg
+	 * @param removed
+	 * @param events
+	 */
+	private void cleanAssisted(Segment<K,V> seg,Map<K,V> removed,ExpireEventDispatcher<K,V>.Batch events)
+	{
+		final long now=System.currentTimeMillis();
+		Node<K,V> node=seg.assisted.head;
+		while(node!=null)
+		{
+			Node<K,V> next=node.next;
+			if(node.isTimeOut(now))
+			{
+				seg.unindex(node);
+				entryMap.remove(node.key);
+				removed.put(node.key, node.value);
+				fireRemoved(node, events);
+			}
+			node=next;
+		}
+	}
+
+	public ExpireEventDispatcher<K, V> getEventDispatcher() {
+		return eventDispatcher;
+	}
+
+	/**
+	 * 设置移除事件派发,之后的移除生效
+	 * @param eventDispatcher
+	 */
+	public void setEventDispatcher(ExpireEventDispatcher<K, V> eventDispatcher) {
+		Objects.requireNonNull(eventDispatcher);
+		this.eventDispatcher = eventDispatcher;
+	}
+
+	public boolean isIteratorUpdate() {
+		return iteratorUpdate;
+	}
+
+	public void setIteratorUpdate(boolean iteratorUpdate) {
+		this.iteratorUpdate = iteratorUpdate;
+	}
+
+	/**
+	 * 分段数量
+	 * @return
+	 */
+	public int getConcurrencyLevel() {
+		return segments.length;
+	}
+
+	@Override
+	public int size() {
+		return entryMap.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return entryMap.isEmpty();
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return getNode(key, System.currentTimeMillis())!=null;
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		if(value==null)
+		{
+			return false;
+		}
+		long now=System.currentTimeMillis();
+		for(Node<K,V> node:entryMap.values())
+		{
+			if(value.equals(node.value) && !node.isTimeOut(now))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void putAll(Map<? extends K, ? extends V> m) {
+		if (m == null) throw new NullPointerException();
+		for(Map.Entry<? extends K, ? extends V> e:m.entrySet())
+		{
+			if(e instanceof Node)
+			{//复制,原对象可能还在其它map的过期索引中
+				Node<K,V> src=(Node<K, V>) e;
+				putNode(src.key, src.value, src.ttl, src.assister, src.listener);
+			}else
+			{
+				putNode(e.getKey(), e.getValue(), 0, null, null);
+			}
+		}
+	}
+
+	/**
+	 * 锁住所有段后清空,不通知监听器
+	 */
+	@Override
+	public void clear() {
+		int locked=0;
+		try {
+			for(Segment<K,V> seg:segments)
+			{
+				seg.lock();
+				locked++;
+			}
+			entryMap.clear();
+			for(Segment<K,V> seg:segments)
+			{
+				seg.expireIndex.clear();
+				seg.assisted.head=null;
+			}
+		}finally {
+			for(int i=0;i<locked;i++)
+			{
+				segments[i].unlock();
+			}
+		}
+	}
+
+	/**
+	 * 弱一致性迭代,不抛出ConcurrentModificationException
+	 */
+	class EntryIterator implements Iterator<Entry<K,V>>{
+		Iterator<Node<K,V>> it=entryMap.values().iterator();
+		Node<K,V> current;
+		@Override
+		public boolean hasNext() {
+			return it.hasNext();
+		}
+		@Override
+		public Entry<K,V> next() {
+			Node<K,V> node=it.next();
+			current=node;
+			if(iteratorUpdate)
+			{
+				node.touch(System.currentTimeMillis());
+			}
+			return node;
+		}
+		@Override
+		public void remove() {
+			if(current==null)
+			{
+				throw new IllegalStateException();
+			}
+			removeNode(current, false);
+			current=null;
+		}
+	}
+
+	class KeyIterator implements Iterator<K>{
+		EntryIterator it=new EntryIterator();
+		@Override
+		public boolean hasNext() {
+			return it.hasNext();
+		}
+		@Override
+		public K next() {
+			return it.next().getKey();
+		}
+		@Override
+		public void remove() {
+			it.remove();
+		}
+	}
+
+	class ValueIterator implements Iterator<V>{
+		EntryIterator it=new EntryIterator();
+		@Override
+		public boolean hasNext() {
+			return it.hasNext();
+		}
+		@Override
+		public V next() {
+			return it.next().getValue();
+		}
+		@Override
+		public void remove() {
+			it.remove();
+		}
+	}
+
+	transient volatile Set<K>        keySet;
+	transient volatile Collection<V> values;
+	transient Set<Map.Entry<K,V>> entrySet;
+
+	class TimedKeySet extends AbstractSet<K>
+	{
+		@Override
+		public Iterator<K> iterator() {
+			return new KeyIterator();
+		}
+
+		@Override
+		public int size() {
+			return AbstractConcurrentTimedMap.this.size();
+		}
+
+		public boolean isEmpty() {
+			return AbstractConcurrentTimedMap.this.isEmpty();
+		}
+
+		public void clear() {
+			AbstractConcurrentTimedMap.this.clear();
+		}
+
+		public boolean contains(Object k) {
+			return AbstractConcurrentTimedMap.this.containsKey(k);
+		}
+	}
+
+	class TimedValues extends AbstractCollection<V>
+	{
+		@Override
+		public Iterator<V> iterator() {
+			return new ValueIterator();
+		}
+
+		@Override
+		public int size() {
+			return AbstractConcurrentTimedMap.this.size();
+		}
+
+		public boolean isEmpty() {
+			return AbstractConcurrentTimedMap.this.isEmpty();
+		}
+
+		public void clear() {
+			AbstractConcurrentTimedMap.this.clear();
+		}
+
+		public boolean contains(Object v) {
+			return AbstractConcurrentTimedMap.this.containsValue(v);
+		}
+	}
+
+	class TimedEntrySet extends AbstractSet<Entry<K,V>>
+	{
+		@Override
+		public Iterator<Entry<K,V>> iterator() {
+			return new EntryIterator();
+		}
+
+		@Override
+		public int size() {
+			return AbstractConcurrentTimedMap.this.size();
+		}
+
+		public boolean isEmpty() {
+			return AbstractConcurrentTimedMap.this.isEmpty();
+		}
+
+		public void clear() {
+			AbstractConcurrentTimedMap.this.clear();
+		}
+
+		public final boolean contains(Object o) {
+			if (!(o instanceof Map.Entry))
+				return false;
+			Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+			return AbstractConcurrentTimedMap.this.containsKey(e.getKey());
+		}
+
+		public final boolean remove(Object o) {
+			if (o instanceof Map.Entry) {
+				Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+				return AbstractConcurrentTimedMap.this.remove(e.getKey())!= null;
+			}
+			return false;
+		}
+	}
+
+	@Override
+	public Set<K> keySet() {
+		if(keySet==null)
+		{
+			keySet=new TimedKeySet();
+		}
+		return keySet;
+	}
+
+	@Override
+	public Collection<V> values() {
+		if(values==null)
+		{
+			values=new TimedValues();
+		}
+		return values;
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		if(entrySet==null)
+		{
+			entrySet=new TimedEntrySet();
+		}
+		return entrySet;
+	}
+}
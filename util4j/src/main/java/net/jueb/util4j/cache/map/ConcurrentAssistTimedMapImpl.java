@@ -0,0 +1,76 @@
+package net.jueb.util4j.cache.map;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import net.jueb.util4j.thread.NamedThreadFactory;
+
+/**
+ * 分段并发的{@link AssistTimedMap}
+ * 按毫秒超时的键值对进入过期索引,清理时只访问到期的部分;自定义{@link TimeOutAssister}的键值对清理时逐个判断.
+ * 迭代为弱一致性,迭代期间的修改不抛出异常.
+ * @author Administrator
+ * @param <K>
+ * @param <V>
+ */
+public class ConcurrentAssistTimedMapImpl<K,V> extends AbstractConcurrentTimedMap<K, V> implements AssistTimedMap<K, V>{
+
+	/**
+	 * 默认最大2个线程处理监听器
+	 * 迭代的时候也更新ttl
+	 */
+	public ConcurrentAssistTimedMapImpl(){
+		this(Executors.newFixedThreadPool(2,new NamedThreadFactory("TimedMapCleanExecutor", true)),true);
+	}
+
+	/**
+	 * @param iteratorUpdate 是否在迭代的时候也更新ttl
+	 */
+	public ConcurrentAssistTimedMapImpl(boolean iteratorUpdate){
+		this(Executors.newFixedThreadPool(2,new NamedThreadFactory("TimedMapCleanExecutor", true)), iteratorUpdate);
+	}
+
+	/**
+	 * 建议线程池固定大小,否则移除事件过多会消耗很多线程资源
+	 * @param cleanExecutor 指定处理超时监听的executor
+	 * @param iteratorUpdate 是否在迭代的时候也更新ttl
+	 */
+	public ConcurrentAssistTimedMapImpl(Executor cleanExecutor,boolean iteratorUpdate){
+		this(cleanExecutor, iteratorUpdate, DEFAULT_CONCURRENCY_LEVEL);
+	}
+
+	/**
+	 * @param cleanExecutor 指定处理超时监听的executor
+	 * @param iteratorUpdate 是否在迭代的时候也更新ttl
+	 * @param concurrencyLevel 分段数量,向上取2的幂
+	 */
+	public ConcurrentAssistTimedMapImpl(Executor cleanExecutor,boolean iteratorUpdate,int concurrencyLevel){
+		super(cleanExecutor, iteratorUpdate, concurrencyLevel);
+	}
+
+	@Override
+	public V put(K key, V value) {
+		return putNode(key, value, 0, null, null);
+	}
+
+	/**
+	 * 按毫秒超时,进入过期索引
+	 */
+	@Override
+	public V put(K key, V value, long ttlMills) {
+		return putNode(key, value, ttlMills, null, null);
+	}
+
+	/**
+	 * 按毫秒超时,进入过期索引
+	 */
+	@Override
+	public V put(K key, V value, long ttlMills, RemoveAssister<K, V> rAssister) {
+		return putNode(key, value, ttlMills, null, rAssister==null?null:rAssister::removed);
+	}
+
+	@Override
+	public V put(K key, V value, TimeOutAssister<K, V> tAssister, RemoveAssister<K, V> rAssister) {
+		return putNode(key, value, 0, tAssister, rAssister==null?null:rAssister::removed);
+	}
+}
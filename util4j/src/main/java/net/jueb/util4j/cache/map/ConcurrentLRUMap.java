@@ -0,0 +1,315 @@
+package net.jueb.util4j.cache.map;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 读取并发的LRU缓存,容量语义同{@link LRULinkedHashMap}:写入新键后超过容量时淘汰最久未访问的键值对
+ * 键值对保存在ConcurrentHashMap中,读取不加锁,访问记录写入{@link StripedReadBuffer},
+ * 分条满时尝试获取锁批量重放到访问顺序链表,获取不到锁的读取直接返回.
+ * 写入在锁内先重放缓冲中的访问记录再调整链表和淘汰.
+ * 缓冲满时丢弃的访问记录不参与排序,淘汰顺序是近似的LRU.
+ * @author Administrator
+ * @param <K>
+ * @param <V>
+ */
+public class ConcurrentLRUMap<K,V> extends AbstractMap<K, V>{
+
+	static final int DEFAULT_INITIAL_CAPACITY = 1 << 4;
+
+	private final int maxCapacity;
+	private final ConcurrentHashMap<K, Node<K,V>> data;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final StripedReadBuffer<Node<K,V>> readBuffer = new StripedReadBuffer<>();
+	private final Consumer<Node<K,V>> accessConsumer = this::onAccess;
+
+	/**
+	 * 访问顺序链表,头部最久未访问,只在锁内访问
+	 */
+	private Node<K,V> head;
+	private Node<K,V> tail;
+	private int count;
+
+	public ConcurrentLRUMap() {
+		this(DEFAULT_INITIAL_CAPACITY);
+	}
+
+	/**
+	 * @param capacity 最大数量
+	 */
+	public ConcurrentLRUMap(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("缓存容量不得小于0");
+		this.maxCapacity = capacity;
+		this.data = new ConcurrentHashMap<>(Math.min(capacity, 1 << 16));
+	}
+
+	static final class Node<K,V> implements Map.Entry<K, V>{
+		final K key;
+		volatile V value;
+		/**
+		 * 是否还在链表中,只在锁内访问
+		 */
+		boolean alive = true;
+		Node<K,V> prev;
+		Node<K,V> next;
+
+		Node(K key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+		@Override
+		public V getValue() {
+			return value;
+		}
+
+		@Override
+		public V setValue(V value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry))
+				return false;
+			Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+			return key.equals(e.getKey()) && value.equals(e.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return key.hashCode() ^ value.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return key + "=" + value;
+		}
+	}
+
+	public int getCapacity() {
+		return maxCapacity;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return data.containsKey(key);
+	}
+
+	@Override
+	public V get(Object key) {
+		Node<K,V> node = data.get(key);
+		if (node == null) {
+			return null;
+		}
+		if (readBuffer.offer(node)) {
+			tryDrain();
+		}
+		return node.value;
+	}
+
+	@Override
+	public V put(K key, V value) {
+		if (key == null || value == null) throw new NullPointerException();
+		lock.lock();
+		try {
+			drainReadBuffer();
+			Node<K,V> node = data.get(key);
+			if (node != null) {
+				V old = node.value;
+				node.value = value;
+				moveToLast(node);
+				return old;
+			}
+			node = new Node<>(key, value);
+			data.put(key, node);
+			addLast(node);
+			count++;
+			while (count > maxCapacity) {//淘汰最久未访问
+				Node<K,V> eldest = head;
+				unlink(eldest);
+				data.remove(eldest.key, eldest);
+			}
+			return null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public V remove(Object key) {
+		lock.lock();
+		try {
+			Node<K,V> node = data.remove(key);
+			if (node == null) {
+				return null;
+			}
+			unlink(node);
+			return node.value;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void clear() {
+		lock.lock();
+		try {
+			drainReadBuffer();
+			for (Node<K,V> node = head; node != null; ) {
+				Node<K,V> next = node.next;
+				node.alive = false;
+				node.prev = null;
+				node.next = null;
+				node = next;
+			}
+			head = null;
+			tail = null;
+			count = 0;
+			data.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		return data.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return data.isEmpty();
+	}
+
+	public Collection<Map.Entry<K, V>> getAll() {
+		return new ArrayList<Map.Entry<K, V>>(data.values());
+	}
+
+	private void tryDrain() {
+		if (lock.tryLock()) {
+			try {
+				drainReadBuffer();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	private void drainReadBuffer() {
+		readBuffer.drainTo(accessConsumer);
+	}
+
+	/**
+	 * 重放访问记录,调用者需持有锁
+	 * @param node
+	 */
+	private void onAccess(Node<K,V> node) {
+		if (node.alive) {//缓冲期间可能已被移除
+			moveToLast(node);
+		}
+	}
+
+	private void addLast(Node<K,V> node) {
+		node.prev = tail;
+		node.next = null;
+		if (tail == null) {
+			head = node;
+		} else {
+			tail.next = node;
+		}
+		tail = node;
+	}
+
+	private void moveToLast(Node<K,V> node) {
+		if (node != tail) {
+			detach(node);
+			addLast(node);
+		}
+	}
+
+	private void detach(Node<K,V> node) {
+		if (node.prev == null) {
+			head = node.next;
+		} else {
+			node.prev.next = node.next;
+		}
+		if (node.next == null) {
+			tail = node.prev;
+		} else {
+			node.next.prev = node.prev;
+		}
+		node.prev = null;
+		node.next = null;
+	}
+
+	private void unlink(Node<K,V> node) {
+		detach(node);
+		node.alive = false;
+		count--;
+	}
+
+	transient Set<Map.Entry<K,V>> entrySet;
+
+	/**
+	 * 弱一致性视图,迭代不改变访问顺序
+	 */
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		if (entrySet == null) {
+			entrySet = new EntrySet();
+		}
+		return entrySet;
+	}
+
+	final class EntrySet extends AbstractSet<Map.Entry<K,V>>{
+		@Override
+		public Iterator<Map.Entry<K, V>> iterator() {
+			final Iterator<Node<K,V>> it = data.values().iterator();
+			return new Iterator<Map.Entry<K,V>>() {
+				Node<K,V> current;
+				@Override
+				public boolean hasNext() {
+					return it.hasNext();
+				}
+				@Override
+				public Map.Entry<K, V> next() {
+					current = it.next();
+					return current;
+				}
+				@Override
+				public void remove() {
+					if (current == null) {
+						throw new IllegalStateException();
+					}
+					ConcurrentLRUMap.this.remove(current.key);
+					current = null;
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return ConcurrentLRUMap.this.size();
+		}
+
+		@Override
+		public void clear() {
+			ConcurrentLRUMap.this.clear();
+		}
+	}
+}
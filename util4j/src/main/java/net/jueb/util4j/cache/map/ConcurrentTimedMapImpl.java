@@ -0,0 +1,65 @@
+package net.jueb.util4j.cache.map;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import net.jueb.util4j.thread.NamedThreadFactory;
+
+/**
+ * 分段并发的{@link TimedMap}
+ * 读取不加锁,写入只与同一分段的写入互斥,适合多线程同时读写,单线程使用时{@link TimedMapImpl}开销更小.
+ * 迭代为弱一致性,迭代期间的修改不抛出异常.
+ * @author Administrator
+ * @param <K>
+ * @param <V>
+ */
+public class ConcurrentTimedMapImpl<K,V> extends AbstractConcurrentTimedMap<K, V> implements TimedMap<K, V>{
+
+	/**
+	 * 默认最大2个线程处理监听器
+	 * 迭代的时候也更新ttl
+	 */
+	public ConcurrentTimedMapImpl(){
+		this(Executors.newFixedThreadPool(2,new NamedThreadFactory("TimedMapCleanExecutor", true)),true);
+	}
+
+	/**
+	 * @param iteratorUpdate 是否在迭代的时候也更新ttl
+	 */
+	public ConcurrentTimedMapImpl(boolean iteratorUpdate){
+		this(Executors.newFixedThreadPool(2,new NamedThreadFactory("TimedMapCleanExecutor", true)), iteratorUpdate);
+	}
+
+	/**
+	 * 建议线程池固定大小,否则移除事件过多会消耗很多线程资源
+	 * @param lisenterExecutor 指定处理超时监听的executor
+	 * @param iteratorUpdate 是否在迭代的时候也更新ttl
+	 */
+	public ConcurrentTimedMapImpl(Executor lisenterExecutor,boolean iteratorUpdate){
+		this(lisenterExecutor, iteratorUpdate, DEFAULT_CONCURRENCY_LEVEL);
+	}
+
+	/**
+	 * @param lisenterExecutor 指定处理超时监听的executor
+	 * @param iteratorUpdate 是否在迭代的时候也更新ttl
+	 * @param concurrencyLevel 分段数量,向上取2的幂
+	 */
+	public ConcurrentTimedMapImpl(Executor lisenterExecutor,boolean iteratorUpdate,int concurrencyLevel){
+		super(lisenterExecutor, iteratorUpdate, concurrencyLevel);
+	}
+
+	@Override
+	public V put(K key, V value) {
+		return put(key, value, 0);
+	}
+
+	@Override
+	public V put(K key, V value, long ttl) {
+		return put(key, value, ttl, null);
+	}
+
+	@Override
+	public V put(K key, V value, long ttl, EventListener<K, V> listener) {
+		return putNode(key, value, ttl, null, listener);
+	}
+}
@@ -0,0 +1,391 @@
+package net.jueb.util4j.cache.map;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jueb.util4j.cache.map.TimedMap.BatchEventListener;
+import net.jueb.util4j.cache.map.TimedMap.EventListener;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.QueueGroupExecutor;
+
+/**
+ * 生命周期map的移除事件派发
+ * <pre>
+ * 逐个派发:每个被移除的键值对提交一个任务,与原来的行为相同.
+ * 批量派发:一次清理中被移除的键值对按batchSize分批,每批提交一个任务,{@link BatchEventListener}每批只回调一次.
+ * 顺序派发:批量派发时按router把键映射到{@link QueueGroupExecutor}的key队列,同一个键的事件总是进入同一个队列,保持先后顺序.
+ * </pre>
+ * 清理时收集的事件在map的锁内只缓存,释放锁后由{@link Batch#flush()}统一提交,提交和等待都不会发生在锁内.
+ * maxPending限制已提交未执行完的事件数量,超过时普通executor由清理线程直接执行,key队列则等待队列消化,避免打乱顺序,
+ * 等待超过{@link #MAX_PENDING_WAIT_MILLIS}毫秒或线程被中断时不再等待,直接提交.
+ * 提交失败(executor拒绝)时由清理线程直接执行.
+ * 单个移除(remove,访问时发现过期)仍然逐个提交.
+ * @author Administrator
+ * @param <K>
+ * @param <V>
+ */
+public class ExpireEventDispatcher<K,V> {
+	protected Logger log=LoggerFactory.getLogger(getClass());
+
+	public static final int DEFAULT_BATCH_SIZE=256;
+	/**
+	 * 超过maxPending时等待key队列消化的最长时间
+	 */
+	public static final long MAX_PENDING_WAIT_MILLIS=1000;
+
+	private final Executor executor;
+	private final QueueGroupExecutor queueGroup;
+	private final Function<? super K,String> router;
+	private final int batchSize;
+	private final int maxPending;
+	private final AtomicInteger pending=new AtomicInteger();
+
+	/**
+	 * 逐个派发
+	 * @param executor
+	 */
+	public ExpireEventDispatcher(Executor executor) {
+		this(executor, 1, 0);
+	}
+
+	/**
+	 * 批量派发
+	 * @param executor
+	 * @param batchSize 每批最大数量
+	 * @param maxPending 最多未执行完的事件数量,<=0不限制
+	 */
+	public ExpireEventDispatcher(Executor executor,int batchSize,int maxPending) {
+		this(Objects.requireNonNull(executor), null, null, batchSize, maxPending);
+	}
+
+	/**
+	 * 按键路由到key队列的批量派发
+	 * @param queueGroup
+	 * @param router 键->队列名称
+	 * @param batchSize 每批最大数量
+	 * @param maxPending 最多未执行完的事件数量,<=0不限制
+	 */
+	public ExpireEventDispatcher(QueueGroupExecutor queueGroup,Function<? super K,String> router,int batchSize,int maxPending) {
+		this(null, Objects.requireNonNull(queueGroup), Objects.requireNonNull(router), batchSize, maxPending);
+	}
+
+	private ExpireEventDispatcher(Executor executor,QueueGroupExecutor queueGroup,Function<? super K,String> router,int batchSize,int maxPending) {
+		if(batchSize<=0)
+		{
+			throw new IllegalArgumentException("batchSize:"+batchSize);
+		}
+		this.executor=executor;
+		this.queueGroup=queueGroup;
+		this.router=router;
+		this.batchSize=batchSize;
+		this.maxPending=maxPending;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public int getMaxPending() {
+		return maxPending;
+	}
+
+	/**
+	 * 已提交还未执行完的事件数量,不限制时为0
+	 * @return
+	 */
+	public int getPending() {
+		return pending.get();
+	}
+
+	/**
+	 * 派发单个移除事件
+	 * @param listener
+	 * @param entry
+	 * @param expire 是否超时移除
+	 */
+	public void dispatch(final EventListener<K,V> listener,final Map.Entry<K,V> entry,final boolean expire)
+	{
+		Runnable task=new Runnable() {
+			@Override
+			public void run() {
+				try {
+					listener.removed(entry.getKey(),entry.getValue(),expire);
+				} catch (Throwable e) {
+					log.error(e.getMessage(),e);
+				}
+			}
+		};
+		if(queueGroup!=null)
+		{
+			queueGroup.execute(router.apply(entry.getKey()), task);
+		}else
+		{
+			executor.execute(task);
+		}
+	}
+
+	/**
+	 * 创建一次清理使用的批次
+	 * @param expire 是否超时移除
+	 * @return
+	 */
+	public Batch newBatch(boolean expire)
+	{
+		return new Batch(expire);
+	}
+
+	/**
+	 * 一次清理收集的移除事件,非线程安全
+	 * add只缓存不提交,可以在map的锁内调用;flush提交全部缓存的事件,只能在锁外调用.
+	 */
+	public class Batch{
+		private final boolean expire;
+		private Chunk current;
+		private Map<String,Chunk> routed;
+		/**
+		 * 已满待提交的批次,按产生顺序
+		 */
+		private List<Chunk> ready;
+
+		Batch(boolean expire) {
+			this.expire = expire;
+		}
+
+		public void add(EventListener<K,V> listener,Map.Entry<K,V> entry)
+		{
+			if(queueGroup==null || batchSize==1)
+			{//逐个派发也先缓存,flush时再逐个提交
+				if(current==null)
+				{
+					current=new Chunk(null, expire);
+				}
+				current.add(listener, entry);
+				if(batchSize>1 && current.size()>=batchSize)
+				{
+					ready(current);
+					current=null;
+				}
+				return;
+			}
+			String queue=router.apply(entry.getKey());
+			if(routed==null)
+			{
+				routed=new HashMap<>();
+			}
+			Chunk chunk=routed.get(queue);
+			if(chunk==null)
+			{
+				chunk=new Chunk(queue, expire);
+				routed.put(queue, chunk);
+			}
+			chunk.add(listener, entry);
+			if(chunk.size()>=batchSize)
+			{
+				routed.remove(queue);
+				ready(chunk);
+			}
+		}
+
+		private void ready(Chunk chunk)
+		{
+			if(ready==null)
+			{
+				ready=new ArrayList<>();
+			}
+			ready.add(chunk);
+		}
+
+		/**
+		 * 提交缓存的全部事件,调用者不能持有map的锁
+		 * 先提交已满的批次再提交未满的,同一个key队列的批次保持产生顺序.
+		 */
+		public void flush()
+		{
+			if(ready!=null && !ready.isEmpty())
+			{
+				List<Chunk> chunks=ready;
+				ready=null;
+				for(Chunk chunk:chunks)
+				{
+					submit(chunk);
+				}
+			}
+			if(current!=null)
+			{
+				Chunk chunk=current;
+				current=null;
+				if(batchSize==1)
+				{
+					for(int i=0;i<chunk.size();i++)
+					{
+						dispatchQuietly(chunk.listeners.get(i), chunk.entries.get(i));
+					}
+				}else
+				{
+					submit(chunk);
+				}
+			}
+			if(routed!=null && !routed.isEmpty())
+			{
+				List<Chunk> chunks=new ArrayList<>(routed.values());
+				routed.clear();
+				for(Chunk chunk:chunks)
+				{
+					submit(chunk);
+				}
+			}
+		}
+
+		private void dispatchQuietly(EventListener<K,V> listener,Map.Entry<K,V> entry)
+		{
+			try {
+				dispatch(listener, entry, expire);
+			} catch (RuntimeException e) {//提交失败由清理线程直接执行
+				log.error("dispatch expire event failed,run in caller:"+e.getMessage(),e);
+				try {
+					listener.removed(entry.getKey(), entry.getValue(), expire);
+				} catch (Throwable ex) {
+					log.error(ex.getMessage(),ex);
+				}
+			}
+		}
+	}
+
+	private void submit(Chunk chunk)
+	{
+		int n=chunk.size();
+		if(maxPending>0)
+		{
+			if(pending.get()+n>maxPending && pending.get()>0)
+			{
+				if(queueGroup==null)
+				{//清理线程直接执行
+					chunk.run();
+					return;
+				}
+				awaitPending(n);
+			}
+			pending.addAndGet(n);
+			chunk.counted=true;
+		}
+		try {
+			if(queueGroup!=null)
+			{
+				queueGroup.execute(chunk.queue, chunk);
+			}else
+			{
+				executor.execute(chunk);
+			}
+		} catch (RuntimeException e) {//提交失败,撤销计数后由清理线程直接执行
+			if(chunk.counted)
+			{
+				chunk.counted=false;
+				pending.addAndGet(-n);
+			}
+			log.error("submit expire events failed,run in caller:"+e.getMessage(),e);
+			chunk.run();
+		}
+	}
+
+	/**
+	 * 等待key队列消化到可以再提交n个事件,超时或中断时放弃等待
+	 * @param n
+	 */
+	private void awaitPending(int n)
+	{
+		final long deadline=System.nanoTime()+TimeUnit.MILLISECONDS.toNanos(MAX_PENDING_WAIT_MILLIS);
+		while(pending.get()+n>maxPending && pending.get()>0)
+		{//等待队列消化,保持顺序
+			if(Thread.currentThread().isInterrupted())
+			{
+				return;
+			}
+			if(System.nanoTime()-deadline>=0)
+			{
+				log.warn("expire events pending "+pending.get()+" over maxPending "+maxPending+" after "+MAX_PENDING_WAIT_MILLIS+"ms,submit anyway");
+				return;
+			}
+			LockSupport.parkNanos(100000);
+		}
+	}
+
+	/**
+	 * 一批移除事件,{@link BatchEventListener}按监听器合并回调,其它逐个回调
+	 */
+	private class Chunk implements Runnable{
+		final String queue;
+		final boolean expire;
+		final List<EventListener<K,V>> listeners=new ArrayList<>(batchSize);
+		final List<Map.Entry<K,V>> entries=new ArrayList<>(batchSize);
+		boolean counted;
+
+		Chunk(String queue,boolean expire) {
+			this.queue = queue;
+			this.expire = expire;
+		}
+
+		void add(EventListener<K,V> listener,Map.Entry<K,V> entry)
+		{
+			listeners.add(listener);
+			entries.add(entry);
+		}
+
+		int size()
+		{
+			return entries.size();
+		}
+
+		@Override
+		public void run() {
+			try {
+				Map<BatchEventListener<K,V>,List<Map.Entry<K,V>>> batches=null;
+				for(int i=0;i<entries.size();i++)
+				{
+					EventListener<K,V> listener=listeners.get(i);
+					Map.Entry<K,V> entry=entries.get(i);
+					if(listener instanceof BatchEventListener)
+					{
+						if(batches==null)
+						{
+							batches=new IdentityHashMap<>();
+						}
+						batches.computeIfAbsent((BatchEventListener<K,V>)listener, l->new ArrayList<>()).add(entry);
+						continue;
+					}
+					try {
+						listener.removed(entry.getKey(), entry.getValue(), expire);
+					} catch (Throwable e) {
+						log.error(e.getMessage(),e);
+					}
+				}
+				if(batches!=null)
+				{
+					for(Map.Entry<BatchEventListener<K,V>,List<Map.Entry<K,V>>> e:batches.entrySet())
+					{
+						try {
+							e.getKey().removed(e.getValue(), expire);
+						} catch (Throwable ex) {
+							log.error(ex.getMessage(),ex);
+						}
+					}
+				}
+			} finally {
+				if(counted)
+				{
+					pending.addAndGet(-size());
+				}
+			}
+		}
+	}
+}
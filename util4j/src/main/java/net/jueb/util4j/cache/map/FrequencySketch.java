@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Modified for util4j: trimmed to the increment/frequency/reset operations used by TinyLfuCache.
+ */
+package net.jueb.util4j.cache.map;
+
+/**
+ * 估算访问频率的Count-Min Sketch
+ * 每个long保存16个4位计数器,每个元素映射到4个计数器,频率取最小值,最大15.
+ * 累计增加次数达到10倍容量时所有计数器减半,使频率随时间衰减.
+ * 非线程安全,由{@link TinyLfuCache}在淘汰锁内访问.
+ * 移植自Caffeine(https://github.com/ben-manes/caffeine)的com.github.benmanes.caffeine.cache.FrequencySketch,
+ * 种子,掩码,定位和衰减算法与原实现相同,遵循Apache License 2.0.
+ * @author Administrator
+ */
+final class FrequencySketch {
+
+	private static final long[] SEED = {
+			0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+	private static final long RESET_MASK = 0x7777777777777777L;
+	private static final long ONE_MASK = 0x1111111111111111L;
+
+	private final long[] table;
+	private final int tableMask;
+	private final int sampleSize;
+	private int size;
+
+	/**
+	 * @param maximumSize 缓存容量
+	 */
+	FrequencySketch(long maximumSize) {
+		int max=(int)Math.min(Math.max(maximumSize, 1), 1 << 30);
+		int length=Integer.highestOneBit(max-1)<<1;
+		if(length<=0)
+		{
+			length=1;
+		}
+		this.table=new long[length];
+		this.tableMask=length-1;
+		this.sampleSize=(max>Integer.MAX_VALUE/10)?Integer.MAX_VALUE:10*max;
+	}
+
+	/**
+	 * 估算的访问频率
+	 * @param e
+	 * @return 0-15
+	 */
+	int frequency(Object e)
+	{
+		int hash=spread(e.hashCode());
+		int start=(hash & 3) << 2;
+		int frequency=Integer.MAX_VALUE;
+		for(int i=0;i<4;i++)
+		{
+			int index=indexOf(hash, i);
+			int count=(int)((table[index] >>> ((start + i) << 2)) & 0xfL);
+			frequency=Math.min(frequency, count);
+		}
+		return frequency;
+	}
+
+	/**
+	 * 访问频率加一
+	 * @param e
+	 */
+	void increment(Object e)
+	{
+		int hash=spread(e.hashCode());
+		int start=(hash & 3) << 2;
+		boolean added=false;
+		for(int i=0;i<4;i++)
+		{
+			added|=incrementAt(indexOf(hash, i), start + i);
+		}
+		if(added && (++size == sampleSize))
+		{
+			reset();
+		}
+	}
+
+	private boolean incrementAt(int i,int j)
+	{
+		int offset=j << 2;
+		long mask=(0xfL << offset);
+		if((table[i] & mask) != mask)
+		{
+			table[i]+=(1L << offset);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 所有计数器减半
+	 */
+	private void reset()
+	{
+		int count=0;
+		for(int i=0;i<table.length;i++)
+		{
+			count+=Long.bitCount(table[i] & ONE_MASK);
+			table[i]=(table[i] >>> 1) & RESET_MASK;
+		}
+		size=(size - (count >>> 2)) >>> 1;
+	}
+
+	private int indexOf(int item,int i)
+	{
+		long hash=(item + SEED[i]) * SEED[i];
+		hash+=(hash >>> 32);
+		return ((int)hash) & tableMask;
+	}
+
+	private static int spread(int x)
+	{
+		x=((x >>> 16) ^ x) * 0x45d9f3b;
+		x=((x >>> 16) ^ x) * 0x45d9f3b;
+		return (x >>> 16) ^ x;
+	}
+}
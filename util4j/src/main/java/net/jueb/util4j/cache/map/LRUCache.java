@@ -15,6 +15,7 @@ import java.util.concurrent.locks.ReentrantLock;
 /** 
  *  
  * 类说明：当缓存数目不多时，才用缓存计数的传统LRU算法 
+ * 淘汰时遍历全部缓存,容量较大或并发读取较多时使用{@link TinyLfuCache} 
  * @param <K> 
  * @param <V> 
  */  
@@ -0,0 +1,80 @@
+package net.jueb.util4j.cache.map;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 按线程分条的有损环形缓冲,记录读取访问
+ * 多个读线程写入,持有缓存淘汰锁的线程批量取出;分条满时写入失败直接丢弃,读取从不阻塞.
+ * @author Administrator
+ * @param <E>
+ */
+final class StripedReadBuffer<E> {
+	static final int STRIPE_SIZE = 16;
+	static final int STRIPE_MASK = STRIPE_SIZE - 1;
+
+	private final Stripe<E>[] stripes;
+	private final int mask;
+
+	@SuppressWarnings({"unchecked","rawtypes"})
+	StripedReadBuffer() {
+		int n = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1) << 1;
+		this.stripes = new Stripe[n];
+		for (int i = 0; i < n; i++) {
+			stripes[i] = new Stripe<>();
+		}
+		this.mask = n - 1;
+	}
+
+	static final class Stripe<E>{
+		final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<>(STRIPE_SIZE);
+		final AtomicLong writeCounter = new AtomicLong();
+		volatile long readCounter;
+	}
+
+	/**
+	 * 写入访问记录
+	 * @param e
+	 * @return 所在分条已满,调用者应尝试取出
+	 */
+	boolean offer(E e)
+	{
+		long id = Thread.currentThread().getId();
+		int h = (int)(id ^ (id >>> 32)) * 0x9E3779B9;
+		Stripe<E> stripe = stripes[(h >>> 16) & mask];
+		long head = stripe.readCounter;
+		long tail = stripe.writeCounter.get();
+		if (tail - head >= STRIPE_SIZE) {
+			return true;
+		}
+		if (stripe.writeCounter.compareAndSet(tail, tail + 1)) {
+			stripe.buffer.lazySet((int)tail & STRIPE_MASK, e);
+			return tail + 1 - head >= STRIPE_SIZE;
+		}
+		return false;
+	}
+
+	/**
+	 * 取出所有已发布的访问记录,调用者需持有淘汰锁
+	 * @param consumer
+	 */
+	void drainTo(Consumer<E> consumer)
+	{
+		for (Stripe<E> stripe : stripes) {
+			long head = stripe.readCounter;
+			long tail = stripe.writeCounter.get();
+			while (head < tail) {
+				int index = (int)head & STRIPE_MASK;
+				E e = stripe.buffer.get(index);
+				if (e == null) {//已占位还未写入
+					break;
+				}
+				stripe.buffer.lazySet(index, null);
+				consumer.accept(e);
+				head++;
+			}
+			stripe.readCounter = head;
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package net.jueb.util4j.cache.map;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -76,4 +77,20 @@ public interface TimedMap<K,V> extends Map<K,V>{
 		 */
 		public void removed(K key,V value,boolean expire);
 	}
+	
+	/**
+	 * 批量事件监听器
+	 * 配合批量派发的{@link ExpireEventDispatcher},一次清理的移除事件每批只回调一次
+	 * @author Administrator
+	 * @param <K>
+	 * @param <V>
+	 */
+	public static interface BatchEventListener<K,V> extends EventListener<K,V>{
+		/**
+		 * 批量移除后调用此方法
+		 * @param entries 被移除的键值对
+		 * @param expire 是否超时移除
+		 */
+		public void removed(List<Map.Entry<K,V>> entries,boolean expire);
+	}
 }
@@ -4,11 +4,11 @@ import java.util.AbstractCollection;
 import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -21,6 +21,10 @@ import net.jueb.util4j.thread.NamedThreadFactory;
 /**
  * 缓存键值对
  * 默认30秒自动清理,其它则访问时触发清理
+ * 有过期时间的键值对按过期时间分桶索引(精度{@link #EXPIRE_TICK_MILLIS}毫秒),清理时只访问到期的桶,耗时与过期数量相关,与map大小无关.
+ * 访问只更新活动时间,不调整索引;清理到期桶时发现活动时间已更新的键值对再按新的过期时间重新入桶.
+ * 清理分批持有写锁,每批最多{@link #CLEAN_BATCH}个,避免长时间阻塞写入.
+ * 移除事件由{@link ExpireEventDispatcher}派发,默认逐个提交到监听器executor,可以设置为批量或按键有序派发.
  * 类似需求实现
  * http://ifeve.com/google-guava-cachesexplained/
  * @author Administrator
@@ -29,9 +33,24 @@ import net.jueb.util4j.thread.NamedThreadFactory;
  */
 public class TimedMapImpl<K,V> implements TimedMap<K, V>{
 	protected Logger log=LoggerFactory.getLogger(getClass());
-	private final Executor lisenterExecutor;
+	private volatile ExpireEventDispatcher<K,V> eventDispatcher;
 	private final ReentrantReadWriteLock rwLock=new ReentrantReadWriteLock();
 	private final Map<K,TimedEntry<K,V>> entryMap=new HashMap<>();
+	
+	/**
+	 * 过期索引的时间精度,毫秒
+	 */
+	public static final long EXPIRE_TICK_MILLIS=100;
+	
+	/**
+	 * 清理时每次持有写锁最多处理的键值对数量
+	 */
+	public static final int CLEAN_BATCH=1024;
+	
+	/**
+	 * 过期索引,过期时间/EXPIRE_TICK_MILLIS->桶,只在写锁内访问
+	 */
+	private final TreeMap<Long,ExpireBucket> expireIndex=new TreeMap<>();
 	private volatile boolean iteratorUpdate;//对map集合进行迭代时,是否刷新时间
 	
 	/**
@@ -55,8 +74,16 @@ public class TimedMapImpl<K,V> implements TimedMap<K, V>{
 	 * @param iteratorUpdate 是否在迭代的时候也更新ttl
 	 */
 	public TimedMapImpl(Executor lisenterExecutor,boolean iteratorUpdate){
-		Objects.requireNonNull(lisenterExecutor);
-		this.lisenterExecutor=lisenterExecutor;
+		this(new ExpireEventDispatcher<K,V>(lisenterExecutor), iteratorUpdate);
+	}
+	
+	/**
+	 * @param eventDispatcher 移除事件派发
+	 * @param iteratorUpdate 是否在迭代的时候也更新ttl
+	 */
+	public TimedMapImpl(ExpireEventDispatcher<K,V> eventDispatcher,boolean iteratorUpdate){
+		Objects.requireNonNull(eventDispatcher);
+		this.eventDispatcher=eventDispatcher;
 		this.iteratorUpdate=iteratorUpdate;
 	}
 	
@@ -89,6 +116,13 @@ public class TimedMapImpl<K,V> implements TimedMap<K, V>{
 		 * 监听器
 		 */
 		private EventListener<K,V> listener; 
+		
+		/**
+		 * 所在的过期桶和桶内链表
+		 */
+		private ExpireBucket expireBucket;
+		private TimedEntry<K,V> expirePrev;
+		private TimedEntry<K,V> expireNext;
 	
 		TimedEntry(K key, V value) {
 			super();
@@ -140,7 +174,11 @@ public class TimedMapImpl<K,V> implements TimedMap<K, V>{
 
 		public boolean isTimeOut()
 		{
-			long now=System.currentTimeMillis();
+			return isTimeOut(System.currentTimeMillis());
+		}
+		
+		boolean isTimeOut(long now)
+		{
 			if(getTtl()>0)
 			{
 				return now>=getLastActiveTime()+getTtl();
@@ -196,6 +234,91 @@ public class TimedMapImpl<K,V> implements TimedMap<K, V>{
 		}
 	}
 
+	/**
+	 * 过期桶,桶内键值对组成双向链表
+	 */
+	class ExpireBucket{
+		final long tick;
+		TimedEntry<K,V> head;
+		
+		ExpireBucket(long tick) {
+			this.tick = tick;
+		}
+	}
+	
+	/**
+	 * 按当前过期时间加入过期索引,永不过期的不加入,调用者需持有写锁
+	 * @param entry
+	 */
+	private void index(TimedEntry<K,V> entry)
+	{
+		if(entry.getTtl()<=0)
+		{
+			return;
+		}
+		long tick=(entry.getLastActiveTime()+entry.getTtl())/EXPIRE_TICK_MILLIS;
+		ExpireBucket bucket=expireIndex.get(tick);
+		if(bucket==null)
+		{
+			bucket=new ExpireBucket(tick);
+			expireIndex.put(tick, bucket);
+		}
+		entry.expireBucket=bucket;
+		entry.expirePrev=null;
+		entry.expireNext=bucket.head;
+		if(bucket.head!=null)
+		{
+			bucket.head.expirePrev=entry;
+		}
+		bucket.head=entry;
+	}
+	
+	/**
+	 * 从过期索引移除,调用者需持有写锁
+	 * @param entry
+	 */
+	private void unindex(TimedEntry<K,V> entry)
+	{
+		ExpireBucket bucket=entry.expireBucket;
+		if(bucket==null)
+		{
+			return;
+		}
+		if(entry.expirePrev!=null)
+		{
+			entry.expirePrev.expireNext=entry.expireNext;
+		}else
+		{
+			bucket.head=entry.expireNext;
+		}
+		if(entry.expireNext!=null)
+		{
+			entry.expireNext.expirePrev=entry.expirePrev;
+		}
+		entry.expireBucket=null;
+		entry.expirePrev=null;
+		entry.expireNext=null;
+		if(bucket.head==null && expireIndex.get(bucket.tick)==bucket)
+		{
+			expireIndex.remove(bucket.tick);
+		}
+	}
+	
+	/**
+	 * 替换或新增键值对并维护过期索引,调用者需持有写锁
+	 * @param key
+	 * @param entry
+	 */
+	private void putEntry(K key,TimedEntry<K,V> entry)
+	{
+		TimedEntry<K,V> old=entryMap.put(key,entry);
+		if(old!=null)
+		{
+			unindex(old);
+		}
+		index(entry);
+	}
+
 	transient volatile Runnable cleanTask;
 	
 	/**
@@ -224,43 +347,62 @@ public class TimedMapImpl<K,V> implements TimedMap<K, V>{
 	
 	@Override
 	public Map<K, V> cleanExpire() {
-		rwLock.readLock().lock();
 		Map<K,V> map=new HashMap<>();
-		Set<K> removeKeys=new HashSet<K>();
-		try {
-			for(java.util.Map.Entry<K, TimedMapImpl<K, V>.TimedEntry<K, V>> entry:entryMap.entrySet())
-			{
-				if(entry.getValue().isTimeOut())
-				{
-					removeKeys.add(entry.getKey());
-				}
-			}
-		} catch (Exception e) {
-			log.error(e.getMessage(),e);
-		}finally {
-			rwLock.readLock().unlock();
-		}
-		if(!removeKeys.isEmpty())
-		{
+		final long nowTick=System.currentTimeMillis()/EXPIRE_TICK_MILLIS;
+		ExpireEventDispatcher<K,V>.Batch events=eventDispatcher.newBatch(true);
+		boolean more=true;
+		while(more)
+		{//分批持有写锁,批次之间写入可以进入
 			rwLock.writeLock().lock();
 			try {
-				for(Object key:removeKeys)
-				{
-					TimedEntry<K, V> entry=removeAndListener(key,true);
-					if(entry!=null)
-					{
-						map.put(entry.key, entry.value);
-					}
-				}
+				more=cleanBatch(nowTick, map, events);
 			} catch (Exception e) {
 				log.error(e.getMessage(),e);
+				more=false;
 			}finally {
-				removeKeys.clear();
 				rwLock.writeLock().unlock();
 			}
+			events.flush();
 		}
 		return map;
 	}
+	
+	/**
+	 * 处理一批到期的桶,调用者需持有写锁
+	 * 只处理tick小于nowTick的桶,桶内所有键值对的索引过期时间都已经过去.
+	 * @param nowTick
+	 * @param removed 被清理的键值对
+	 * @param events 移除事件,释放写锁后提交
+	 * @return 是否还有未处理的到期桶
+	 */
+	private boolean cleanBatch(long nowTick,Map<K,V> removed,ExpireEventDispatcher<K,V>.Batch events)
+	{
+		final long now=System.currentTimeMillis();
+		ExpireBucket bucket=null;
+		for(int i=0;i<CLEAN_BATCH;i++)
+		{
+			if(bucket==null || bucket.head==null)
+			{//桶取空后才查找下一个桶
+				Map.Entry<Long,ExpireBucket> first=expireIndex.firstEntry();
+				if(first==null || first.getKey()>=nowTick)
+				{
+					return false;
+				}
+				bucket=first.getValue();
+			}
+			TimedEntry<K,V> entry=bucket.head;
+			unindex(entry);
+			if(entry.isTimeOut(now))
+			{
+				removeAndListener(entry.getKey(),true,events);
+				removed.put(entry.key, entry.value);
+			}else
+			{//索引之后被访问过,按新的过期时间重新入桶,新桶一定不早于nowTick
+				index(entry);
+			}
+		}
+		return true;
+	}
 
 	/**
 	 * 移除缓存对象并通知事件
@@ -269,25 +411,34 @@ public class TimedMapImpl<K,V> implements TimedMap<K, V>{
 	 * @return
 	 */
 	protected TimedEntry<K, V> removeAndListener(Object key,final boolean expire)
+	{
+		return removeAndListener(key, expire, null);
+	}
+	
+	/**
+	 * @param key
+	 * @param expire 是否超时才执行的移除
+	 * @param events 清理时收集事件的批次,为null时直接派发
+	 * @return
+	 */
+	private TimedEntry<K, V> removeAndListener(Object key,boolean expire,ExpireEventDispatcher<K,V>.Batch events)
 	{
 		final TimedEntry<K, V> entry=entryMap.remove(key);
 		try {
 			if(entry!=null)
 			{//通知被移除
+				unindex(entry);
 				final EventListener<K, V> listener=entry.listener;
 				entry.setListener(null);
 				if(listener!=null)
 				{
-					lisenterExecutor.execute(new Runnable() {
-						@Override
-						public void run() {
-							try {
-								listener.removed(entry.getKey(),entry.getValue(),expire);
-							} catch (Throwable e) {
-								log.error(e.getMessage(),e);
-							}
-						}
-					});
+					if(events!=null)
+					{
+						events.add(listener, entry);
+					}else
+					{
+						eventDispatcher.dispatch(listener, entry, expire);
+					}
 				}
 			}
 		} catch (Exception e) {
@@ -296,6 +447,19 @@ public class TimedMapImpl<K,V> implements TimedMap<K, V>{
 		return entry;
 	}
 
+	public ExpireEventDispatcher<K, V> getEventDispatcher() {
+		return eventDispatcher;
+	}
+
+	/**
+	 * 设置移除事件派发,之后的移除生效
+	 * @param eventDispatcher
+	 */
+	public void setEventDispatcher(ExpireEventDispatcher<K, V> eventDispatcher) {
+		Objects.requireNonNull(eventDispatcher);
+		this.eventDispatcher = eventDispatcher;
+	}
+
 	public boolean isIteratorUpdate() {
 		return iteratorUpdate;
 	}
@@ -326,7 +490,7 @@ public class TimedMapImpl<K,V> implements TimedMap<K, V>{
 
 	@Override
 	public boolean containsKey(Object key) {
-		return get(key)==null;
+		return get(key)!=null;
 	}
 
 	@Override
@@ -369,7 +533,7 @@ public class TimedMapImpl<K,V> implements TimedMap<K, V>{
 		try {
 			TimedEntry<K,V> entry=new TimedEntry<K,V>(key, value,ttl);
 			entry.setListener(listener);
-			entryMap.put(key,entry);
+			putEntry(key,entry);
 		} catch (Exception e) {
 			log.error(e.getMessage(),e);
 		}finally{
@@ -387,12 +551,13 @@ public class TimedMapImpl<K,V> implements TimedMap<K, V>{
 			TimedEntry<K, V> e=entryMap.get(key);
 			if(e!=null)
 			{
-				e.setLastActiveTime(System.currentTimeMillis());
-				if(e.isTimeOut())
+				long now=System.currentTimeMillis();
+				if(e.isTimeOut(now))
 				{
 					remove=true;
 				}else
-				{
+				{//只更新活动时间,过期索引在清理时再调整
+					e.setLastActiveTime(now);
 					result=e.getValue();
 				}
 			}
@@ -449,13 +614,16 @@ public class TimedMapImpl<K,V> implements TimedMap<K, V>{
 			{
 				TimedEntry<K,V> addEntry;
 				if(e instanceof TimedEntry)
-				{
-					addEntry=(TimedEntry<K, V>) e;
+				{//复制,原对象可能还在其它map的过期索引中
+					TimedEntry<K, V> src=(TimedEntry<K, V>) e;
+					addEntry=new TimedEntry<K,V>(src.getKey(), src.getValue(),src.getTtl());
+					addEntry.setLastActiveTime(src.getLastActiveTime());
+					addEntry.setListener(src.getListener());
 				}else
 				{
 					addEntry=new TimedEntry<K,V>(e.getKey(), e.getValue());
 				}
-				entryMap.put(e.getKey(), addEntry);
+				putEntry(e.getKey(), addEntry);
 			}
 		} catch (Exception e) {
 			log.error(e.getMessage(),e);
@@ -469,6 +637,7 @@ public class TimedMapImpl<K,V> implements TimedMap<K, V>{
 		rwLock.writeLock().lock();
 		try {
 			entryMap.clear();
+			expireIndex.clear();
 		} catch (Exception e) {
 			log.error(e.getMessage(),e);
 		}finally{
@@ -478,6 +647,7 @@ public class TimedMapImpl<K,V> implements TimedMap<K, V>{
 
 	class EntryIterator implements Iterator<Entry<K,V>>{
 		Iterator<java.util.Map.Entry<K, TimedMapImpl<K, V>.TimedEntry<K, V>>> it=entryMap.entrySet().iterator();
+		TimedEntry<K, V> current;
 		@Override
 		public boolean hasNext() {
 			return it.hasNext();
@@ -488,6 +658,7 @@ public class TimedMapImpl<K,V> implements TimedMap<K, V>{
 			if(value!=null)
 			{
 				TimedEntry<K, V> entry=value.getValue();
+				current=entry;
 				if(entry!=null)
 				{
 					if(iteratorUpdate)
@@ -501,7 +672,16 @@ public class TimedMapImpl<K,V> implements TimedMap<K, V>{
 		}
 		@Override
 		public void remove() {
-			it.remove();
+			rwLock.writeLock().lock();
+			try {
+				it.remove();
+				if(current!=null)
+				{
+					unindex(current);
+				}
+			} finally {
+				rwLock.writeLock().unlock();
+			}
 		}
 	}
 
@@ -674,14 +854,16 @@ public class TimedMapImpl<K,V> implements TimedMap<K, V>{
 			TimedEntry<K, V> e=entryMap.get(key);
 			if(e!=null)
 			{
-				e.setLastActiveTime(System.currentTimeMillis());
-				if(e.isTimeOut())
+				long now=System.currentTimeMillis();
+				if(e.isTimeOut(now))
 				{//已过期
 					removeAndListener(key,true);
 				}else
-				{
-					e.setLastActiveTime(System.currentTimeMillis());
+				{//过期时间可能提前,重新索引
+					unindex(e);
+					e.setLastActiveTime(now);
 					e.setTtl(ttl);
+					index(e);
 					result=e.getValue();
 				}
 			}
@@ -746,12 +928,13 @@ public class TimedMapImpl<K,V> implements TimedMap<K, V>{
 			TimedEntry<K, V> e=entryMap.get(key);
 			if(e!=null)
 			{
-				e.setLastActiveTime(System.currentTimeMillis());
-				if(e.isTimeOut())
+				long now=System.currentTimeMillis();
+				if(e.isTimeOut(now))
 				{
 					remove=true;
 				}else
 				{
+					e.setLastActiveTime(now);
 					e.setListener(lisnener);
 					result= e.getValue();
 				}
@@ -0,0 +1,348 @@
+package net.jueb.util4j.cache.map;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 有容量上限的W-TinyLFU缓存
+ * <pre>
+ * 新键值对先进入窗口LRU(容量的1%),挤出窗口的候选者与主区域的淘汰者比较{@link FrequencySketch}估算的访问频率,频率高的留下.
+ * 主区域为分段LRU,试用区的键值对再次被访问后进入保护区(主区域的80%),保护区满时最久未访问的降回试用区.
+ * 读取不加锁,访问记录写入按线程分条的有损环形缓冲,缓冲满时尝试获取淘汰锁批量处理,处理不过来的访问记录直接丢弃.
+ * 写入在淘汰锁内完成,淘汰只操作链表头,与容量无关.
+ * </pre>
+ * 与{@link LRUCache}相比,淘汰不需要遍历全部键值对;频率统计使偶尔的大范围扫描不会挤掉热点数据.
+ * @author Administrator
+ * @param <K>
+ * @param <V>
+ */
+public class TinyLfuCache<K,V> {
+
+	private static final int DEFAULT_CAPACITY = 100;
+
+	static final int WINDOW = 0;
+	static final int PROBATION = 1;
+	static final int PROTECTED = 2;
+	static final int DEAD = -1;
+
+	private final int maxCapacity;
+	private final int windowMax;
+	private final int protectedMax;
+
+	private final ConcurrentHashMap<K, Node<K,V>> data;
+	private final ReentrantLock evictionLock = new ReentrantLock();
+	private final FrequencySketch sketch;
+	private final StripedReadBuffer<Node<K,V>> readBuffer = new StripedReadBuffer<>();
+	private final Consumer<Node<K,V>> accessConsumer = this::onAccess;
+
+	private final NodeDeque<K,V> window = new NodeDeque<>();
+	private final NodeDeque<K,V> probation = new NodeDeque<>();
+	private final NodeDeque<K,V> protectedDeque = new NodeDeque<>();
+
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+
+	public TinyLfuCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public TinyLfuCache(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("缓存容量不得小于0");
+		this.maxCapacity = capacity;
+		this.windowMax = Math.max(1, capacity / 100);
+		this.protectedMax = (int)((capacity - windowMax) * 0.8);
+		this.data = new ConcurrentHashMap<>(Math.min(capacity, 1 << 16));
+		this.sketch = new FrequencySketch(capacity);
+	}
+
+	static final class Node<K,V>{
+		final K key;
+		volatile V value;
+		/**
+		 * 所在队列,只在淘汰锁内修改
+		 */
+		int queue = WINDOW;
+		Node<K,V> prev;
+		Node<K,V> next;
+
+		Node(K key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * 双向链表,头部最久未访问
+	 */
+	static final class NodeDeque<K,V>{
+		Node<K,V> head;
+		Node<K,V> tail;
+		int size;
+
+		void addLast(Node<K,V> node)
+		{
+			node.prev = tail;
+			node.next = null;
+			if (tail == null) {
+				head = node;
+			} else {
+				tail.next = node;
+			}
+			tail = node;
+			size++;
+		}
+
+		void remove(Node<K,V> node)
+		{
+			if (node.prev == null) {
+				head = node.next;
+			} else {
+				node.prev.next = node.next;
+			}
+			if (node.next == null) {
+				tail = node.prev;
+			} else {
+				node.next.prev = node.prev;
+			}
+			node.prev = null;
+			node.next = null;
+			size--;
+		}
+
+		void moveToLast(Node<K,V> node)
+		{
+			if (node != tail) {
+				remove(node);
+				addLast(node);
+			}
+		}
+
+		void clear()
+		{
+			head = null;
+			tail = null;
+			size = 0;
+		}
+	}
+
+	public boolean containsKey(K key) {
+		return data.containsKey(key);
+	}
+
+	public V get(K key) {
+		Node<K,V> node = data.get(key);
+		if (node == null) {
+			missCount.increment();
+			return null;
+		}
+		V value = node.value;
+		hitCount.increment();
+		if (readBuffer.offer(node)) {
+			tryDrain();
+		}
+		return value;
+	}
+
+	public V put(K key, V value) {
+		if (key == null || value == null) throw new NullPointerException();
+		evictionLock.lock();
+		try {
+			drainReadBuffer();
+			Node<K,V> node = data.get(key);
+			if (node != null) {
+				V old = node.value;
+				node.value = value;
+				onAccess(node);
+				return old;
+			}
+			node = new Node<>(key, value);
+			data.put(key, node);
+			onAdd(node);
+			return null;
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	public V remove(K key) {
+		evictionLock.lock();
+		try {
+			Node<K,V> node = data.remove(key);
+			if (node == null) {
+				return null;
+			}
+			unlink(node);
+			return node.value;
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	public void clear() {
+		evictionLock.lock();
+		try {
+			drainReadBuffer();
+			for (Node<K,V> node : data.values()) {
+				node.queue = DEAD;
+			}
+			data.clear();
+			window.clear();
+			probation.clear();
+			protectedDeque.clear();
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	public int size() {
+		return data.size();
+	}
+
+	public int getCapacity() {
+		return maxCapacity;
+	}
+
+	public Collection<Map.Entry<K, V>> getAll() {
+		List<Map.Entry<K, V>> list = new ArrayList<>(data.size());
+		for (Node<K,V> node : data.values()) {
+			list.add(new AbstractMap.SimpleImmutableEntry<>(node.key, node.value));
+		}
+		return list;
+	}
+
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	/**
+	 * 命中率
+	 * @return
+	 */
+	public double hitRate() {
+		long hit = hitCount.sum();
+		long total = hit + missCount.sum();
+		return total == 0 ? 1.0 : (double)hit / total;
+	}
+
+	private void tryDrain() {
+		if (evictionLock.tryLock()) {
+			try {
+				drainReadBuffer();
+			} finally {
+				evictionLock.unlock();
+			}
+		}
+	}
+
+	private void drainReadBuffer() {
+		readBuffer.drainTo(accessConsumer);
+	}
+
+	/**
+	 * 处理访问记录,调用者需持有淘汰锁
+	 * @param node
+	 */
+	private void onAccess(Node<K,V> node) {
+		if (node.queue == DEAD) {//缓冲期间已被移除
+			return;
+		}
+		sketch.increment(node.key);
+		switch (node.queue) {
+		case WINDOW:
+			window.moveToLast(node);
+			break;
+		case PROBATION:
+			probation.remove(node);
+			node.queue = PROTECTED;
+			protectedDeque.addLast(node);
+			if (protectedDeque.size > protectedMax) {//保护区最久未访问的降回试用区
+				Node<K,V> demoted = protectedDeque.head;
+				protectedDeque.remove(demoted);
+				demoted.queue = PROBATION;
+				probation.addLast(demoted);
+			}
+			break;
+		case PROTECTED:
+			protectedDeque.moveToLast(node);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * 新增进入窗口,超出窗口的候选者与试用区淘汰者比较频率,调用者需持有淘汰锁
+	 * @param node
+	 */
+	private void onAdd(Node<K,V> node) {
+		sketch.increment(node.key);
+		node.queue = WINDOW;
+		window.addLast(node);
+		Node<K,V> candidate = null;
+		if (window.size > windowMax) {
+			candidate = window.head;
+			window.remove(candidate);
+			candidate.queue = PROBATION;
+			probation.addLast(candidate);
+		}
+		while (window.size + probation.size + protectedDeque.size > maxCapacity) {
+			evict(candidate);
+			candidate = null;
+		}
+	}
+
+	private void evict(Node<K,V> candidate) {
+		Node<K,V> victim = probation.head;
+		if (victim == null) {
+			victim = protectedDeque.head;
+		}
+		if (victim == null) {
+			victim = window.head;
+		}
+		if (candidate != null && candidate != victim && candidate.queue == PROBATION) {
+			if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {//候选者更热,淘汰原来的
+				candidate = null;
+			}
+		} else {
+			candidate = null;
+		}
+		Node<K,V> evicted = candidate != null ? candidate : victim;
+		data.remove(evicted.key, evicted);
+		unlink(evicted);
+		evictionCount.increment();
+	}
+
+	private void unlink(Node<K,V> node) {
+		switch (node.queue) {
+		case WINDOW:
+			window.remove(node);
+			break;
+		case PROBATION:
+			probation.remove(node);
+			break;
+		case PROTECTED:
+			protectedDeque.remove(node);
+			break;
+		default:
+			break;
+		}
+		node.queue = DEAD;
+	}
+}
@@ -0,0 +1,159 @@
+package net.jueb.util4j.lock.waiteStrategy;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ParkingWaitConditionStrategy短暂自旋后把等待线程登记并park,
+ * 由生产者在条件可能成立时显式unpark,不依赖定时轮询.
+ * 空闲时CPU占用接近0,唤醒延迟只取决于unpark本身(微秒级),不受parkNanos定时精度影响.
+ * 生产者只在有线程park时才需要unpark,没有等待线程时信号只是一次volatile读.
+ * signalWhenBlocking每次唤醒一个最近park的线程(LIFO,避免惊群),也可以唤醒指定线程,signalAllWhenBlocking唤醒全部.
+ * @author juebanlin
+ */
+public final class ParkingWaitConditionStrategy implements WaitConditionStrategy
+{
+    private static final int DEFAULT_SPIN_TRIES = 100;
+
+    private final int spinTries;
+
+    /**
+     * park中的线程,头部为最近park的线程
+     */
+    private final ConcurrentLinkedDeque<Thread> waiters = new ConcurrentLinkedDeque<Thread>();
+
+    /**
+     * park中的线程数量,生产者据此判断是否需要unpark
+     */
+    private final AtomicInteger waiterCount = new AtomicInteger();
+
+    public ParkingWaitConditionStrategy()
+    {
+        this(DEFAULT_SPIN_TRIES);
+    }
+
+    /**
+     * @param spinTries park之前的自旋检查次数
+     */
+    public ParkingWaitConditionStrategy(int spinTries)
+    {
+        this.spinTries = spinTries;
+    }
+
+    @Override
+	public <T> T waitFor(WaitCondition<T> waitCondition) throws InterruptedException {
+		return awaitNanos(waitCondition, 0, false);
+	}
+
+    @Override
+	public <T> T waitFor(WaitCondition<T> waitCondition, long timeOut, TimeUnit unit) throws InterruptedException {
+		return awaitNanos(waitCondition, unit.toNanos(timeOut), true);
+	}
+
+	private <T> T awaitNanos(WaitCondition<T> waitCondition, long nanos, boolean timed) throws InterruptedException {
+		for (int i = spinTries; i > 0; i--)
+		{
+			if (waitCondition.isComplete())
+			{
+				return waitCondition.getAttach();
+			}
+		}
+		long endTime = System.nanoTime() + nanos;
+		Thread thread = Thread.currentThread();
+		for (;;)
+		{
+			//先登记再检查条件,生产者先改变条件再检查登记,两者至少有一方能看到对方
+			waiters.addFirst(thread);
+			waiterCount.incrementAndGet();
+			try {
+				if (waitCondition.isComplete())
+				{
+					break;
+				}
+				if (timed)
+				{
+					long remaining = endTime - System.nanoTime();
+					if (remaining <= 0)
+					{
+						break;
+					}
+					LockSupport.parkNanos(this, remaining);
+				} else
+				{
+					LockSupport.park(this);
+				}
+				if (Thread.interrupted())
+				{
+					throw new InterruptedException();
+				}
+			} finally {
+				if (waiters.removeFirstOccurrence(thread))
+				{//没有被生产者取走则自己注销
+					waiterCount.decrementAndGet();
+				}
+			}
+		}
+		return waitCondition.getAttach();
+	}
+
+	/**
+	 * 唤醒一个park中的线程
+	 */
+	@Override
+	public void signalWhenBlocking()
+	{
+		if (waiterCount.get() == 0)
+		{
+			return;
+		}
+		Thread thread = waiters.pollFirst();
+		if (thread != null)
+		{
+			waiterCount.decrementAndGet();
+			LockSupport.unpark(thread);
+		}
+	}
+
+	/**
+	 * 唤醒指定的park中的线程,不在等待中则什么也不做
+	 */
+	@Override
+	public void signalWhenBlocking(Thread thread)
+	{
+		if (waiterCount.get() == 0)
+		{
+			return;
+		}
+		if (waiters.removeFirstOccurrence(thread))
+		{
+			waiterCount.decrementAndGet();
+			LockSupport.unpark(thread);
+		}
+	}
+
+	@Override
+    public void signalAllWhenBlocking()
+    {
+		if (waiterCount.get() == 0)
+		{
+			return;
+		}
+		Thread thread;
+		while ((thread = waiters.pollFirst()) != null)
+		{
+			waiterCount.decrementAndGet();
+			LockSupport.unpark(thread);
+		}
+    }
+
+	/**
+	 * park中的线程数量
+	 * @return
+	 */
+	public int getWaiterCount()
+	{
+		return waiterCount.get();
+	}
+}
@@ -27,4 +27,23 @@ public interface WaitConditionStrategy
      * 释放解除阻塞信号
      */
     void signalAllWhenBlocking();
+    
+    /**
+     * 释放解除阻塞信号,只需要唤醒一个等待者
+     * 默认唤醒全部,能单独唤醒的策略可以覆盖以避免惊群
+     */
+    default void signalWhenBlocking()
+    {
+    	signalAllWhenBlocking();
+    }
+    
+    /**
+     * 释放解除阻塞信号,只需要唤醒指定的等待线程
+     * 默认唤醒全部,能按线程唤醒的策略可以覆盖
+     * @param thread
+     */
+    default void signalWhenBlocking(Thread thread)
+    {
+    	signalAllWhenBlocking();
+    }
 }
@@ -4,6 +4,8 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import org.jctools.queues.MpscLinkedQueue;
 import org.jctools.queues.atomic.MpmcAtomicArrayQueue;
 
+import net.jueb.util4j.queue.queueExecutor.queue.CoalescingRunnableQueue;
+import net.jueb.util4j.queue.queueExecutor.queue.RingRunnableQueue;
 import net.jueb.util4j.queue.queueExecutor.queue.RunnableQueueWrapper;
 
 @FunctionalInterface
@@ -24,6 +26,35 @@ public interface QueueFactory {
 	 */
 	public static final QueueFactory MPMC_QUEUE_FACTORY=()->{return new RunnableQueueWrapper(new MpmcAtomicArrayQueue<>(Short.MAX_VALUE));};
 	
+	/**
+	 * 预分配任务槽位的环形队列工厂,多生产单消费者,配合TaskTranslator投递时不产生新对象
+	 * 每个队列预分配1024个槽位,适合任务密集的少量队列
+	 */
+	public static final QueueFactory RING_QUEUE_FACTORY=ring(RingRunnableQueue.DEFAULT_CAPACITY);
+	
+	/**
+	 * 合并队列工厂,合并键相同且还在排队的CoalescingTask会被新任务替换,适合只有最新状态有意义的同步任务
+	 */
+	public static final QueueFactory COALESCING_QUEUE_FACTORY=coalescing(MPSC_QUEUE_FACTORY);
+	
+	/**
+	 * 在指定队列工厂的队列之上合并任务
+	 * @param factory 底层队列工厂
+	 * @return
+	 */
+	public static QueueFactory coalescing(QueueFactory factory) {
+		return ()->{return new CoalescingRunnableQueue(factory.buildQueue());};
+	}
+	
+	/**
+	 * 预分配任务槽位的环形队列工厂
+	 * @param capacity 每个队列的槽位数量,必须是2的幂,满时溢出到链表队列
+	 * @return
+	 */
+	public static QueueFactory ring(int capacity) {
+		return ()->{return new RingRunnableQueue(capacity);};
+	}
+	
 	
 	RunnableQueue buildQueue(); 
 }
@@ -0,0 +1,165 @@
+package net.jueb.util4j.queue.queueExecutor.executor;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 队列容量限制
+ * 队列排队任务数量达到容量时按溢出策略处理新任务,
+ * 排队数量升到高水位/降到低水位时回调监听者,网络层可以据此暂停/恢复读取该连接.
+ * @author juebanlin
+ */
+public final class QueueBound {
+
+	/**
+	 * 溢出策略
+	 */
+	public static enum OverflowPolicy{
+		/**
+		 * 拒绝新任务,抛出RejectedExecutionException
+		 */
+		REJECT,
+		/**
+		 * 丢弃最早的任务后入队
+		 * 提交线程只记录待丢弃数量,由消费线程取出时丢弃,可以用于单消费者队列.
+		 * 消费跟不上时最多累计capacity个待丢弃任务,之后直接丢弃新任务.
+		 */
+		DROP_OLDEST,
+		/**
+		 * 阻塞提交线程直到有空位,超时后拒绝.
+		 * 不要在同一执行器的工作线程中提交,否则可能死锁
+		 */
+		BLOCK,
+		/**
+		 * 在提交线程中直接执行新任务
+		 * 注意:此任务可能与队列消费线程正在执行的任务并发执行,既不保证与队列中的任务有序,也不保证串行,
+		 * 只适合与队列中的任务没有共享状态的场景,依赖队列串行执行的场景不要使用.
+		 */
+		CALLER_RUNS,
+	}
+
+	/**
+	 * 水位监听
+	 */
+	public static interface WatermarkListener{
+		/**
+		 * 排队数量升到高水位
+		 * @param queue
+		 */
+		public void onHighWatermark(QueueExecutor queue);
+
+		/**
+		 * 排队数量从高水位降到低水位
+		 * @param queue
+		 */
+		public void onLowWatermark(QueueExecutor queue);
+	}
+
+	private final int capacity;
+	private final OverflowPolicy policy;
+	private final long blockTimeoutNanos;
+	private final int highWatermark;
+	private final int lowWatermark;
+	private final WatermarkListener watermarkListener;
+
+	private QueueBound(Builder builder) {
+		this.capacity=builder.capacity;
+		this.policy=builder.policy;
+		this.blockTimeoutNanos=builder.blockTimeoutNanos;
+		this.highWatermark=builder.highWatermark;
+		this.lowWatermark=builder.lowWatermark;
+		this.watermarkListener=builder.watermarkListener;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public OverflowPolicy getPolicy() {
+		return policy;
+	}
+
+	public long getBlockTimeout(TimeUnit unit) {
+		return unit.convert(blockTimeoutNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public int getHighWatermark() {
+		return highWatermark;
+	}
+
+	public int getLowWatermark() {
+		return lowWatermark;
+	}
+
+	public WatermarkListener getWatermarkListener() {
+		return watermarkListener;
+	}
+
+	@Override
+	public String toString() {
+		return "QueueBound [capacity=" + capacity + ", policy=" + policy + ", highWatermark=" + highWatermark
+				+ ", lowWatermark=" + lowWatermark + "]";
+	}
+
+	public static class Builder{
+		int capacity;
+		OverflowPolicy policy=OverflowPolicy.REJECT;
+		long blockTimeoutNanos;
+		int highWatermark;
+		int lowWatermark;
+		WatermarkListener watermarkListener;
+
+		/**
+		 * @param capacity 队列容量
+		 */
+		public Builder(int capacity) {
+			if(capacity<=0)
+			{
+				throw new IllegalArgumentException("capacity:"+capacity);
+			}
+			this.capacity=capacity;
+		}
+
+		public Builder setPolicy(OverflowPolicy policy) {
+			Objects.requireNonNull(policy);
+			this.policy = policy;
+			return this;
+		}
+
+		/**
+		 * 阻塞策略
+		 * @param timeout 最长阻塞时间
+		 * @param unit
+		 * @return
+		 */
+		public Builder setBlockPolicy(long timeout,TimeUnit unit) {
+			this.policy=OverflowPolicy.BLOCK;
+			this.blockTimeoutNanos=unit.toNanos(timeout);
+			return this;
+		}
+
+		/**
+		 * 设置水位监听
+		 * @param highWatermark 高水位,排队数量达到时回调,不超过容量
+		 * @param lowWatermark 低水位,高水位之后排队数量降到此值时回调
+		 * @param watermarkListener
+		 * @return
+		 */
+		public Builder setWatermark(int highWatermark,int lowWatermark,WatermarkListener watermarkListener) {
+			Objects.requireNonNull(watermarkListener);
+			if(highWatermark<=0 || highWatermark>capacity || lowWatermark<0 || lowWatermark>=highWatermark)
+			{
+				throw new IllegalArgumentException("highWatermark:"+highWatermark+",lowWatermark:"+lowWatermark);
+			}
+			this.highWatermark=highWatermark;
+			this.lowWatermark=lowWatermark;
+			this.watermarkListener=watermarkListener;
+			return this;
+		}
+
+		public QueueBound build()
+		{
+			return new QueueBound(this);
+		}
+	}
+}
@@ -2,7 +2,13 @@ package net.jueb.util4j.queue.queueExecutor.executor;
 
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import net.jueb.util4j.queue.queueExecutor.metrics.QueueMetrics;
+import net.jueb.util4j.queue.queueExecutor.queue.TaskTranslator;
 
 /**
  * 任务队列执行器
@@ -16,18 +22,77 @@ public interface QueueExecutor extends Executor{
 	 */
 	public void execute(Runnable task);
 	
+	/**
+	 * 执行带参数的任务逻辑
+	 * 底层队列预分配了任务槽位时直接写入槽位,不需要为每个任务创建Runnable.
+	 * @param translator 任务逻辑,建议使用静态常量
+	 * @param arg1
+	 * @param arg2
+	 */
+	default <A,B> void execute(TaskTranslator<A,B> translator,A arg1,B arg2) {
+		execute(TaskTranslator.task(translator, arg1, arg2));
+	}
+	
 	/**
 	 * 批量执行任务
 	 * @param tasks
 	 */
 	public void execute(List<Runnable> tasks);
 	
+	/**
+	 * 提交带结果的任务,在本队列中执行
+	 * 任务被拒绝或丢弃时future以RejectedExecutionException异常完成.
+	 * 后续处理如需回到某个队列执行,使用thenApplyAsync(fn,queue)等以队列为Executor的方法,不要阻塞等待.
+	 * @param task
+	 * @return
+	 */
+	default <T> CompletableFuture<T> submit(Callable<T> task) {
+		return QueueFutureTask.submit(this, task);
+	}
+	
+	/**
+	 * 提交任务,在本队列中执行,完成时future以null完成
+	 * @param task
+	 * @return
+	 */
+	default CompletableFuture<Void> submit(Runnable task) {
+		return submit(Executors.callable(task, (Void)null));
+	}
+	
 	/**
 	 * 队列大小
 	 * @return
 	 */
 	public int size();
 	
+	/**
+	 * 队列指标,未开启或不支持时为null
+	 * @return
+	 */
+	default QueueMetrics getMetrics() {
+		return null;
+	}
+	
+	/**
+	 * 容量限制,未限制或不支持时为null
+	 * @return
+	 */
+	default QueueBound getBound() {
+		return null;
+	}
+	
+	/**
+	 * 设置容量限制
+	 * @param bound null不限制
+	 * @throws UnsupportedOperationException 实现不支持容量限制
+	 */
+	default void setBound(QueueBound bound) {
+		if(bound!=null)
+		{
+			throw new UnsupportedOperationException("bound is not supported by "+getClass().getName());
+		}
+	}
+	
 	public void setAlias(String alias);
 	
 	public String getAlias();
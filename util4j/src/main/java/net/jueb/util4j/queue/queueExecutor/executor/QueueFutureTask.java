@@ -0,0 +1,98 @@
+package net.jueb.util4j.queue.queueExecutor.executor;
+
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 带结果的队列任务
+ * 在队列中执行callable,结果或异常写入future,future在执行之前被取消则不再执行.
+ * 被容量限制丢弃时future以RejectedExecutionException异常完成,等待者不会一直挂起.
+ * @author juebanlin
+ */
+public final class QueueFutureTask<T> implements Runnable{
+
+	private final Callable<T> callable;
+	private final CompletableFuture<T> future=new CompletableFuture<>();
+
+	public QueueFutureTask(Callable<T> callable) {
+		Objects.requireNonNull(callable);
+		this.callable=callable;
+	}
+
+	public CompletableFuture<T> getFuture() {
+		return future;
+	}
+
+	/**
+	 * 任务被丢弃,不会再执行
+	 */
+	public void discard() {
+		future.completeExceptionally(new RejectedExecutionException("task discarded"));
+	}
+
+	@Override
+	public void run() {
+		if(future.isDone())
+		{
+			return;
+		}
+		try {
+			future.complete(callable.call());
+		} catch (Throwable e) {
+			future.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * 提交带结果的任务到队列
+	 * @param queue 队列或投递到队列的执行器
+	 * @param task
+	 * @return 任务被拒绝时以RejectedExecutionException异常完成
+	 */
+	public static <T> CompletableFuture<T> submit(Executor queue,Callable<T> task)
+	{
+		QueueFutureTask<T> futureTask=new QueueFutureTask<>(task);
+		try {
+			queue.execute(futureTask);
+		} catch (RejectedExecutionException e) {
+			futureTask.getFuture().completeExceptionally(e);
+		}
+		return futureTask.getFuture();
+	}
+
+	/**
+	 * 异步结果到达后投递到队列,返回的future在该队列中完成,不阻塞任何线程
+	 * @param queue 队列或投递到队列的执行器
+	 * @param stage
+	 * @return 投递被拒绝时以RejectedExecutionException异常完成
+	 */
+	public static <T> CompletableFuture<T> resumeOn(Executor queue,CompletionStage<T> stage)
+	{
+		CompletableFuture<T> future=new CompletableFuture<>();
+		stage.whenComplete((v,e)->{
+			try {
+				queue.execute(()->{
+					if(e!=null)
+					{
+						future.completeExceptionally(e);
+					}else
+					{
+						future.complete(v);
+					}
+				});
+			} catch (RejectedExecutionException re) {
+				future.completeExceptionally(re);
+			}
+		});
+		return future;
+	}
+
+	@Override
+	public String toString() {
+		return "QueueFutureTask [callable=" + callable + ", future=" + future + "]";
+	}
+}
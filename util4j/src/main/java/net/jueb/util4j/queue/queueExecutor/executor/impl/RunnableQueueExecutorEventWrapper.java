@@ -1,17 +1,33 @@
 package net.jueb.util4j.queue.queueExecutor.executor.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
+import net.jueb.util4j.queue.queueExecutor.executor.QueueBound;
+import net.jueb.util4j.queue.queueExecutor.executor.QueueBound.WatermarkListener;
 import net.jueb.util4j.queue.queueExecutor.executor.QueueExecutor;
+import net.jueb.util4j.queue.queueExecutor.executor.QueueFutureTask;
+import net.jueb.util4j.queue.queueExecutor.metrics.QueueFlightRecorder;
+import net.jueb.util4j.queue.queueExecutor.metrics.QueueMetrics;
+import net.jueb.util4j.queue.queueExecutor.queue.RingRunnableQueue;
 import net.jueb.util4j.queue.queueExecutor.queue.RunnableQueueEventWrapper;
+import net.jueb.util4j.queue.queueExecutor.queue.TaskTranslator;
 
 /**
  * 具有事件和调度器功能的队列
+ * 索引队列管理器可能持有65536个实例,状态字段使用字段更新器,标签和属性在第一次使用时创建,减少每个队列的对象数量.
+ * 容量限制,指标统计和JFR包装在offer中处理,execute,add,addAll都经过offer.
  * @author juebanlin
  */
 public abstract class RunnableQueueExecutorEventWrapper extends RunnableQueueEventWrapper implements QueueExecutor {
@@ -21,19 +37,443 @@ public abstract class RunnableQueueExecutorEventWrapper extends RunnableQueueEve
 		super(queue);
 	}
 
+	/**
+	 * 队列指标,为null时不统计
+	 */
+	private volatile QueueMetrics metrics;
+
+	/**
+	 * 容量限制,为null时不限制
+	 */
+	private volatile QueueBound bound;
+	
+	private static final AtomicIntegerFieldUpdater<RunnableQueueExecutorEventWrapper> BOUND_COUNT=
+			AtomicIntegerFieldUpdater.newUpdater(RunnableQueueExecutorEventWrapper.class, "boundCount");
+	private static final AtomicIntegerFieldUpdater<RunnableQueueExecutorEventWrapper> HIGH_WATERMARK=
+			AtomicIntegerFieldUpdater.newUpdater(RunnableQueueExecutorEventWrapper.class, "highWatermark");
+	private static final AtomicIntegerFieldUpdater<RunnableQueueExecutorEventWrapper> SPACE_WAITERS=
+			AtomicIntegerFieldUpdater.newUpdater(RunnableQueueExecutorEventWrapper.class, "spaceWaiters");
+	private static final AtomicReferenceFieldUpdater<RunnableQueueExecutorEventWrapper,Object> SPACE_LOCK=
+			AtomicReferenceFieldUpdater.newUpdater(RunnableQueueExecutorEventWrapper.class, Object.class, "spaceLock");
+	private static final AtomicIntegerFieldUpdater<RunnableQueueExecutorEventWrapper> DROP_COUNT=
+			AtomicIntegerFieldUpdater.newUpdater(RunnableQueueExecutorEventWrapper.class, "dropCount");
+
+	/**
+	 * {@link #acquire(QueueBound, Runnable)}的结果,任务已由溢出策略处理
+	 */
+	private static final int ACQUIRE_HANDLED=0;
+	/**
+	 * 占用了boundCount
+	 */
+	private static final int ACQUIRE_BOUND=1;
+	/**
+	 * 占用了dropCount
+	 */
+	private static final int ACQUIRE_DROP=2;
+
+	/**
+	 * 有容量限制时已入队未取出的任务数量,不含待丢弃的任务
+	 */
+	private volatile int boundCount;
+	
+	/**
+	 * DROP_OLDEST策略下待丢弃的最早任务数量,由消费线程取出时丢弃
+	 */
+	private volatile int dropCount;
+	
+	/**
+	 * 是否处于高水位,1是0否
+	 */
+	private volatile int highWatermark;
+	
+	/**
+	 * 等待空位的提交线程数量
+	 */
+	private volatile int spaceWaiters;
+	
+	/**
+	 * 等待空位的锁,第一次阻塞时创建
+	 */
+	private volatile Object spaceLock;
+
 	@Override
 	public final void execute(Runnable task) {
 		offer(task);
 	}
 
+	@Override
+	public final <A,B> void execute(TaskTranslator<A,B> translator,A arg1,B arg2) {
+		offer(translator, arg1, arg2);
+	}
+
 	@Override
 	public final void execute(List<Runnable> tasks) {
 		addAll(tasks);
 	}
 	
+	/**
+	 * 入队,有容量限制时先按溢出策略占用容量
+	 * @return 是否新增了排队任务,合并队列替换了旧任务,CALLER_RUNS直接执行或DROP_OLDEST丢弃了新任务时返回false
+	 */
+	@Override
+	public final boolean offer(Runnable task) {
+		if(task==null)
+		{
+			throw new NullPointerException();
+		}
+		QueueBound b=bound;
+		int acquired=b!=null?acquire(b, task):ACQUIRE_BOUND;
+		if(acquired==ACQUIRE_HANDLED)
+		{
+			return false;
+		}
+		task=QueueFlightRecorder.wrap(alias, task);
+		QueueMetrics m=metrics;
+		if(m!=null)
+		{
+			task=m.wrap(task);
+		}
+		boolean added=super.offer(task);
+		if(!added && b!=null)
+		{//没有新增元素(如合并队列替换了旧任务),归还占用的计数
+			if(acquired==ACQUIRE_DROP)
+			{
+				releaseDrop();
+			}else
+			{
+				release();
+			}
+		}
+		return added;
+	}
+	
+	@Override
+	public final boolean add(Runnable task) {
+		return offer(task);
+	}
+	
+	@Override
+	public final <A,B> boolean offer(TaskTranslator<A,B> translator,A arg1,B arg2) {
+		if(bound!=null || metrics!=null || QueueFlightRecorder.isTaskEnabled())
+		{//容量限制,指标统计和JFR任务事件需要包装任务
+			return offer(TaskTranslator.task(translator, arg1, arg2));
+		}
+		return super.offer(translator, arg1, arg2);
+	}
+	
+	@Override
+	public final boolean addAll(Collection<? extends Runnable> tasks) {
+		if(bound!=null)
+		{//逐个检查容量
+			boolean added=false;
+			for(Runnable task:tasks)
+			{
+				added|=offer(task);
+			}
+			return added;
+		}
+		QueueMetrics m=metrics;
+		if(m!=null || QueueFlightRecorder.isTaskEnabled())
+		{
+			List<Runnable> wrapped=new ArrayList<>(tasks.size());
+			for(Runnable task:tasks)
+			{
+				task=QueueFlightRecorder.wrap(alias, task);
+				wrapped.add(m!=null?m.wrap(task):task);
+			}
+			tasks=wrapped;
+		}
+		return super.addAll(tasks);
+	}
+	
+	/**
+	 * 取出任务,有待丢弃的任务时先丢弃最早的任务
+	 */
+	@Override
+	public Runnable poll() {
+		for(;;)
+		{
+			Runnable task=super.poll();
+			if(task==null || bound==null)
+			{
+				return task;
+			}
+			int d=dropCount;
+			if(d>0 && DROP_COUNT.compareAndSet(this, d, d-1))
+			{//DROP_OLDEST记录的待丢弃任务,容量已由新任务占用
+				discard(task);
+				continue;
+			}
+			release();
+			return task;
+		}
+	}
+	
+	@Override
+	public Runnable remove() {
+		Runnable task=poll();
+		if(task==null)
+		{
+			throw new NoSuchElementException();
+		}
+		return task;
+	}
+	
+	@Override
+	public void clear() {
+		super.clear();
+		if(bound!=null)
+		{
+			boundCount=0;
+			dropCount=0;
+			highWatermark=0;
+			signalSpaceWaiters();
+		}
+	}
+	
+	/**
+	 * 丢弃任务,通知指标和等待结果的一方
+	 * @param task
+	 */
+	private static void discard(Runnable task)
+	{
+		task=RingRunnableQueue.detach(task);
+		if(task instanceof QueueMetrics.MeteredTask)
+		{
+			((QueueMetrics.MeteredTask)task).discard();
+			task=((QueueMetrics.MeteredTask)task).getTask();
+		}
+		if(task instanceof QueueFlightRecorder.RecordedTask)
+		{
+			task=((QueueFlightRecorder.RecordedTask)task).getTask();
+		}
+		if(task instanceof QueueFutureTask)
+		{
+			((QueueFutureTask<?>)task).discard();
+		}
+	}
+	
+	/**
+	 * 占用一个容量
+	 * @param b
+	 * @param task
+	 * @return {@link #ACQUIRE_HANDLED}表示任务已由溢出策略处理,不需要入队;
+	 * {@link #ACQUIRE_BOUND}占用了空闲容量;{@link #ACQUIRE_DROP}记录了一个待丢弃任务,占用它的容量
+	 */
+	private int acquire(QueueBound b,Runnable task)
+	{
+		final int capacity=b.getCapacity();
+		long deadline=0;
+		for(;;)
+		{
+			int c=boundCount;
+			if(c<capacity)
+			{
+				if(BOUND_COUNT.compareAndSet(this, c, c+1))
+				{
+					WatermarkListener listener=b.getWatermarkListener();
+					if(listener!=null && c+1>=b.getHighWatermark() && HIGH_WATERMARK.compareAndSet(this, 0, 1))
+					{
+						listener.onHighWatermark(this);
+					}
+					return ACQUIRE_BOUND;
+				}
+				continue;
+			}
+			switch (b.getPolicy()) {
+			case DROP_OLDEST:
+				//单消费者队列不能在提交线程poll,只记录待丢弃数量,新任务占用被丢弃任务的容量,由消费线程取出时丢弃
+				int d=dropCount;
+				if(d>=capacity)
+				{//消费跟不上,不再累计,直接丢弃新任务,排队的任务最多为容量的2倍
+					discard(task);
+					return ACQUIRE_HANDLED;
+				}
+				if(DROP_COUNT.compareAndSet(this, d, d+1))
+				{
+					return ACQUIRE_DROP;
+				}
+				break;
+			case CALLER_RUNS:
+				//与消费线程并发执行,不保证顺序和串行,见OverflowPolicy.CALLER_RUNS
+				task.run();
+				return ACQUIRE_HANDLED;
+			case BLOCK:
+				if(deadline==0)
+				{
+					deadline=System.nanoTime()+b.getBlockTimeout(TimeUnit.NANOSECONDS);
+				}
+				if(!awaitSpace(capacity, deadline))
+				{
+					throw new RejectedExecutionException("queue full,capacity="+capacity+",alias="+alias);
+				}
+				break;
+			default:
+				throw new RejectedExecutionException("queue full,capacity="+capacity+",alias="+alias);
+			}
+		}
+	}
+	
+	/**
+	 * 释放一个容量
+	 */
+	private void release()
+	{
+		int c=BOUND_COUNT.decrementAndGet(this);
+		QueueBound b=bound;
+		WatermarkListener listener=b!=null?b.getWatermarkListener():null;
+		if(listener!=null && c<=b.getLowWatermark() && HIGH_WATERMARK.compareAndSet(this, 1, 0))
+		{
+			listener.onLowWatermark(this);
+		}
+		signalSpaceWaiters();
+	}
+	
+	/**
+	 * 撤销一个待丢弃记录,消费线程已经按记录丢弃了最早的任务时改为释放一个容量
+	 */
+	private void releaseDrop()
+	{
+		for(;;)
+		{
+			int d=dropCount;
+			if(d<=0)
+			{
+				release();
+				return;
+			}
+			if(DROP_COUNT.compareAndSet(this, d, d-1))
+			{
+				return;
+			}
+		}
+	}
+	
+	private void signalSpaceWaiters()
+	{
+		if(spaceWaiters>0)
+		{
+			Object lock=spaceLock();
+			synchronized (lock) {
+				lock.notifyAll();
+			}
+		}
+	}
+	
+	private Object spaceLock()
+	{
+		Object lock=spaceLock;
+		if(lock==null)
+		{
+			SPACE_LOCK.compareAndSet(this, null, new Object());
+			lock=spaceLock;
+		}
+		return lock;
+	}
+	
+	/**
+	 * 等待队列出现空位
+	 * @param capacity
+	 * @param deadline
+	 * @return 是否有空位,超时或者被中断返回false
+	 */
+	private boolean awaitSpace(int capacity,long deadline)
+	{
+		SPACE_WAITERS.incrementAndGet(this);
+		try {
+			Object lock=spaceLock();
+			synchronized (lock) {
+				while(boundCount>=capacity)
+				{
+					long remaining=deadline-System.nanoTime();
+					if(remaining<=0)
+					{
+						return false;
+					}
+					TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+				}
+				return true;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}finally {
+			SPACE_WAITERS.decrementAndGet(this);
+		}
+	}
+	
+	public QueueBound getBound() {
+		return bound;
+	}
+
+	/**
+	 * 设置容量限制,建议在队列使用之前设置
+	 * @param bound null不限制
+	 */
+	public void setBound(QueueBound bound) {
+		boundCount=bound!=null?size():0;
+		dropCount=0;
+		highWatermark=0;
+		this.bound = bound;
+		signalSpaceWaiters();
+	}
+	
+	/**
+	 * 有容量限制时已入队未取出的任务数量,不限制时为0
+	 * @return
+	 */
+	public int getBoundCount() {
+		return boundCount;
+	}
+	
+	public QueueMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * 激活时间,用于JFR记录激活后在系统队列中的等待,只在队列激活事件开启时记录
+	 */
+	private long activatedNanos;
+	
+	/**
+	 * 队列被激活(产生处理任务),投递到系统队列之前调用
+	 */
+	protected final void markActivated() {
+		activatedNanos=QueueFlightRecorder.isActivationEnabled()?System.nanoTime():0;
+	}
+	
+	/**
+	 * 开始处理队列
+	 * @return JFR事件,未开启时为null
+	 */
+	protected final Object beginActivation() {
+		return QueueFlightRecorder.beginActivation(alias, activatedNanos);
+	}
+	
+	/**
+	 * 结束处理队列
+	 * @param activation {@link #beginActivation()}的返回值
+	 * @param tasks 处理的任务数量
+	 * @param yielded 是否因为预算用完而让出线程
+	 */
+	protected final void endActivation(Object activation,long tasks,boolean yielded) {
+		QueueFlightRecorder.endActivation(activation, tasks, yielded);
+	}
+
+	/**
+	 * 设置队列指标,之后入队的任务开始统计
+	 * @param metrics null关闭统计
+	 */
+	public void setMetrics(QueueMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
 	private String alias;
-	private final Set<String> tags=new HashSet<>();
-	private final Map<String,Object> attributes=new HashMap<String,Object>();
+	/**
+	 * 标签和属性,第一次添加时创建
+	 */
+	private Set<String> tags;
+	private Map<String,Object> attributes;
 	public String getAlias() {
 		return alias;
 	}
@@ -43,38 +483,60 @@ public abstract class RunnableQueueExecutorEventWrapper extends RunnableQueueEve
 	}
 
 	public void addTag(String tag) {
+		if(tags==null)
+		{
+			tags=new HashSet<>(4);
+		}
 		tags.add(tag);
 	}
 	
 	public void removeTag(String tag) {
-		tags.remove(tag);
+		if(tags!=null)
+		{
+			tags.remove(tag);
+		}
 	}
 	
 	public boolean hasTag(String tag) {
-		return tags.contains(tag);
+		return tags!=null && tags.contains(tag);
 	}
 	
+	/**
+	 * 标签集合,第一次调用时创建,返回的集合可以直接修改
+	 * @return
+	 */
 	public Set<String> getTags(){
+		if(tags==null)
+		{
+			tags=new HashSet<>(4);
+		}
 		return tags;
 	}
 	
 	public boolean hasAttribute(String key) {
-		return attributes.containsKey(key);
+		return attributes!=null && attributes.containsKey(key);
 	}
 
 	public void setAttribute(String key, Object value) {
+		if(attributes==null)
+		{
+			attributes=new HashMap<>(4);
+		}
 		attributes.put(key, value);
 	}
 
 	public Object getAttribute(String key) {
-		return attributes.get(key);
+		return attributes==null?null:attributes.get(key);
 	}
 
 	public Object removeAttribute(String key) {
-		return attributes.remove(key);
+		return attributes==null?null:attributes.remove(key);
 	}
 
 	public void clearAttributes() {
-		attributes.clear();
+		if(attributes!=null)
+		{
+			attributes.clear();
+		}
 	}
 }
\ No newline at end of file
@@ -2,8 +2,17 @@ package net.jueb.util4j.queue.queueExecutor.groupExecutor;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import net.jueb.util4j.queue.queueExecutor.executor.QueueExecutor;
+import net.jueb.util4j.queue.queueExecutor.executor.QueueFutureTask;
+import net.jueb.util4j.queue.queueExecutor.queue.TaskTranslator;
+import net.jueb.util4j.queue.queueExecutor.timer.HierarchicalTimingWheel;
+import net.jueb.util4j.queue.queueExecutor.timer.QueueTimeout;
 
 /**
  * 任务队列组执行器
@@ -25,6 +34,18 @@ public interface QueueGroupExecutor extends QueueGroupExecutorBase{
 	 */
 	public void execute(short index,List<Runnable> tasks);
 	
+	/**
+	 * 执行带参数的任务逻辑
+	 * 索引队列使用{@link net.jueb.util4j.queue.queueExecutor.QueueFactory#RING_QUEUE_FACTORY}时投递不产生新对象.
+	 * @param index 队列号
+	 * @param translator 任务逻辑,建议使用静态常量
+	 * @param arg1
+	 * @param arg2
+	 */
+	default <A,B> void execute(short index,TaskTranslator<A,B> translator,A arg1,B arg2) {
+		getQueueExecutor(index).execute(translator, arg1, arg2);
+	}
+	
 	/**
 	 * 是否存在此队列执行器
 	 * @param index
@@ -53,7 +74,137 @@ public interface QueueGroupExecutor extends QueueGroupExecutorBase{
 	
 	public void execute(String key,Runnable task);
 	public void execute(String key,List<Runnable> tasks);
+	
+	/**
+	 * 执行带参数的任务逻辑
+	 * @param key
+	 * @param translator 任务逻辑,建议使用静态常量
+	 * @param arg1
+	 * @param arg2
+	 */
+	default <A,B> void execute(String key,TaskTranslator<A,B> translator,A arg1,B arg2) {
+		getQueueExecutor(key).execute(translator, arg1, arg2);
+	}
+	
 	public boolean hasQueueExecutor(String key);
 	public QueueExecutor getQueueExecutor(String key);
 	Iterator<KeyElement<QueueExecutor>> keyIterator();
+	
+	/**
+	 * 投递到索引队列的执行器,用作CompletableFuture异步方法的Executor参数,使后续处理回到该队列执行
+	 * @param index 队列号
+	 * @return
+	 */
+	default Executor executor(short index) {
+		return t->execute(index, t);
+	}
+	
+	/**
+	 * 投递到键值队列的执行器,用作CompletableFuture异步方法的Executor参数,使后续处理回到该队列执行
+	 * @param key
+	 * @return
+	 */
+	default Executor executor(String key) {
+		return t->execute(key, t);
+	}
+	
+	/**
+	 * 提交带结果的任务到索引队列
+	 * @param index 队列号
+	 * @param task
+	 * @return 任务被拒绝或丢弃时以RejectedExecutionException异常完成
+	 */
+	default <T> CompletableFuture<T> submit(short index,Callable<T> task) {
+		return QueueFutureTask.submit(executor(index), task);
+	}
+	
+	/**
+	 * 提交带结果的任务到键值队列
+	 * 例:group.submit("guild",()->guild.query(id)).thenAcceptAsync(r->player.apply(r),group.executor("player"))
+	 * @param key
+	 * @param task
+	 * @return 任务被拒绝或丢弃时以RejectedExecutionException异常完成
+	 */
+	default <T> CompletableFuture<T> submit(String key,Callable<T> task) {
+		return QueueFutureTask.submit(executor(key), task);
+	}
+	
+	/**
+	 * 在索引队列中接收异步结果,返回的future在该队列中完成
+	 * @param index 队列号
+	 * @param stage 任意线程完成的异步结果
+	 * @return
+	 */
+	default <T> CompletableFuture<T> resumeOn(short index,CompletionStage<T> stage) {
+		return QueueFutureTask.resumeOn(executor(index), stage);
+	}
+	
+	/**
+	 * 在键值队列中接收异步结果,返回的future在该队列中完成
+	 * 在结果到达之前注册的非async后续处理也在该队列中执行
+	 * @param key
+	 * @param stage 任意线程完成的异步结果
+	 * @return
+	 */
+	default <T> CompletableFuture<T> resumeOn(String key,CompletionStage<T> stage) {
+		return QueueFutureTask.resumeOn(executor(key), stage);
+	}
+	
+	/**
+	 * 定时任务使用的时间轮,默认全局共享
+	 * @return
+	 */
+	default HierarchicalTimingWheel getTimingWheel() {
+		return HierarchicalTimingWheel.getDefault();
+	}
+	
+	/**
+	 * 延迟后把任务投递到索引队列,与该队列的其它任务保持顺序
+	 * @param index 队列号
+	 * @param task
+	 * @param delay
+	 * @param unit
+	 * @return
+	 */
+	default QueueTimeout schedule(short index,Runnable task,long delay,TimeUnit unit) {
+		return getTimingWheel().schedule(t->execute(index, t), task, delay, unit);
+	}
+	
+	/**
+	 * 固定频率把任务投递到索引队列,任务抛出异常后停止
+	 * @param index 队列号
+	 * @param task
+	 * @param initialDelay
+	 * @param period
+	 * @param unit
+	 * @return
+	 */
+	default QueueTimeout scheduleAtFixedRate(short index,Runnable task,long initialDelay,long period,TimeUnit unit) {
+		return getTimingWheel().scheduleAtFixedRate(t->execute(index, t), task, initialDelay, period, unit);
+	}
+	
+	/**
+	 * 延迟后把任务投递到键值队列,与该队列的其它任务保持顺序
+	 * @param key
+	 * @param task
+	 * @param delay
+	 * @param unit
+	 * @return
+	 */
+	default QueueTimeout schedule(String key,Runnable task,long delay,TimeUnit unit) {
+		return getTimingWheel().schedule(t->execute(key, t), task, delay, unit);
+	}
+	
+	/**
+	 * 固定频率把任务投递到键值队列,任务抛出异常后停止
+	 * @param key
+	 * @param task
+	 * @param initialDelay
+	 * @param period
+	 * @param unit
+	 * @return
+	 */
+	default QueueTimeout scheduleAtFixedRate(String key,Runnable task,long initialDelay,long period,TimeUnit unit) {
+		return getTimingWheel().scheduleAtFixedRate(t->execute(key, t), task, initialDelay, period, unit);
+	}
 }
@@ -1,6 +1,12 @@
 package net.jueb.util4j.queue.queueExecutor.groupExecutor.impl;
 
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
 import net.jueb.util4j.queue.queueExecutor.QueueFactory;
+import net.jueb.util4j.queue.queueExecutor.executor.QueueBound;
+import net.jueb.util4j.queue.queueExecutor.executor.impl.RunnableQueueExecutorEventWrapper;
+import net.jueb.util4j.queue.queueExecutor.metrics.QueueMetrics;
 
 public abstract class AbstractQueueMaganer {
 
@@ -45,4 +51,138 @@ public abstract class AbstractQueueMaganer {
 	public final QueueFactory getDefaultQueueFactory() {
 		return DefaultQueueFactory;
 	}
+
+	/**
+	 * 单次调度最多处理的任务数量,<=0不限制
+	 */
+	private volatile int drainMaxTasks;
+
+	/**
+	 * 单次调度最多占用线程的时间(纳秒),<=0不限制
+	 */
+	private volatile long drainMaxNanos;
+
+	/**
+	 * 设置队列单次调度的处理预算
+	 * 队列被线程调度后会一直处理到队列为空,热点队列会长期占用线程导致其它队列饥饿,
+	 * 设置预算后超出任务数量或时间时队列让出线程,重新投递到主队列排队.
+	 * @param maxTasks 最多处理任务数量,<=0不限制
+	 * @param maxTime 最多占用时间,<=0不限制
+	 * @param unit
+	 */
+	public void setDrainBudget(int maxTasks,long maxTime,TimeUnit unit)
+	{
+		this.drainMaxTasks=maxTasks;
+		this.drainMaxNanos=unit.toNanos(maxTime);
+	}
+
+	public int getDrainMaxTasks() {
+		return drainMaxTasks;
+	}
+
+	public long getDrainMaxNanos() {
+		return drainMaxNanos;
+	}
+
+	/**
+	 * 是否用完了单次调度的预算
+	 * @param handled 已处理任务数量
+	 * @param startNanos 开始处理的时间,不限制时间时为0
+	 * @param maxTasks
+	 * @param maxNanos
+	 * @return
+	 */
+	protected static boolean isDrainBudgetExhausted(int handled,long startNanos,int maxTasks,long maxNanos)
+	{
+		if(maxTasks>0 && handled>=maxTasks)
+		{
+			return true;
+		}
+		return maxNanos>0 && System.nanoTime()-startNanos>=maxNanos;
+	}
+
+	/**
+	 * 队列组汇总指标,为null时不统计
+	 */
+	private volatile QueueMetrics metrics;
+
+	/**
+	 * 开启或关闭队列指标统计
+	 * 开启后每个队列拥有自己的指标,并汇总到队列组指标{@link #getMetrics()},
+	 * 单个队列的指标通过{@link net.jueb.util4j.queue.queueExecutor.executor.QueueExecutor#getMetrics()}获取.
+	 * 关闭时入队只多一次volatile读.
+	 * @param enabled
+	 */
+	public void setMetricsEnabled(boolean enabled)
+	{
+		QueueMetrics m=enabled?new QueueMetrics(getClass().getSimpleName()):null;
+		this.metrics=m;
+		for(RunnableQueueExecutorEventWrapper queue:existingQueues())
+		{
+			applyMetrics(queue, m);
+		}
+	}
+
+	public boolean isMetricsEnabled() {
+		return metrics!=null;
+	}
+
+	/**
+	 * 队列组汇总指标,未开启时为null
+	 * @return
+	 */
+	public QueueMetrics getMetrics() {
+		return metrics;
+	}
+
+	private static void applyMetrics(RunnableQueueExecutorEventWrapper queue,QueueMetrics group)
+	{
+		queue.setMetrics(group==null?null:new QueueMetrics(queue.getAlias(),group));
+	}
+
+	/**
+	 * 队列默认容量限制,为null时不限制
+	 */
+	private volatile QueueBound queueBound;
+
+	public QueueBound getQueueBound() {
+		return queueBound;
+	}
+
+	/**
+	 * 设置所有队列的容量限制,已创建的队列同时更新
+	 * 单个队列可以通过{@link net.jueb.util4j.queue.queueExecutor.executor.QueueExecutor#setBound(QueueBound)}单独设置
+	 * @param queueBound null不限制
+	 */
+	public void setQueueBound(QueueBound queueBound)
+	{
+		this.queueBound=queueBound;
+		for(RunnableQueueExecutorEventWrapper queue:existingQueues())
+		{
+			queue.setBound(queueBound);
+		}
+	}
+
+	/**
+	 * 新建队列时按当前设置初始化队列指标和容量限制
+	 * @param queue
+	 */
+	protected final void initQueue(RunnableQueueExecutorEventWrapper queue)
+	{
+		applyMetrics(queue, metrics);
+		QueueBound b=queueBound;
+		if(b!=null)
+		{
+			queue.setBound(b);
+		}
+	}
+
+	/**
+	 * 当前已创建的队列,修改指标开关和容量限制时用于更新已有队列
+	 * 默认返回空,只对之后新建并经过{@link #initQueue(RunnableQueueExecutorEventWrapper)}的队列生效,子类应重写.
+	 * @return
+	 */
+	protected Iterable<? extends RunnableQueueExecutorEventWrapper> existingQueues() {
+		return Collections.emptyList();
+	}
 }
@@ -0,0 +1,337 @@
+package net.jueb.util4j.queue.queueExecutor.groupExecutor.impl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jueb.util4j.queue.queueExecutor.timer.QueueTimeout;
+
+/**
+ * 自适应线程池控制器
+ * 定时采样系统队列的积压数量,估算排队等待时间(积压/处理速率)和进程CPU使用率,在核心线程数和最大线程数之间调整线程数量.
+ * 连续growSamples次采样积压或等待超过阈值且CPU未饱和时扩容;
+ * 连续shrinkSamples次采样没有积压且有空闲线程时缩容一个线程,扩容快缩容慢,避免突发负载下线程反复创建销毁.
+ * 开启后线程数量只由控制器调整,工作线程不再因为没有空闲线程而立即扩容,也不会在期望数量之内空闲退出.
+ * 采样由时间轮定时投递到执行器的辅助执行器中执行,不占用共享的时间轮线程.
+ * @author juebanlin
+ */
+public class AdaptivePoolController implements AdaptivePoolControllerMXBean{
+	protected final Logger log=LoggerFactory.getLogger(getClass());
+
+	public static enum Decision{
+		GROW,SHRINK,HOLD
+	}
+
+	private final long samplePeriodNanos;
+	private final long growBacklog;
+	private final long growWaitNanos;
+	private final int growSamples;
+	private final int shrinkSamples;
+	private final double maxCpuLoad;
+
+	private DefaultQueueGroupExecutor executor;
+	private QueueTimeout timeout;
+
+	private volatile int targetPoolSize;
+	private int overloadSamples;
+	private int idleSamples;
+	private long lastDequeued;
+	private long lastSampleNanos;
+
+	private volatile long lastBacklog;
+	private volatile long lastEstimatedWaitNanos;
+	private volatile double lastThroughput;
+	private volatile double lastCpuLoad=-1;
+	private volatile Decision lastDecision=Decision.HOLD;
+	private volatile long growCount;
+	private volatile long shrinkCount;
+
+	private AdaptivePoolController(Builder builder) {
+		this.samplePeriodNanos=builder.samplePeriodNanos;
+		this.growBacklog=builder.growBacklog;
+		this.growWaitNanos=builder.growWaitNanos;
+		this.growSamples=builder.growSamples;
+		this.shrinkSamples=builder.shrinkSamples;
+		this.maxCpuLoad=builder.maxCpuLoad;
+	}
+
+	/**
+	 * 绑定执行器并开始采样
+	 * @param executor
+	 */
+	synchronized void attach(DefaultQueueGroupExecutor executor)
+	{
+		if(this.executor!=null)
+		{
+			throw new IllegalStateException("controller already attached");
+		}
+		this.executor=executor;
+		this.targetPoolSize=Math.max(1, Math.max(executor.getCorePoolSize(), executor.getPoolSize()));
+		this.targetPoolSize=Math.min(targetPoolSize, executor.getMaximumPoolSize());
+		this.lastDequeued=executor.getSystemDequeuedCount();
+		this.lastSampleNanos=System.nanoTime();
+		Executor target=executor.getAssistExecutor();
+		if(target==null)
+		{//没有辅助执行器时在时间轮的派发线程中采样
+			target=Runnable::run;
+		}
+		this.timeout=executor.getTimingWheel().scheduleAtFixedRate(target, this::sampleQuietly,
+				samplePeriodNanos, samplePeriodNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * 停止采样
+	 */
+	synchronized void detach()
+	{
+		if(timeout!=null)
+		{
+			timeout.cancel();
+			timeout=null;
+		}
+	}
+
+	/**
+	 * 采样异常只记录日志,异常抛给时间轮会取消周期采样
+	 */
+	private void sampleQuietly()
+	{
+		try {
+			sample();
+		} catch (RuntimeException e) {
+			log.error("adaptive pool sample error:"+e.getMessage(),e);
+		}
+	}
+
+	/**
+	 * 采样并决策,由辅助执行器调用
+	 */
+	synchronized void sample()
+	{
+		DefaultQueueGroupExecutor e=executor;
+		if(e==null || timeout==null)
+		{
+			return;
+		}
+		if(e.isShutdown())
+		{
+			detach();
+			return;
+		}
+		long now=System.nanoTime();
+		long dequeued=e.getSystemDequeuedCount();
+		long backlog=Math.max(0, e.getSystemEnqueuedCount()-dequeued);
+		long elapsed=Math.max(1, now-lastSampleNanos);
+		double throughput=(dequeued-lastDequeued)*(double)TimeUnit.SECONDS.toNanos(1)/elapsed;
+		long waitNanos;
+		if(backlog==0)
+		{
+			waitNanos=0;
+		}else if(throughput<=0)
+		{//有积压但没有处理,至少已经等待了一个采样周期
+			waitNanos=Math.max(elapsed, lastEstimatedWaitNanos+elapsed);
+		}else
+		{
+			waitNanos=(long)(backlog/throughput*TimeUnit.SECONDS.toNanos(1));
+		}
+		double cpu=processCpuLoad();
+		lastDequeued=dequeued;
+		lastSampleNanos=now;
+		lastBacklog=backlog;
+		lastEstimatedWaitNanos=waitNanos;
+		lastThroughput=throughput;
+		lastCpuLoad=cpu;
+		lastDecision=decide(e, backlog, waitNanos, cpu);
+	}
+
+	private Decision decide(DefaultQueueGroupExecutor e,long backlog,long waitNanos,double cpu)
+	{
+		int min=Math.max(1, e.getCorePoolSize());
+		int max=e.getMaximumPoolSize();
+		int target=Math.min(Math.max(targetPoolSize, min), max);
+		boolean overload=(growBacklog>0 && backlog>=growBacklog) || (growWaitNanos>0 && waitNanos>=growWaitNanos);
+		if(overload)
+		{
+			idleSamples=0;
+			overloadSamples++;
+			boolean cpuHeadroom=cpu<0 || cpu<maxCpuLoad;
+			if(overloadSamples>=growSamples && cpuHeadroom && target<max)
+			{//按当前数量的1/4扩容,至少1个
+				overloadSamples=0;
+				target=Math.min(max, target+Math.max(1, target>>2));
+				targetPoolSize=target;
+				growCount++;
+				e.resizePool(target);
+				return Decision.GROW;
+			}
+		}else if(backlog==0 && e.getIdleWorkerCount()>0)
+		{
+			overloadSamples=0;
+			idleSamples++;
+			if(idleSamples>=shrinkSamples && target>min)
+			{
+				idleSamples=0;
+				target--;
+				targetPoolSize=target;
+				shrinkCount++;
+				e.resizePool(target);
+				return Decision.SHRINK;
+			}
+		}else
+		{
+			overloadSamples=0;
+			idleSamples=0;
+		}
+		targetPoolSize=target;
+		return Decision.HOLD;
+	}
+
+	@SuppressWarnings("restriction")
+	private static double processCpuLoad()
+	{
+		OperatingSystemMXBean os=ManagementFactory.getOperatingSystemMXBean();
+		if(os instanceof com.sun.management.OperatingSystemMXBean)
+		{
+			return ((com.sun.management.OperatingSystemMXBean)os).getProcessCpuLoad();
+		}
+		return -1;
+	}
+
+	@Override
+	public int getTargetPoolSize() {
+		return targetPoolSize;
+	}
+
+	@Override
+	public int getPoolSize() {
+		DefaultQueueGroupExecutor e=executor;
+		return e==null?0:e.getPoolSize();
+	}
+
+	@Override
+	public long getLastBacklog() {
+		return lastBacklog;
+	}
+
+	@Override
+	public long getLastEstimatedWaitMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(lastEstimatedWaitNanos);
+	}
+
+	@Override
+	public double getLastThroughput() {
+		return lastThroughput;
+	}
+
+	@Override
+	public double getLastCpuLoad() {
+		return lastCpuLoad;
+	}
+
+	@Override
+	public String getLastDecision() {
+		return lastDecision.name();
+	}
+
+	@Override
+	public long getGrowCount() {
+		return growCount;
+	}
+
+	@Override
+	public long getShrinkCount() {
+		return shrinkCount;
+	}
+
+	/**
+	 * 注册到平台MBeanServer
+	 * @param objectName 如net.jueb.util4j:type=AdaptivePoolController,name=xxx
+	 * @throws JMException
+	 */
+	public void registerMBean(String objectName) throws JMException
+	{
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(objectName));
+	}
+
+	@Override
+	public String toString() {
+		return "AdaptivePoolController [target=" + targetPoolSize + ", backlog=" + lastBacklog + ", waitMicros="
+				+ getLastEstimatedWaitMicros() + ", throughput=" + lastThroughput + ", cpu=" + lastCpuLoad
+				+ ", decision=" + lastDecision + "]";
+	}
+
+	public static class Builder{
+		long samplePeriodNanos=TimeUnit.MILLISECONDS.toNanos(100);
+		long growBacklog=64;
+		long growWaitNanos=TimeUnit.MILLISECONDS.toNanos(10);
+		int growSamples=2;
+		int shrinkSamples=50;
+		double maxCpuLoad=0.9;
+
+		/**
+		 * 采样周期,默认100毫秒
+		 * @param period
+		 * @param unit
+		 * @return
+		 */
+		public Builder setSamplePeriod(long period,TimeUnit unit) {
+			if(period<=0)
+			{
+				throw new IllegalArgumentException("period:"+period);
+			}
+			this.samplePeriodNanos=unit.toNanos(period);
+			return this;
+		}
+
+		/**
+		 * 扩容阈值,积压数量或者估算等待时间任意一个达到即视为过载
+		 * @param backlog 积压任务数量,<=0不使用,默认64
+		 * @param waitTime 估算等待时间,<=0不使用,默认10毫秒
+		 * @param unit
+		 * @return
+		 */
+		public Builder setGrowThreshold(long backlog,long waitTime,TimeUnit unit) {
+			this.growBacklog=backlog;
+			this.growWaitNanos=unit.toNanos(waitTime);
+			return this;
+		}
+
+		/**
+		 * 迟滞:连续过载多少次采样后扩容,连续空闲多少次采样后缩容
+		 * @param growSamples 默认2
+		 * @param shrinkSamples 默认50
+		 * @return
+		 */
+		public Builder setHysteresis(int growSamples,int shrinkSamples) {
+			if(growSamples<=0 || shrinkSamples<=0)
+			{
+				throw new IllegalArgumentException();
+			}
+			this.growSamples=growSamples;
+			this.shrinkSamples=shrinkSamples;
+			return this;
+		}
+
+		/**
+		 * 进程CPU使用率达到此值时不再扩容,默认0.9
+		 * @param maxCpuLoad 0~1
+		 * @return
+		 */
+		public Builder setMaxCpuLoad(double maxCpuLoad) {
+			this.maxCpuLoad=maxCpuLoad;
+			return this;
+		}
+
+		public AdaptivePoolController build()
+		{
+			return new AdaptivePoolController(this);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package net.jueb.util4j.queue.queueExecutor.groupExecutor.impl;
+
+/**
+ * 自适应线程池控制器JMX接口
+ * @author juebanlin
+ */
+public interface AdaptivePoolControllerMXBean {
+
+	/**
+	 * 控制器期望的线程数量
+	 */
+	public int getTargetPoolSize();
+
+	/**
+	 * 当前线程数量
+	 */
+	public int getPoolSize();
+
+	/**
+	 * 上次采样的系统队列积压任务数量
+	 */
+	public long getLastBacklog();
+
+	/**
+	 * 上次采样估算的排队等待时间(积压/处理速率),微秒
+	 */
+	public long getLastEstimatedWaitMicros();
+
+	/**
+	 * 上次采样的每秒处理任务数量
+	 */
+	public double getLastThroughput();
+
+	/**
+	 * 上次采样的进程CPU使用率0~1,不支持时为负数
+	 */
+	public double getLastCpuLoad();
+
+	/**
+	 * 上次决策:GROW,SHRINK,HOLD
+	 */
+	public String getLastDecision();
+
+	/**
+	 * 累计扩容次数
+	 */
+	public long getGrowCount();
+
+	/**
+	 * 累计缩容次数
+	 */
+	public long getShrinkCount();
+}
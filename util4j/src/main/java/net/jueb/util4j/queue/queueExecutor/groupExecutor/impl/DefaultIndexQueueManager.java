@@ -1,30 +1,51 @@
 package net.jueb.util4j.queue.queueExecutor.groupExecutor.impl;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Queue;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 import net.jueb.util4j.queue.queueExecutor.QueueFactory;
+import net.jueb.util4j.queue.queueExecutor.executor.QueueBound;
 import net.jueb.util4j.queue.queueExecutor.executor.QueueExecutor;
 import net.jueb.util4j.queue.queueExecutor.executor.impl.RunnableQueueExecutorEventWrapper;
 import net.jueb.util4j.queue.queueExecutor.groupExecutor.IndexQueueGroupManager;
 import net.jueb.util4j.queue.queueExecutor.groupExecutor.QueueGroupExecutorBase.IndexElement;
+import net.jueb.util4j.queue.queueExecutor.queue.RingRunnableQueue;
 
+/**
+ * 索引队列管理器
+ * 插槽按页分配,每页256个插槽,只有用到的页才分配插槽数组和完成计数数组,空管理器只有一个页表.
+ * 空闲的插槽可以通过{@link #releaseQueue(short)}和{@link #releaseIdleQueues()}释放,完成计数保留在页中.
+ * @author juebanlin
+ */
 public class DefaultIndexQueueManager extends AbstractQueueMaganer implements IndexQueueGroupManager{
 	/**
 	 * 最大队列插槽数
 	 */
 	public static final int MAX_SOLT_COUNT = 0xFFFF;
 
+	static final int PAGE_SHIFT = 8;
+	static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+	static final int PAGE_MASK = PAGE_SIZE - 1;
+
+	private static final AtomicIntegerFieldUpdater<SoltQueue> LOCK_STATE=
+			AtomicIntegerFieldUpdater.newUpdater(SoltQueue.class, "lockState");
+	private static final AtomicIntegerFieldUpdater<SoltQueue> PROCESS_STATE=
+			AtomicIntegerFieldUpdater.newUpdater(SoltQueue.class, "processState");
+
 	/**
-	 * 队列插槽
+	 * 插槽页表,页在第一次使用时创建
 	 */
-	private final SoltQueue[] solts = new SoltQueue[MAX_SOLT_COUNT + 1];
+	private final AtomicReferenceArray<SoltPage> pages = new AtomicReferenceArray<>((MAX_SOLT_COUNT + 1) >> PAGE_SHIFT);
 	
-	private final AtomicLong totalCompleteTask=new AtomicLong();
+	private final LongAdder totalCompleteTask=new LongAdder();
 	
 	private volatile IndexGroupEventListener listener;
 
@@ -46,12 +67,35 @@ public class DefaultIndexQueueManager extends AbstractQueueMaganer implements In
 	
 	protected void initQueues()
     {
-		for(int i=0;i<solts.length;i++)
+		for(int i=0;i<=MAX_SOLT_COUNT;i++)
     	{
-    		solts[i]=new SoltQueue(i,getQueueFactory_().buildQueue());
+			SoltPage page=page(i, true);
+			page.solts.set(i & PAGE_MASK, new SoltQueue(i,page,getQueueFactory_().buildQueue()));
     	}
     }
 	
+	/**
+	 * 插槽所在的页
+	 * @param index
+	 * @param create 不存在时是否创建
+	 * @return
+	 */
+	private SoltPage page(int index,boolean create) {
+		int p=index >>> PAGE_SHIFT;
+		SoltPage page=pages.get(p);
+		if(page==null && create)
+		{
+			pages.compareAndSet(p, null, new SoltPage());
+			page=pages.get(p);
+		}
+		return page;
+	}
+	
+	private SoltQueue solt(int index) {
+		SoltPage page=pages.get(index >>> PAGE_SHIFT);
+		return page==null?null:page.solts.get(index & PAGE_MASK);
+	}
+	
 	/**
 	 * 转换为插槽索引
 	 * 
@@ -76,17 +120,17 @@ public class DefaultIndexQueueManager extends AbstractQueueMaganer implements In
 
 	public Iterator<IndexElement<QueueExecutor>> indexIterator(){
 		return new Iterator<IndexElement<QueueExecutor>>() {
-			short i=0;
+			int i=0;
 			
 			@Override
 			public boolean hasNext() {
-				return i < solts.length;
+				return i <= MAX_SOLT_COUNT;
 			}
 
 			@Override
 			public IndexElement<QueueExecutor> next() {
-				final short index=i;
-				final QueueExecutor qe=solts[i++];
+				final short index=(short)i;
+				final QueueExecutor qe=solt(i++);
 				return new IndexElement<QueueExecutor>() {
 					@Override
 					public short getIndex() {
@@ -108,12 +152,12 @@ public class DefaultIndexQueueManager extends AbstractQueueMaganer implements In
 
 			@Override
 			public boolean hasNext() {
-				return i < solts.length;
+				return i <= MAX_SOLT_COUNT;
 			}
 
 			@Override
 			public QueueExecutor next() {
-				return solts[i++];
+				return solt(i++);
 			}
 		};
 	}
@@ -134,25 +178,110 @@ public class DefaultIndexQueueManager extends AbstractQueueMaganer implements In
 
 	@Override
 	public boolean hasQueueExecutor(short solt) {
-		int index = convertIndex(solt);
-		return solts[index]==null;
+		return solt(convertIndex(solt))!=null;
 	}
 	
 	public QueueExecutor getQueueExecutor(short solt) {
 		int index = convertIndex(solt);
-		if(solts[index]==null)
+		SoltQueue sq=solt(index);
+		if(sq==null)
 		{
-			synchronized (solts) {
-				if(solts[index]==null)
+			SoltPage page=page(index, true);
+			synchronized (page) {
+				sq=page.solts.get(index & PAGE_MASK);
+				if(sq==null)
 				{
-					SoltQueue sq=new SoltQueue(index,getQueueFactory_().buildQueue());
+					sq=new SoltQueue(index,page,getQueueFactory_().buildQueue());
 					sq.setAlias("solt_"+solt);
 					sq.setAttribute("solt", solt);
-					solts[index]=sq;
+					initQueue(sq);
+					page.solts.set(index & PAGE_MASK, sq);
 				}
 			}
 		}
-		return solts[index];
+		return sq;
+	}
+	
+	/**
+	 * 释放空闲的队列,下次使用该索引时重新创建
+	 * 只有没有任务并且没有被调度的队列才能释放.
+	 * 先占用生成锁阻止队列被调度,标记为已释放后再确认队列为空,生产者入队后检查标记,
+	 * 两边至少有一方能看到对方:释放方看到任务则放弃释放,生产者看到标记则由{@link SoltQueue#onReleasedQueueAdd()}处理.
+	 * 释放之后通过旧队列引用投递的任务按顺序转交给该索引的新队列,没有新队列时旧队列复活.
+	 * @param solt
+	 * @return 是否已释放
+	 */
+	public boolean releaseQueue(short solt) {
+		int index = convertIndex(solt);
+		SoltPage page=page(index, false);
+		if(page==null)
+		{
+			return false;
+		}
+		synchronized (page) {
+			SoltQueue sq=page.solts.get(index & PAGE_MASK);
+			if(sq==null || !sq.isEmpty() || !LOCK_STATE.compareAndSet(sq, 0, 1))
+			{
+				return false;
+			}
+			sq.released=true;
+			if(!sq.isEmpty())
+			{//检查期间有任务加入,生产者没有获取到锁,由这里重新调度
+				sq.released=false;
+				sq.unlockAndReschedule();
+				return false;
+			}
+			page.solts.set(index & PAGE_MASK, null);
+			//之后加入的任务由生产者看到释放标记后转交,这里只释放锁
+			sq.lockState=0;
+			return true;
+		}
+	}
+	
+	/**
+	 * 释放所有空闲的队列
+	 * @return 释放的队列数量
+	 */
+	public int releaseIdleQueues() {
+		int count=0;
+		for(int p=0;p<pages.length();p++)
+		{
+			SoltPage page=pages.get(p);
+			if(page==null)
+			{
+				continue;
+			}
+			for(int i=0;i<PAGE_SIZE;i++)
+			{
+				if(page.solts.get(i)!=null && releaseQueue((short)((p << PAGE_SHIFT) | i)))
+				{
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+	
+	@Override
+	protected Iterable<SoltQueue> existingQueues() {
+		List<SoltQueue> list=new ArrayList<>();
+		for(int p=0;p<pages.length();p++)
+		{
+			SoltPage page=pages.get(p);
+			if(page==null)
+			{
+				continue;
+			}
+			for(int i=0;i<PAGE_SIZE;i++)
+			{
+				SoltQueue sq=page.solts.get(i);
+				if(sq!=null)
+				{
+					list.add(sq);
+				}
+			}
+		}
+		return list;
 	}
 	
 	public void setGroupEventListener(IndexGroupEventListener listener)
@@ -171,7 +300,8 @@ public class DefaultIndexQueueManager extends AbstractQueueMaganer implements In
 	
 	public long getToalCompletedTaskCount(short solt) {
 		int index = convertIndex(solt);
-		return solts[index].getCompletedTaskCount().get();
+		SoltPage page=page(index, false);
+		return page==null?0:page.completed.get(index & PAGE_MASK);
 	}
 
 	/**
@@ -179,9 +309,17 @@ public class DefaultIndexQueueManager extends AbstractQueueMaganer implements In
 	 * @return
 	 */
 	public long getToalCompletedTaskCount() {
-        return totalCompleteTask.get();
+        return totalCompleteTask.sum();
     }
 	
+	/**
+	 * 插槽页,完成计数按页存放在一个long数组中,队列释放后计数保留
+	 */
+	private static final class SoltPage{
+		final AtomicReferenceArray<SoltQueue> solts=new AtomicReferenceArray<>(PAGE_SIZE);
+		final AtomicLongArray completed=new AtomicLongArray(PAGE_SIZE);
+	}
+	
 	/**
 	 * 插槽队列,具有增删事件包装于queueFactory生产的queue
 	 * @author juebanlin
@@ -193,22 +331,29 @@ public class DefaultIndexQueueManager extends AbstractQueueMaganer implements In
 		private final int soltIndex;
 		
 		/**
-	     * 处理任务生成锁
+		 * 所在的页,存放完成计数
+		 */
+		private final SoltPage page;
+		
+		/**
+	     * 处理任务生成锁,1锁定0未锁定
 	     */
-	    private final AtomicBoolean isLock = new AtomicBoolean(false);
+	    volatile int lockState;
 	    
 	    /**
-	     * 任务处理锁
+	     * 任务处理锁,1锁定0未锁定
 	     */
-	    private final AtomicBoolean processLock = new AtomicBoolean(false);
+	    volatile int processState;
+	    
 	    /**
-	     * 此队列完成的任务数量
+	     * 是否已被释放,只在持有生成锁时设置
 	     */
-		private final AtomicLong completedTaskCount = new AtomicLong(0);
+	    volatile boolean released;
 		
-		public SoltQueue(int soltIndex,Queue<Runnable> queue) {
+		public SoltQueue(int soltIndex,SoltPage page,Queue<Runnable> queue) {
 			super(queue);
 			this.soltIndex=soltIndex;
+			this.page=page;
 			init();
 		}
 		
@@ -216,13 +361,41 @@ public class DefaultIndexQueueManager extends AbstractQueueMaganer implements In
 		 * 初始化状态
 		 */
 		public void init(){
-			isLock.set(false);
-			completedTaskCount.set(0);
+			lockState=0;
+			page.completed.set(soltIndex & PAGE_MASK, 0);
 			super.clear();
 		}
 		
-		public AtomicLong getCompletedTaskCount() {
-			return completedTaskCount;
+		/**
+		 * 此队列完成的任务数量
+		 * @return
+		 */
+		public long getCompletedTaskCount() {
+			return page.completed.get(soltIndex & PAGE_MASK);
+		}
+		
+		private void completed() {
+			page.completed.incrementAndGet(soltIndex & PAGE_MASK);
+			totalCompleteTask.increment();
+		}
+		
+		/**
+		 * 释放生成锁,释放之前加入的任务由这里重新调度
+		 */
+		void unlockAndReschedule() {
+			lockState=0;
+			if(!isEmpty() && LOCK_STATE.compareAndSet(this, 0, 1))
+			{
+				activate();
+			}
+		}
+		
+		/**
+		 * 产生处理任务
+		 */
+		private void activate() {
+			markActivated();
+			onQueueHandleTask((short)soltIndex,this);
 		}
 		
 		@Override
@@ -234,13 +407,55 @@ public class DefaultIndexQueueManager extends AbstractQueueMaganer implements In
 		protected void onAddAfter(boolean offeredSucceed) {
 			if(offeredSucceed)
 			{
-				if(isLock.compareAndSet(false, true))
+				if(released)
+				{//入队之后检查,释放方确认为空之前已标记
+					onReleasedQueueAdd();
+					return;
+				}
+				if(LOCK_STATE.compareAndSet(this, 0, 1))
 			 	{//一个处理任务产生
 //					onQueueHandleTask((short)soltIndex,new SoltQueueProcessTask(this));
-					onQueueHandleTask((short)soltIndex,this);
+					activate();
 			 	}
 			}
 		}
+		
+		/**
+		 * 已释放的队列被添加了任务(调用者持有旧引用)
+		 * 如果该索引还没有新队列,则复活此队列,否则把任务按顺序转交给新队列.
+		 * 返回前任务已经进入新队列,同一生产者之后通过索引投递的任务排在它们后面.
+		 */
+		private synchronized void onReleasedQueueAdd()
+		{
+			SoltQueue live;
+			synchronized (page) {//等待释放结束,释放方可能放弃释放
+				if(!released)
+				{
+					live=null;
+				}else
+				{
+					live=page.solts.get(soltIndex & PAGE_MASK);
+					if(live==null)
+					{//复活
+						page.solts.set(soltIndex & PAGE_MASK, this);
+						released=false;
+					}
+				}
+			}
+			if(live==null)
+			{
+				if(!isEmpty() && LOCK_STATE.compareAndSet(this, 0, 1))
+				{
+					activate();
+				}
+				return;
+			}
+			Runnable task;
+			while((task=poll())!=null)
+			{//环形队列的槽位转交前先转换
+				live.execute(RingRunnableQueue.detach(task));
+			}
+		}
 
 		protected void beforeExecute(Thread thread, Runnable task) {
 			
@@ -253,13 +468,26 @@ public class DefaultIndexQueueManager extends AbstractQueueMaganer implements In
 		@Override
 		public void run() {
 			SoltQueue queue=this;
-			if(queue.processLock.compareAndSet(false, true))
+			if(PROCESS_STATE.compareAndSet(queue, 0, 1))
 			{//如果此runnable未被执行则执行,已执行则不可再次执行
+				boolean yield=false;
+				Object activation=beginActivation();
+				long completed=activation!=null?getCompletedTaskCount():0;
 				try {
-					handleQueueTask(queue);
+					yield=handleQueueTask(queue);
 				} finally {
-					queue.processLock.set(false);
-					queue.isLock.set(false);
+					if(activation!=null)
+					{
+						endActivation(activation, getCompletedTaskCount()-completed, yield);
+					}
+					queue.processState=0;
+					if(yield)
+					{//预算用完,保持锁定重新排队,让其它队列先执行
+						activate();
+					}else
+					{//释放锁之前加入的任务,生产者获取锁失败,由这里重新调度
+						queue.unlockAndReschedule();
+					}
 				}
 			}
 		}
@@ -267,22 +495,31 @@ public class DefaultIndexQueueManager extends AbstractQueueMaganer implements In
 		/**
          * 处理队列任务
          * @param queue
+         * @return 是否因为预算用完而让出线程
          */
-        private void handleQueueTask(SoltQueue queue) {
+        private boolean handleQueueTask(SoltQueue queue) {
         	Thread thread=Thread.currentThread();
+        	final int maxTasks=getDrainMaxTasks();
+        	final long maxNanos=getDrainMaxNanos();
+        	final long startNanos=maxNanos>0?System.nanoTime():0;
+        	int handled=0;
         	for (;;) 
             {
+        		if(handled>0 && isDrainBudgetExhausted(handled, startNanos, maxTasks, maxNanos))
+        		{
+        			return !queue.isEmpty();
+        		}
         		Runnable task = queue.poll();
             	if(task == null)
                 {//停止处理队列
-            		break;
+            		return false;
                 }
+            	handled++;
             	beforeExecute(thread, task);
                 boolean succeed = false;
                 try {
                     task.run();
-                    queue.getCompletedTaskCount().incrementAndGet();
-                    totalCompleteTask.incrementAndGet();
+                    queue.completed();
                     succeed = true;
                     afterExecute(task, null);
                 } catch (RuntimeException e) {
@@ -306,7 +543,7 @@ public class DefaultIndexQueueManager extends AbstractQueueMaganer implements In
 				try {
 					handleQueueTask(queue);
 				} finally {
-					queue.isLock.set(false);
+					queue.lockState=0;
 				}
 			}
 			
@@ -327,8 +564,7 @@ public class DefaultIndexQueueManager extends AbstractQueueMaganer implements In
 		            boolean succeed = false;
 		            try {
 		                task.run();
-		                queue.getCompletedTaskCount().incrementAndGet();
-		                totalCompleteTask.incrementAndGet();
+		                queue.completed();
 		                succeed = true;
 		                afterExecute(task, null);
 		            } catch (RuntimeException e) {
@@ -345,6 +581,10 @@ public class DefaultIndexQueueManager extends AbstractQueueMaganer implements In
 	public static class Builder{
 		QueueFactory queueFactory=QueueFactory.DEFAULT_QUEUE_FACTORY;
 		boolean initQueues;
+		int drainMaxTasks;
+		long drainMaxNanos;
+		boolean metricsEnabled;
+		QueueBound queueBound;
 		public Builder setQueueFactory(QueueFactory queueFactory) {
 			Objects.requireNonNull(queueFactory);
 			this.queueFactory = queueFactory;
@@ -369,10 +609,57 @@ public class DefaultIndexQueueManager extends AbstractQueueMaganer implements In
 			this.queueFactory=QueueFactory.MPSC_QUEUE_FACTORY;
 			return this;
 		}
+		
+		/**
+		 * 设置预分配任务槽位的环形队列工厂,配合TaskTranslator投递时不产生新对象
+		 * @param capacity 每个队列的槽位数量,必须是2的幂
+		 * @return
+		 */
+		public Builder setRingQueueFactory(int capacity) {
+			this.queueFactory=QueueFactory.ring(capacity);
+			return this;
+		}
+
+		/**
+		 * 队列单次调度的处理预算,超出后让出线程重新排队
+		 * @param maxTasks 最多处理任务数量,<=0不限制
+		 * @param maxTime 最多占用时间,<=0不限制
+		 * @param unit
+		 * @return
+		 */
+		public Builder setDrainBudget(int maxTasks,long maxTime,TimeUnit unit) {
+			this.drainMaxTasks=maxTasks;
+			this.drainMaxNanos=unit.toNanos(maxTime);
+			return this;
+		}
+
+		/**
+		 * 是否开启队列指标统计
+		 * @param metricsEnabled
+		 * @return
+		 */
+		public Builder setMetricsEnabled(boolean metricsEnabled) {
+			this.metricsEnabled=metricsEnabled;
+			return this;
+		}
+
+		/**
+		 * 队列容量限制
+		 * @param queueBound null不限制
+		 * @return
+		 */
+		public Builder setQueueBound(QueueBound queueBound) {
+			this.queueBound=queueBound;
+			return this;
+		}
 
 		public DefaultIndexQueueManager build()
 		{
-			return new DefaultIndexQueueManager(queueFactory,initQueues);
+			DefaultIndexQueueManager iqm=new DefaultIndexQueueManager(queueFactory,initQueues);
+			iqm.setDrainBudget(drainMaxTasks, drainMaxNanos, TimeUnit.NANOSECONDS);
+			iqm.setMetricsEnabled(metricsEnabled);
+			iqm.setQueueBound(queueBound);
+			return iqm;
 		}
 	}
 }
\ No newline at end of file
@@ -1,27 +1,107 @@
 package net.jueb.util4j.queue.queueExecutor.groupExecutor.impl;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import net.jueb.util4j.queue.queueExecutor.QueueFactory;
+import net.jueb.util4j.queue.queueExecutor.executor.QueueBound;
 import net.jueb.util4j.queue.queueExecutor.executor.QueueExecutor;
 import net.jueb.util4j.queue.queueExecutor.executor.impl.RunnableQueueExecutorEventWrapper;
 import net.jueb.util4j.queue.queueExecutor.groupExecutor.KeyQueueGroupManager;
 import net.jueb.util4j.queue.queueExecutor.groupExecutor.QueueGroupExecutor.KeyElement;
+import net.jueb.util4j.queue.queueExecutor.queue.RingRunnableQueue;
 
+/**
+ * 键值队列管理器
+ * 可选开启队列回收:队列为空且空闲超过idleTimeout,或者队列数量超过maxQueueCount(优先回收最久未活动的队列)时回收队列,
+ * 避免key(玩家/会话)很多时队列只增不减导致内存无限增长.
+ * 注意:开启回收后,被回收队列上的标签和属性会丢失,长期持有getQueueExecutor返回的引用时,
+ * 后续提交的任务会转交给该key的新队列执行,顺序依然得到保证.
+ * 新建队列发现数量超限时,回收交给{@link #setTrimExecutor(Executor)}异步执行,未设置时在当前线程执行,
+ * 上次回收后间隔{@link #TRIM_INTERVAL_MILLIS}毫秒,或者队列数量又增长了上限的1/4时才再次回收,
+ * 空闲队列不足时不会每次新建都重新扫描,扫描和排序的开销分摊到新建的队列上.
+ * @author juebanlin
+ */
 public class DefaultKeyQueueManager extends AbstractQueueMaganer implements KeyQueueGroupManager{
+	protected final Logger log=LoggerFactory.getLogger(getClass());
 
-	private final Map<String,TaskQueue> queues=new HashMap<>();
+	private final ConcurrentHashMap<String,TaskQueue> queues=new ConcurrentHashMap<>();
 	private final AtomicLong totalCompleteTask=new AtomicLong();
 	
-	private final Object addLock=new Object();
+	/**
+	 * 队列空闲回收时间,毫秒,<=0不回收
+	 */
+	private volatile long idleTimeoutMills;
+	
+	/**
+	 * 最大队列数量,<=0不限制
+	 */
+	private volatile int maxQueueCount;
+	
+	/**
+	 * 累计回收的队列数量
+	 */
+	private final AtomicLong evictedQueueCount=new AtomicLong();
+	
+	/**
+	 * 超出数量限制时的回收锁,同一时刻只有一个线程执行回收
+	 */
+	private final AtomicBoolean trimLock=new AtomicBoolean(false);
+	
+	/**
+	 * 新建队列触发的数量回收最小间隔,毫秒
+	 */
+	public static final long TRIM_INTERVAL_MILLIS=100;
+	
+	/**
+	 * 下次允许新建队列触发数量回收的时间
+	 */
+	private volatile long nextTrimTime;
+	
+	/**
+	 * 未到nextTrimTime时,队列数量达到此值也触发回收
+	 */
+	private volatile int nextTrimSize;
+	
+	/**
+	 * 执行数量回收的执行器,为null时在新建队列的线程执行
+	 */
+	private volatile Executor trimExecutor;
+	
+	/**
+	 * 是否已有回收任务提交到trimExecutor还未执行
+	 */
+	private final AtomicBoolean trimScheduled=new AtomicBoolean(false);
+	
+	private final Runnable trimTask=new Runnable() {
+		@Override
+		public void run() {
+			try {
+				int max=maxQueueCount;
+				if(max>0 && queues.size()>max)
+				{
+					trimQueues(max);
+				}
+			} catch (Throwable e) {
+				log.error(e.getMessage(),e);
+			}finally {
+				trimScheduled.set(false);
+			}
+		}
+	};
 
 	private volatile KeyGroupEventListener listener;
 
@@ -32,6 +112,17 @@ public class DefaultKeyQueueManager extends AbstractQueueMaganer implements KeyQ
 	public DefaultKeyQueueManager(QueueFactory queueFactory) {
 		super(queueFactory);
 	}
+	
+	/**
+	 * @param queueFactory 队列工厂
+	 * @param idleTimeoutMills 队列空闲回收时间,毫秒,<=0不回收
+	 * @param maxQueueCount 最大队列数量,<=0不限制
+	 */
+	public DefaultKeyQueueManager(QueueFactory queueFactory,long idleTimeoutMills,int maxQueueCount) {
+		super(queueFactory);
+		this.idleTimeoutMills=idleTimeoutMills;
+		this.maxQueueCount=maxQueueCount;
+	}
 
 	public void execute(String index, Runnable task) {
 		if (index==null || task == null) {
@@ -62,21 +153,245 @@ public class DefaultKeyQueueManager extends AbstractQueueMaganer implements KeyQ
 		if (index==null) {
 			throw new IllegalArgumentException();
 		}
-		QueueExecutor qe=queues.get(index);
+		TaskQueue qe=queues.get(index);
 		if(qe==null)
 		{
-			synchronized (addLock) {
-				if(qe==null)
+			qe=queues.computeIfAbsent(index, this::newTaskQueue);
+			int max=maxQueueCount;
+			if(max>0 && queues.size()>max)
+			{
+				requestTrim(max);
+			}
+		}
+		return qe;
+	}
+	
+	/**
+	 * 新建队列后数量超限,按间隔限制触发回收
+	 * @param max
+	 */
+	private void requestTrim(int max)
+	{
+		if(System.currentTimeMillis()<nextTrimTime && queues.size()<nextTrimSize)
+		{
+			return;
+		}
+		Executor executor=trimExecutor;
+		if(executor==null)
+		{
+			trimQueues(max);
+			return;
+		}
+		if(trimScheduled.compareAndSet(false, true))
+		{
+			try {
+				executor.execute(trimTask);
+			} catch (RuntimeException e) {
+				trimScheduled.set(false);
+				log.error("submit trim task failed:"+e.getMessage(),e);
+			}
+		}
+	}
+	
+	private TaskQueue newTaskQueue(String index)
+	{
+		TaskQueue tq=new TaskQueue(index,getQueueFactory_().buildQueue());
+		tq.setAlias("key_"+index);
+		tq.setAttribute("key", index);
+		initQueue(tq);
+		return tq;
+	}
+	
+	@Override
+	protected Iterable<TaskQueue> existingQueues() {
+		return queues.values();
+	}
+	
+	public long getIdleTimeout(TimeUnit unit) {
+		return unit.convert(idleTimeoutMills, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 设置队列空闲回收时间
+	 * @param idleTimeout <=0不回收
+	 * @param unit
+	 */
+	public void setIdleTimeout(long idleTimeout,TimeUnit unit) {
+		this.idleTimeoutMills = unit.toMillis(idleTimeout);
+	}
+
+	public int getMaxQueueCount() {
+		return maxQueueCount;
+	}
+
+	/**
+	 * 设置最大队列数量,超出时回收最久未活动的空闲队列
+	 * @param maxQueueCount <=0不限制
+	 */
+	public void setMaxQueueCount(int maxQueueCount) {
+		this.maxQueueCount = maxQueueCount;
+	}
+
+	public Executor getTrimExecutor() {
+		return trimExecutor;
+	}
+
+	/**
+	 * 设置执行数量回收的执行器,回收需要扫描和排序全部队列,设置后不占用提交任务的线程
+	 * @param trimExecutor null在新建队列的线程执行
+	 */
+	public void setTrimExecutor(Executor trimExecutor) {
+		this.trimExecutor = trimExecutor;
+	}
+	
+	/**
+	 * 当前存活的队列数量
+	 * @return
+	 */
+	public int getQueueCount() {
+		return queues.size();
+	}
+
+	/**
+	 * 累计回收的队列数量
+	 * @return
+	 */
+	public long getEvictedQueueCount() {
+		return evictedQueueCount.get();
+	}
+	
+	transient volatile Runnable cleanTask;
+	
+	/**
+	 * 获取回收空闲队列的任务,建议定时执行
+	 * @return
+	 */
+	public Runnable getCleanTask()
+	{
+		if(cleanTask==null)
+		{
+			cleanTask=new CleanTask();
+		}
+		return cleanTask;
+	}
+	
+	private class CleanTask implements Runnable{
+		@Override
+		public void run() {
+			try {
+				cleanIdleQueues();
+			} catch (Throwable e) {
+				log.error(e.getMessage(),e);
+			}
+		}
+	}
+	
+	/**
+	 * 回收空闲超时的队列,并在队列数量超出限制时回收最久未活动的空闲队列
+	 * @return 本次回收的队列数量
+	 */
+	public int cleanIdleQueues()
+	{
+		int count=0;
+		long idleTimeout=idleTimeoutMills;
+		if(idleTimeout>0)
+		{
+			long now=System.currentTimeMillis();
+			for(TaskQueue tq:queues.values())
+			{
+				if(now-tq.lastActiveTime>=idleTimeout && tryEvict(tq))
 				{
-					TaskQueue tq=new TaskQueue(index,getQueueFactory_().buildQueue());
-					tq.setAlias("key_"+index);
-					tq.setAttribute("key", index);
-					queues.put(index,tq);
-					return tq;
+					count++;
 				}
 			}
 		}
-		return qe;
+		int max=maxQueueCount;
+		if(max>0 && queues.size()>max)
+		{
+			count+=trimQueues(max);
+		}
+		return count;
+	}
+	
+	/**
+	 * 队列数量超出限制时,按最后活动时间从旧到新回收空闲队列,回收到限制的3/4避免频繁回收
+	 * @param max
+	 * @return 本次回收的队列数量
+	 */
+	private int trimQueues(int max)
+	{
+		if(!trimLock.compareAndSet(false, true))
+		{
+			return 0;
+		}
+		int count=0;
+		try {
+			int target=max-(max>>2);
+			int needEvict=queues.size()-target;
+			if(needEvict<=0)
+			{
+				return 0;
+			}
+			List<TaskQueue> candidates=new ArrayList<>();
+			for(TaskQueue tq:queues.values())
+			{
+				if(tq.isIdle())
+				{
+					candidates.add(tq);
+				}
+			}
+			candidates.sort(Comparator.comparingLong(tq->tq.lastActiveTime));
+			for(TaskQueue tq:candidates)
+			{
+				if(count>=needEvict)
+				{
+					break;
+				}
+				if(tryEvict(tq))
+				{
+					count++;
+				}
+			}
+		} finally {
+			nextTrimSize=queues.size()+Math.max(1, max>>2);
+			nextTrimTime=System.currentTimeMillis()+TRIM_INTERVAL_MILLIS;
+			trimLock.set(false);
+		}
+		return count;
+	}
+	
+	/**
+	 * 尝试回收队列
+	 * 先占用队列的处理锁阻止队列被调度,在队列监视器内标记为已回收后再确认队列为空,然后移出管理器.
+	 * 生产者入队后检查标记,两边至少有一方能看到对方:回收方看到任务则放弃回收并重新调度,
+	 * 生产者看到标记则由{@link TaskQueue#onEvictedQueueAdd()}处理,它与回收使用同一个监视器,看到的是回收完成或放弃后的状态.
+	 * @param tq
+	 * @return 是否已回收
+	 */
+	private boolean tryEvict(TaskQueue tq)
+	{
+		if(!tq.isLock.compareAndSet(false, true))
+		{//正在处理中
+			return false;
+		}
+		synchronized (tq) {
+			if(tq.isEmpty())
+			{
+				tq.evicted=true;
+				if(tq.isEmpty())
+				{
+					queues.remove(tq.index, tq);
+					evictedQueueCount.incrementAndGet();
+					//之后加入的任务由生产者看到回收标记后转交,这里只释放锁
+					tq.isLock.set(false);
+					return true;
+				}
+				tq.evicted=false;
+			}
+		}
+		//检查期间有任务加入,生产者没有获取到锁,由这里重新调度
+		tq.unlockAndReschedule();
+		return false;
 	}
 
 	/**
@@ -97,6 +412,9 @@ public class DefaultKeyQueueManager extends AbstractQueueMaganer implements KeyQ
 		return 0;
 	}
 
+	/**
+	 * 迭代当前存活的队列,弱一致性,迭代过程中新增或回收的队列不一定可见
+	 */
 	public Iterator<KeyElement<QueueExecutor>> keyIterator(){
 		return new Iterator<KeyElement<QueueExecutor>>() {
 			final Iterator<Entry<String, TaskQueue>> map=queues.entrySet().iterator();
@@ -172,12 +490,30 @@ public class DefaultKeyQueueManager extends AbstractQueueMaganer implements KeyQ
 	     */
 		private final AtomicLong completedTaskCount = new AtomicLong(0);
 		
+		/**
+		 * 上次活动时间,队列创建或者处理完一批任务时更新
+		 */
+		private volatile long lastActiveTime=System.currentTimeMillis();
+		
+		/**
+		 * 是否已被管理器回收
+		 */
+		private volatile boolean evicted;
+		
 		public TaskQueue(String index,Queue<Runnable> queue) {
 			super(queue);
 			this.index=index;
 			init();
 		}
 		
+		/**
+		 * 是否空闲(无任务且未被处理)
+		 * @return
+		 */
+		boolean isIdle() {
+			return !isLock.get() && isEmpty();
+		}
+		
 		/**
 		 * 初始化状态
 		 */
@@ -200,12 +536,80 @@ public class DefaultKeyQueueManager extends AbstractQueueMaganer implements KeyQ
 		protected void onAddAfter(boolean offeredSucceed) {
 			if(offeredSucceed)
 			{
-				if(isLock.compareAndSet(false, true))
-			 	{//一个处理任务产生
-//					onQueueHandleTask(index,new QueueProcessTask(this));
-					onQueueHandleTask(index,this);
-			 	}
+				trySchedule();
+			}
+		}
+		
+		/**
+		 * 尝试获取锁并产生处理任务
+		 */
+		private void trySchedule()
+		{
+			if(evicted)
+			{
+				onEvictedQueueAdd();
+				return;
+			}
+			if(isLock.compareAndSet(false, true))
+		 	{//一个处理任务产生
+				if(evicted)
+				{//获取锁期间被回收
+					isLock.set(false);
+					onEvictedQueueAdd();
+					return;
+				}
+//				onQueueHandleTask(index,new QueueProcessTask(this));
+				activate();
+		 	}
+		}
+		
+		/**
+		 * 释放处理锁,持有锁期间加入的任务由这里重新调度
+		 */
+		void unlockAndReschedule() {
+			isLock.set(false);
+			if(!isEmpty() && isLock.compareAndSet(false, true))
+			{
+				activate();
+			}
+		}
+		
+		/**
+		 * 已回收的队列被添加了任务(调用者持有旧引用)
+		 * 如果该key还没有新队列,则复活此队列,否则把任务按顺序转交给新队列.
+		 * 与回收使用同一个监视器,回收放弃时这里看到的是未回收.
+		 * 返回前任务已经进入新队列,同一生产者之后通过key投递的任务排在它们后面.
+		 */
+		private synchronized void onEvictedQueueAdd()
+		{
+			TaskQueue live=evicted?queues.putIfAbsent(index, this):this;
+			if(live==null)
+			{//复活,不再计入回收数量
+				evicted=false;
+				evictedQueueCount.decrementAndGet();
+				live=this;
+			}
+			if(live==this)
+			{//未回收或已复活
+				if(!isEmpty() && isLock.compareAndSet(false, true))
+				{
+					activate();
+				}
+				return;
 			}
+			Runnable task;
+			while((task=poll())!=null)
+			{//环形队列的槽位转交前先转换
+				live.execute(RingRunnableQueue.detach(task));
+			}
+		}
+
+		/**
+		 * 产生处理任务
+		 */
+		private void activate() {
+			markActivated();
+			onQueueHandleTask(index,this);
 		}
 
 		protected void beforeExecute(Thread thread, Runnable task) {
@@ -221,11 +625,29 @@ public class DefaultKeyQueueManager extends AbstractQueueMaganer implements KeyQ
 			TaskQueue queue=this;
 			if(queue.processLock.compareAndSet(false, true))
 			{//如果此runnable未被执行则执行,已执行则不可再次执行
+				boolean yield=false;
+				Object activation=beginActivation();
+				long completed=activation!=null?completedTaskCount.get():0;
 				try {
-					handleQueueTask(queue);
+					yield=handleQueueTask(queue);
 				} finally {
+					if(activation!=null)
+					{
+						endActivation(activation, completedTaskCount.get()-completed, yield);
+					}
+					queue.lastActiveTime=System.currentTimeMillis();
 					queue.processLock.set(false);
-					queue.isLock.set(false);
+					if(yield)
+					{//预算用完,保持锁定重新排队,让其它队列先执行
+						activate();
+					}else
+					{
+						queue.isLock.set(false);
+						if(!queue.isEmpty())
+						{//释放锁之前加入的任务,生产者获取锁失败,由这里重新调度
+							trySchedule();
+						}
+					}
 				}
 			}
 		}
@@ -233,16 +655,26 @@ public class DefaultKeyQueueManager extends AbstractQueueMaganer implements KeyQ
 		/**
          * 处理队列任务
          * @param queue
+         * @return 是否因为预算用完而让出线程
          */
-        private void handleQueueTask(TaskQueue queue) {
+        private boolean handleQueueTask(TaskQueue queue) {
         	Thread thread=Thread.currentThread();
+        	final int maxTasks=getDrainMaxTasks();
+        	final long maxNanos=getDrainMaxNanos();
+        	final long startNanos=maxNanos>0?System.nanoTime():0;
+        	int handled=0;
         	for (;;) 
             {
+        		if(handled>0 && isDrainBudgetExhausted(handled, startNanos, maxTasks, maxNanos))
+        		{
+        			return !queue.isEmpty();
+        		}
         		Runnable task = queue.poll();
             	if(task == null)
                 {//停止处理队列
-            		break;
+            		return false;
                 }
+            	handled++;
             	beforeExecute(thread, task);
                 boolean succeed = false;
                 try {
@@ -310,12 +742,50 @@ public class DefaultKeyQueueManager extends AbstractQueueMaganer implements KeyQ
 	
 	public static class Builder{
 		QueueFactory queueFactory=DefaultQueueFactory;
+		long idleTimeoutMills;
+		int maxQueueCount;
+		Executor trimExecutor;
+		int drainMaxTasks;
+		long drainMaxNanos;
+		boolean metricsEnabled;
+		QueueBound queueBound;
 		
 		public Builder setQueueFactory(QueueFactory queueFactory) {
 			Objects.requireNonNull(queueFactory);
 			this.queueFactory = queueFactory;
 			return this;
 		}
+		
+		/**
+		 * 队列空闲超过此时间后回收,需要定时执行{@link DefaultKeyQueueManager#getCleanTask()}
+		 * @param idleTimeout <=0不回收
+		 * @param unit
+		 * @return
+		 */
+		public Builder setIdleTimeout(long idleTimeout,TimeUnit unit) {
+			this.idleTimeoutMills=unit.toMillis(idleTimeout);
+			return this;
+		}
+		
+		/**
+		 * 最大队列数量,超出时回收最久未活动的空闲队列
+		 * @param maxQueueCount <=0不限制
+		 * @return
+		 */
+		public Builder setMaxQueueCount(int maxQueueCount) {
+			this.maxQueueCount=maxQueueCount;
+			return this;
+		}
+		/**
+		 * 执行数量回收的执行器,不设置时在新建队列的线程执行
+		 * @param trimExecutor
+		 * @return
+		 */
+		public Builder setTrimExecutor(Executor trimExecutor) {
+			this.trimExecutor=trimExecutor;
+			return this;
+		}
+		
 		/**
 		 * 设置多生产者单消费者队列工厂
 		 * @return 
@@ -325,9 +795,47 @@ public class DefaultKeyQueueManager extends AbstractQueueMaganer implements KeyQ
 			return this;
 		}
 
+		/**
+		 * 队列单次调度的处理预算,超出后让出线程重新排队
+		 * @param maxTasks 最多处理任务数量,<=0不限制
+		 * @param maxTime 最多占用时间,<=0不限制
+		 * @param unit
+		 * @return
+		 */
+		public Builder setDrainBudget(int maxTasks,long maxTime,TimeUnit unit) {
+			this.drainMaxTasks=maxTasks;
+			this.drainMaxNanos=unit.toNanos(maxTime);
+			return this;
+		}
+
+		/**
+		 * 是否开启队列指标统计
+		 * @param metricsEnabled
+		 * @return
+		 */
+		public Builder setMetricsEnabled(boolean metricsEnabled) {
+			this.metricsEnabled=metricsEnabled;
+			return this;
+		}
+
+		/**
+		 * 队列容量限制
+		 * @param queueBound null不限制
+		 * @return
+		 */
+		public Builder setQueueBound(QueueBound queueBound) {
+			this.queueBound=queueBound;
+			return this;
+		}
+
 		public DefaultKeyQueueManager build()
 		{
-			return new DefaultKeyQueueManager(queueFactory);
+			DefaultKeyQueueManager kqm=new DefaultKeyQueueManager(queueFactory,idleTimeoutMills,maxQueueCount);
+			kqm.setDrainBudget(drainMaxTasks, drainMaxNanos, TimeUnit.NANOSECONDS);
+			kqm.setMetricsEnabled(metricsEnabled);
+			kqm.setQueueBound(queueBound);
+			kqm.setTrimExecutor(trimExecutor);
+			return kqm;
 		}
 	}
 }
\ No newline at end of file
@@ -2,18 +2,21 @@ package net.jueb.util4j.queue.queueExecutor.groupExecutor.impl;
 
 import java.security.AccessController;
 import java.security.PrivilegedAction;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +30,8 @@ import net.jueb.util4j.queue.queueExecutor.groupExecutor.IndexQueueGroupManager.
 import net.jueb.util4j.queue.queueExecutor.groupExecutor.KeyQueueGroupManager;
 import net.jueb.util4j.queue.queueExecutor.groupExecutor.KeyQueueGroupManager.KeyGroupEventListener;
 import net.jueb.util4j.queue.queueExecutor.groupExecutor.QueueGroupExecutor;
+import net.jueb.util4j.queue.queueExecutor.metrics.QueueFlightRecorder;
+import net.jueb.util4j.queue.queueExecutor.queue.DisruptorRunnableQueue;
 import net.jueb.util4j.queue.queueExecutor.queue.RunnableQueueEventWrapper;
 
 public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
@@ -39,6 +44,8 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
 
     private static final int DEFAULT_KEEP_ALIVE_SEC = 30;
     
+    private static final int DEFAULT_AFFINITY_OVERFLOW = 64;
+    
     private static final IndexQueueGroupManager DEFAULT_IndexQueueGroupManager = new DefaultIndexQueueManager();
    
     private static final KeyQueueGroupManager DEFAULT_KeyQueueGroupManager = new DefaultKeyQueueManager();
@@ -79,9 +86,19 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
     private final SystemQueue systemQueue;
     
     /**
-     * 队列处理线程
+     * 队列处理线程,保持创建顺序,线程数量不变时索引队列到工作线程的映射也不变
+     */
+    private final Set<Worker> workers = new LinkedHashSet<Worker>();
+    
+    /**
+     * 工作线程快照,用于无锁的任务分发和窃取,在workers锁内更新
      */
-    private final Set<Worker> workers = new HashSet<Worker>();
+    private volatile Worker[] workerArray = new Worker[0];
+    
+    /**
+     * 当前线程对应的工作线程
+     */
+    private final ThreadLocal<Worker> currentWorker = new ThreadLocal<Worker>();
 
     /**
      * 待命线程数量
@@ -104,6 +121,52 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
      */
     private boolean nullContextClassLoader=true;
     
+    /**
+     * 工作窃取模式
+     * 开启后就绪的队列不再全部投递到共享的系统队列,而是投递到工作线程自己的本地队列(外部线程投递则随机选一个工作线程),
+     * 空闲的工作线程从其它工作线程的本地队列尾部窃取,减少多核下对系统队列的竞争.
+     * 单个队列同一时刻只会被一个线程处理,顺序保证不变.
+     */
+    private volatile boolean workStealing;
+    
+    /**
+     * 亲和模式
+     * 开启后索引队列的处理任务按索引固定投递到一个工作线程(home)的本地队列,同一个队列总在同一个线程上执行,
+     * 队列访问的状态留在该线程所在核心的缓存中.home线程本地积压达到affinityOverflow时投递到系统队列由其它线程处理.
+     * 线程数量变化时映射会改变,适合固定大小的线程池.同时开启工作窃取时空闲线程也可以窃取home线程的积压.
+     */
+    private volatile boolean affinity;
+    
+    /**
+     * 亲和模式下home线程本地队列积压上限
+     */
+    private volatile int affinityOverflow=DEFAULT_AFFINITY_OVERFLOW;
+    
+    /**
+     * 优先级通道,为null时所有就绪队列进入系统队列
+     */
+    private volatile PriorityLanes priorityLanes;
+    
+    /**
+     * 自适应线程池控制器,为null时没有空闲线程即扩容,空闲超时缩容
+     */
+    private volatile AdaptivePoolController poolController;
+    
+    /**
+     * 投递到系统队列(含本地队列)的任务数量
+     */
+    private final LongAdder systemEnqueued=new LongAdder();
+    
+    /**
+     * 工作线程取出的系统任务数量
+     */
+    private final LongAdder systemDequeued=new LongAdder();
+    
+    /**
+     * 控制器缩容投递的还未执行的退出任务数量
+     */
+    private final AtomicInteger pendingResizeExits=new AtomicInteger();
+    
     public DefaultQueueGroupExecutor() {
         this(DEFAULT_INITIAL_THREAD_POOL_SIZE, DEFAULT_MAX_THREAD_POOL);
     }
@@ -171,8 +234,24 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
         this.iqm.setGroupEventListener(new IndexGroupEventListener() {
 			@Override
 			public void onQueueHandleTask(short solt, Runnable handleTask) {
+				PriorityLanes lanes=priorityLanes;
+				if(lanes!=null)
+				{
+					int lane=lanes.laneOf(solt, handleTask);
+					if(lane!=lanes.getDefaultLane())
+					{
+						laneExecute(lanes, lane, handleTask);
+						return;
+					}
+				}
 				//当sqm有可以处理某队列的任务产生时,丢到系统队列,当系统队列
-				systemExecute(handleTask);
+				if(affinity)
+				{
+					affinityExecute(solt, handleTask);
+				}else
+				{
+					systemExecute(handleTask);
+				}
 			}
 		});
         this.kqm=kqm;
@@ -180,10 +259,28 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
 			
 			@Override
 			public void onQueueHandleTask(String key, Runnable handleTask) {
+				PriorityLanes lanes=priorityLanes;
+				if(lanes!=null)
+				{
+					int lane=lanes.laneOf(key, handleTask);
+					if(lane!=lanes.getDefaultLane())
+					{
+						laneExecute(lanes, lane, handleTask);
+						return;
+					}
+				}
 				//当sqm有可以处理某队列的任务产生时,丢到系统队列,当系统队列
 				systemExecute(handleTask);
 			}
 		});
+        if(assistExecutor!=null && kqm instanceof DefaultKeyQueueManager)
+        {//队列数量回收交给辅助执行器,不占用提交任务的线程
+        	DefaultKeyQueueManager dkqm=(DefaultKeyQueueManager)kqm;
+        	if(dkqm.getTrimExecutor()==null)
+        	{
+        		dkqm.setTrimExecutor(assistExecutor);
+        	}
+        }
         this.systemQueue=new SystemQueue(bossQueue);
     }
     
@@ -231,6 +328,58 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
 		this.nullContextClassLoader = nullContextClassLoader;
 	}
 
+	public boolean isWorkStealing() {
+		return workStealing;
+	}
+
+	/**
+	 * 设置工作窃取模式,运行中切换也是安全的,本地队列中剩余的任务依然会被处理
+	 * @param workStealing
+	 */
+	public void setWorkStealing(boolean workStealing) {
+		this.workStealing = workStealing;
+	}
+
+	public PriorityLanes getPriorityLanes() {
+		return priorityLanes;
+	}
+
+	/**
+	 * 设置优先级通道,应在使用之前设置,运行中替换会使旧通道中排队的队列不再被处理
+	 * @param priorityLanes null不区分优先级
+	 */
+	public void setPriorityLanes(PriorityLanes priorityLanes) {
+		this.priorityLanes = priorityLanes;
+	}
+
+	public boolean isAffinity() {
+		return affinity;
+	}
+
+	/**
+	 * 设置亲和模式,运行中切换也是安全的,队列同一时刻依然只会被一个线程处理
+	 * @param affinity
+	 */
+	public void setAffinity(boolean affinity) {
+		this.affinity = affinity;
+	}
+
+	public int getAffinityOverflow() {
+		return affinityOverflow;
+	}
+
+	/**
+	 * 亲和模式下home线程本地队列积压达到此值时,新的就绪队列投递到系统队列
+	 * @param affinityOverflow
+	 */
+	public void setAffinityOverflow(int affinityOverflow) {
+		if(affinityOverflow<=0)
+		{
+			throw new IllegalArgumentException("affinityOverflow: " + affinityOverflow);
+		}
+		this.affinityOverflow = affinityOverflow;
+	}
+
 	public int getCorePoolSize() {
 		return corePoolSize;
 	}
@@ -248,7 +397,7 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
 	                removeWorker();
 	            }
 	        }
-	        setCorePoolSize(corePoolSize);
+	        this.corePoolSize=corePoolSize;
 	    }
 	}
 
@@ -261,7 +410,7 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
 	        throw new IllegalArgumentException("maximumPoolSize: " + maximumPoolSize);
 	    }
 	    synchronized (workers) {
-	        setMaximumPoolSize(maximumPoolSize);
+	        this.maximumPoolSize=maximumPoolSize;
 	        int difference = workers.size() - maximumPoolSize;
 	        while (difference > 0) {
 	            removeWorker();
@@ -282,6 +431,94 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
 	    }
 	}
 
+	/**
+	 * 待命线程数量
+	 * @return
+	 */
+	public int getIdleWorkerCount() {
+		return idleWorkers.get();
+	}
+
+	/**
+	 * 累计投递到系统队列的任务数量
+	 * @return
+	 */
+	public long getSystemEnqueuedCount() {
+		return systemEnqueued.sum();
+	}
+
+	/**
+	 * 累计从系统队列取出的任务数量
+	 * @return
+	 */
+	public long getSystemDequeuedCount() {
+		return systemDequeued.sum();
+	}
+
+	public AdaptivePoolController getAdaptivePoolController() {
+		return poolController;
+	}
+
+	/**
+	 * 设置自适应线程池控制器,控制器依赖时间轮定时采样
+	 * @param controller 为null则恢复默认的扩容缩容方式
+	 */
+	public synchronized void setAdaptivePoolController(AdaptivePoolController controller) {
+		//控制器采样时持有自身锁再获取workers锁,这里不能持有workers锁
+		AdaptivePoolController old=this.poolController;
+		if(old==controller)
+		{
+			return;
+		}
+		if(old!=null)
+		{
+			old.detach();
+		}
+		this.poolController=controller;
+		if(controller!=null && !shutdown)
+		{
+			controller.attach(this);
+		}
+	}
+
+	/**
+	 * 调整线程数量到目标值,由自适应控制器调用
+	 * 扩容立即创建线程,缩容投递退出任务,线程处理完手上的任务后退出,不低于核心线程数
+	 * 已投递未执行的退出任务计入缩容数量,积压时多次采样不会重复投递
+	 * @param target
+	 */
+	void resizePool(int target) {
+		synchronized (workers) {
+			if(shutdown)
+			{
+				return;
+			}
+			int max=getMaximumPoolSize();
+			while(workers.size()-pendingResizeExits.get()<target && workers.size()<max)
+			{
+				addWorkerUnsafe();
+			}
+			int min=Math.max(target, getCorePoolSize());
+			for (int i = workers.size()-pendingResizeExits.get()-min; i > 0; i--) {
+				pendingResizeExits.incrementAndGet();
+				systemExecute(resizeExitTask);
+			}
+		}
+	}
+
+	/**
+	 * 空闲超时后保留的线程数量
+	 * @return
+	 */
+	private int retainedPoolSize() {
+		AdaptivePoolController controller=poolController;
+		if(controller==null)
+		{
+			return getCorePoolSize();
+		}
+		return Math.max(getCorePoolSize(), controller.getTargetPoolSize());
+	}
+
 	public int getLargestPoolSize() {
 		return largestPoolSize;
 	}
@@ -327,6 +564,11 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
 	        return;
 	    }
 	    shutdown = true;
+	    AdaptivePoolController controller=poolController;
+	    if(controller!=null)
+	    {
+	    	controller.detach();
+	    }
 	    synchronized (workers) 
 	    {
 	        for (int i = workers.size(); i > 0; i--) 
@@ -360,6 +602,22 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
 	    }
 	}
 
+	/**
+	 * 预先启动全部核心线程,亲和模式下避免运行中线程数量变化导致映射改变
+	 * @return 启动的线程数量
+	 */
+	public int prestartAllCoreThreads() {
+		int n=0;
+		synchronized (workers) {
+			while(!shutdown && workers.size()<getCorePoolSize())
+			{
+				addWorkerUnsafe();
+				n++;
+			}
+		}
+		return n;
+	}
+
 	/**
 	 * 唤醒工作线程(如果还没超过最大工作线程)
 	 */
@@ -379,9 +637,16 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
     private void doWakeUpWorker() {
         if (idleWorkers.get() == 0) {
             synchronized (workers) {
+            	if (shutdown) {
+            		return;//关闭后退出任务不能再补充线程
+            	}
             	if (workers.size() >= getMaximumPoolSize()) {
                     return;
                 }
+            	AdaptivePoolController controller=poolController;
+            	if (controller!=null && !workers.isEmpty() && workers.size() >= controller.getTargetPoolSize()) {
+            		return;//由控制器决定是否扩容
+            	}
                 if (workers.isEmpty() || (idleWorkers.get() == 0)) {
                 	addWorkerUnsafe();
                 }
@@ -410,9 +675,18 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
          idleWorkers.incrementAndGet();
          thread.start();
          workers.add(worker);
+         updateWorkerArray();
          if (workers.size() > getLargestPoolSize()) {
              setLargestPoolSize(workers.size());
          }
+         QueueFlightRecorder.worker("spawn", thread, workers.size());
+    }
+
+    /**
+     * 更新工作线程快照,调用者需持有workers锁
+     */
+    private void updateWorkerArray() {
+    	workerArray = workers.toArray(new Worker[workers.size()]);
     }
 
     private void removeWorker() {
@@ -435,6 +709,16 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
 		}
 	};
 	
+	/**
+	 * 控制器缩容的退出任务,执行时减少待执行计数
+	 */
+	final Runnable resizeExitTask=new WorkerExitTask() {
+		@Override
+		public void run() {
+			pendingResizeExits.decrementAndGet();
+		}
+	};
+	
 	protected interface WorkerExitTask extends Runnable{
 		
 	}
@@ -453,17 +737,47 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
      * @author juebanlin
      */
     class Worker implements Runnable {
+    	/**
+    	 * 本地就绪队列,自己从头部取,其它线程从尾部窃取
+    	 */
+    	final ConcurrentLinkedDeque<Runnable> localQueue=new ConcurrentLinkedDeque<>();
+    	
+    	/**
+    	 * 本地队列任务数量
+    	 */
+    	final AtomicInteger localSize=new AtomicInteger();
+    	
+    	/**
+    	 * 工作线程,用于定向唤醒
+    	 */
+    	volatile Thread thread;
+    	
+    	/**
+    	 * 取任务次数,用于优先级通道防饿死
+    	 */
+    	int pollTicket;
+    	
+    	/**
+    	 * 是否已退出
+    	 */
+    	volatile boolean exited;
+    	
 		public void run() {
+            thread=Thread.currentThread();
             long lastRunTaskTime=System.currentTimeMillis();
+            currentWorker.set(this);
+            String exitReason="error";
             try {
                 for (;;) 
                 {
                 	Runnable task=null;
+                	Object wait=QueueFlightRecorder.beginWait();
                 	try {//等待任务
                 		workerWaitCondition.init();
                 		task=waitConditionStrategy.waitFor(workerWaitCondition, getKeepAliveTime(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
 					} catch (InterruptedException e) {
 					}
+                	QueueFlightRecorder.endWait(wait, task!=null);
                 	if(task==null)
                 	{//如果没有任务
                 		long freeTime=System.currentTimeMillis()-lastRunTaskTime;//空闲时间
@@ -471,15 +785,17 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
                 		{//空闲时间达标,如果不是核心线程则退出
                 			synchronized (workers) 
                             {
-                                if (workers.size() > getCorePoolSize()) 
+                                if (workers.size() > retainedPoolSize()) 
                                 {
                                     workers.remove(this);
+                                    exitReason="idle";
                                     break;//退出线程
                                 }
                             }
                 		}
                 		continue;//继续寻找任务
                 	}
+                	systemDequeued.increment();
                 	idleWorkers.decrementAndGet();//活动线程-1
 					try {
 						wakeUpWorkerIfNecessary();//预备一个线程,如果有新任务则可立马执行
@@ -491,18 +807,64 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
 						if(task instanceof WorkerExitTask) 
 						{//如果是退出任务则退出,不管执行是否异常
 							log.debug("退出线程,from WorkerExitTask:"+task);
+							exitReason="exitTask";
 							break;
 						}
 					}
                 }
             } finally {
+                int poolSize;
                 synchronized (workers) {
                     workers.remove(this);
+                    updateWorkerArray();
                     workers.notifyAll();
                     idleWorkers.decrementAndGet();//异常或者正常退出都会活动线程-1
+                    poolSize=workers.size();
                 }
+                QueueFlightRecorder.worker(exitReason, thread, poolSize);
+                currentWorker.remove();
+                exited=true;
+                drainLocalTasks();
             }
         }
+		
+		/**
+		 * 本地队列剩余的任务转交给系统队列
+		 */
+		void drainLocalTasks()
+		{
+			Runnable task;
+			while((task=pollLocal())!=null)
+			{
+				systemQueue.add(task);
+			}
+		}
+		
+		void offerLocal(Runnable task)
+		{
+			localSize.incrementAndGet();
+			localQueue.offerLast(task);
+		}
+		
+		Runnable pollLocal()
+		{
+			Runnable task=localQueue.pollFirst();
+			if(task!=null)
+			{
+				localSize.decrementAndGet();
+			}
+			return task;
+		}
+		
+		Runnable stealLocal()
+		{
+			Runnable task=localQueue.pollLast();
+			if(task!=null)
+			{
+				localSize.decrementAndGet();
+			}
+			return task;
+		}
         
 		/**
 		 * 查找任务
@@ -510,7 +872,45 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
 		 */
 		private Runnable findTask()
 		{
-        	return systemQueue.poll();//执行系统任务
+			Runnable task=pollLocal();//本地任务
+			if(task==null)
+			{
+				PriorityLanes lanes=priorityLanes;
+				task=lanes==null?systemQueue.poll():lanes.poll(systemQueue, pollTicket++);//执行系统任务
+			}
+			if(task==null && workStealing)
+			{
+				task=steal();
+			}
+			return task;
+		}
+		
+		/**
+		 * 从随机一个工作线程开始,依次尝试窃取其本地队列尾部的任务
+		 * @return
+		 */
+		private Runnable steal()
+		{
+			Worker[] ws=workerArray;
+			int n=ws.length;
+			if(n<=1)
+			{
+				return null;
+			}
+			int start=ThreadLocalRandom.current().nextInt(n);
+			for(int i=0;i<n;i++)
+			{
+				Worker victim=ws[(start+i)%n];
+				if(victim!=this)
+				{
+					Runnable task=victim.stealLocal();
+					if(task!=null)
+					{
+						return task;
+					}
+				}
+			}
+			return null;
 		}
         
         WorkerWaitCondition workerWaitCondition=new WorkerWaitCondition();
@@ -585,7 +985,7 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
     {
     	wakeUpWorkerIfNecessary();
 	    //如果有线程阻塞等待,则释放阻塞去处理任务
-	    waitConditionStrategy.signalAllWhenBlocking();
+	    waitConditionStrategy.signalWhenBlocking();
     }
     
 	public long getCompletedTaskCount() {
@@ -598,15 +998,103 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
     	{
     		throw new RuntimeException("task is null");
     	}
+		systemEnqueued.increment();
+		if(workStealing && !(task instanceof WorkerExitTask))
+		{
+			if(localExecute(task))
+			{
+				return;
+			}
+		}
 		systemQueue.add(task);
 	}
 	
+	/**
+	 * 投递到工作线程的本地队列
+	 * 工作线程内投递到自己的本地队列,外部线程随机选择一个工作线程
+	 * @param task
+	 * @return 没有工作线程时返回false
+	 */
+	private boolean localExecute(Runnable task)
+	{
+		Worker worker=currentWorker.get();
+		if(worker==null)
+		{
+			Worker[] ws=workerArray;
+			if(ws.length==0)
+			{
+				return false;
+			}
+			worker=ws[ThreadLocalRandom.current().nextInt(ws.length)];
+		}
+		systemTaskOfferBefore(systemQueue);
+		worker.offerLocal(task);
+		if(worker.exited)
+		{//投递期间工作线程退出了
+			worker.drainLocalTasks();
+		}
+		systemTaskOfferAfter(systemQueue);
+		return true;
+	}
+	
+	/**
+	 * 亲和模式投递,按索引投递到固定工作线程的本地队列并定向唤醒该线程
+	 * 没有工作线程或者home线程积压过多时投递到系统队列
+	 * @param index
+	 * @param task
+	 */
+	protected void affinityExecute(short index,Runnable task)
+	{
+		Worker[] ws=workerArray;
+		if(ws.length==0)
+		{
+			systemExecute(task);
+			return;
+		}
+		Worker home=ws[(index & 0xFFFF)%ws.length];
+		if(home.exited || home.localSize.get()>=affinityOverflow)
+		{//home线程饱和,溢出给其它线程
+			systemExecute(task);
+			return;
+		}
+		systemEnqueued.increment();
+		systemTaskOfferBefore(systemQueue);
+		home.offerLocal(task);
+		if(home.exited)
+		{//投递期间工作线程退出了
+			home.drainLocalTasks();
+			systemTaskOfferAfter(systemQueue);
+			return;
+		}
+		Thread thread=home.thread;
+		if(thread!=null)
+		{//线程还没运行时,运行后会先检查本地队列
+			waitConditionStrategy.signalWhenBlocking(thread);
+		}
+	}
+	
+	/**
+	 * 投递到非默认的优先级通道
+	 * 本地队列(工作窃取,亲和模式)只用于默认通道
+	 * @param lanes
+	 * @param lane
+	 * @param task
+	 */
+	private void laneExecute(PriorityLanes lanes,int lane,Runnable task)
+	{
+		systemEnqueued.increment();
+		systemTaskOfferBefore(systemQueue);
+		lanes.offer(lane, task);
+		systemTaskOfferAfter(systemQueue);
+	}
+	
 	protected void systemExecute(List<Runnable> tasks)
 	{
 		if(tasks ==null)
     	{
     		throw new RuntimeException("tasks is null");
     	}
+		systemEnqueued.add(tasks.size());
 		systemQueue.addAll(tasks);
 	}
 
@@ -671,6 +1159,10 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
         IndexQueueGroupManager iqm=DEFAULT_IndexQueueGroupManager;
         KeyQueueGroupManager kqm=DEFAULT_KeyQueueGroupManager;
         Executor assistExecutor;
+        boolean workStealing;
+        boolean affinity;
+        AdaptivePoolController poolController;
+        PriorityLanes priorityLanes;
 		
         public Builder setCorePoolSize(int corePoolSize)
         {
@@ -719,6 +1211,17 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
         	return this;
         }
         
+        /**
+         * 使用基于Disruptor环形缓冲区的主队列,槽位预分配,调度事件不再分配链表节点
+         * @param bufferSize 环形缓冲区大小,必须是2的幂,建议不小于同时就绪的队列数量
+         * @return
+         */
+        public Builder setDisruptorBossQueue(int bufferSize)
+        {
+        	this.bossQueue=new DisruptorRunnableQueue(bufferSize);
+        	return this;
+        }
+        
         public Builder setIndexQueueGroupManager(IndexQueueGroupManager iqm)
         {
         	this.iqm=iqm;
@@ -731,6 +1234,50 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
         	return this;
         }
         
+        /**
+         * 工作窃取模式
+         * @param workStealing
+         * @return
+         */
+        public Builder setWorkStealing(boolean workStealing)
+        {
+        	this.workStealing=workStealing;
+        	return this;
+        }
+        
+        /**
+         * 亲和模式,索引队列固定在一个工作线程上执行
+         * @param affinity
+         * @return
+         */
+        public Builder setAffinity(boolean affinity)
+        {
+        	this.affinity=affinity;
+        	return this;
+        }
+        
+        /**
+         * 优先级通道,高优先级通道的队列先于其它队列被处理
+         * @param priorityLanes
+         * @return
+         */
+        public Builder setPriorityLanes(PriorityLanes priorityLanes)
+        {
+        	this.priorityLanes=priorityLanes;
+        	return this;
+        }
+        
+        /**
+         * 自适应线程池控制器,按系统队列积压和等待时间在核心线程数和最大线程数之间调整线程数量
+         * @param poolController
+         * @return
+         */
+        public Builder setAdaptivePoolController(AdaptivePoolController poolController)
+        {
+        	this.poolController=poolController;
+        	return this;
+        }
+        
         public DefaultQueueGroupExecutor build()
 		{
         	DefaultQueueGroupExecutor qe=new DefaultQueueGroupExecutor(corePoolSize, 
@@ -742,6 +1289,10 @@ public class DefaultQueueGroupExecutor implements QueueGroupExecutor{
 					bossQueue, 
 					iqm, 
 					kqm,assistExecutor);
+        	qe.setWorkStealing(workStealing);
+        	qe.setAffinity(affinity);
+        	qe.setPriorityLanes(priorityLanes);
+        	qe.setAdaptivePoolController(poolController);
 			return qe;
 		}
 	}
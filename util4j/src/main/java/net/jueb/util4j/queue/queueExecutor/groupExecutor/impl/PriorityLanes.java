@@ -0,0 +1,311 @@
+package net.jueb.util4j.queue.queueExecutor.groupExecutor.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import net.jueb.util4j.queue.queueExecutor.executor.QueueExecutor;
+
+/**
+ * 优先级通道
+ * 就绪的队列按索引范围,键值前缀或者队列标签分配到不同通道,通道0优先级最高,工作线程优先处理高优先级通道.
+ * 防饿死:每个工作线程每取starvationInterval次任务,有一次从较低的通道开始查找(依次轮换),低通道至少获得相应比例的处理机会.
+ * 默认通道使用执行器的系统队列,其它通道各自一个队列.一个实例只能用于一个执行器.
+ * @author juebanlin
+ */
+public final class PriorityLanes {
+
+	public static final int DEFAULT_STARVATION_INTERVAL=8;
+
+	private final int laneCount;
+	private final int defaultLane;
+	private final int starvationInterval;
+	private final IndexRange[] indexRanges;
+	private final LaneRule[] keyPrefixes;
+	private final LaneRule[] tags;
+
+	/**
+	 * 通道队列,默认通道为null
+	 */
+	private final Queue<Runnable>[] queues;
+
+	@SuppressWarnings({"unchecked","rawtypes"})
+	private PriorityLanes(Builder builder) {
+		this.laneCount=builder.laneCount;
+		this.defaultLane=builder.defaultLane;
+		this.starvationInterval=builder.starvationInterval;
+		this.indexRanges=builder.indexRanges.toArray(new IndexRange[0]);
+		this.keyPrefixes=builder.keyPrefixes.toArray(new LaneRule[0]);
+		this.tags=builder.tags.toArray(new LaneRule[0]);
+		this.queues=new Queue[laneCount];
+		for(int i=0;i<laneCount;i++)
+		{
+			if(i!=defaultLane)
+			{
+				queues[i]=new ConcurrentLinkedQueue<>();
+			}
+		}
+	}
+
+	public int getLaneCount() {
+		return laneCount;
+	}
+
+	public int getDefaultLane() {
+		return defaultLane;
+	}
+
+	/**
+	 * 索引队列的通道,先按标签再按索引范围
+	 * @param index
+	 * @param handleTask 队列处理任务,队列管理器使用队列自身
+	 * @return
+	 */
+	public int laneOf(short index,Runnable handleTask) {
+		int lane=tagLane(handleTask);
+		if(lane>=0)
+		{
+			return lane;
+		}
+		int i=index & 0xFFFF;
+		for(IndexRange r:indexRanges)
+		{
+			if(i>=r.from && i<=r.to)
+			{
+				return r.lane;
+			}
+		}
+		return defaultLane;
+	}
+
+	/**
+	 * 键值队列的通道,先按标签再按键值前缀
+	 * @param key
+	 * @param handleTask 队列处理任务,队列管理器使用队列自身
+	 * @return
+	 */
+	public int laneOf(String key,Runnable handleTask) {
+		int lane=tagLane(handleTask);
+		if(lane>=0)
+		{
+			return lane;
+		}
+		for(LaneRule r:keyPrefixes)
+		{
+			if(key.startsWith(r.value))
+			{
+				return r.lane;
+			}
+		}
+		return defaultLane;
+	}
+
+	private int tagLane(Runnable handleTask) {
+		if(tags.length>0 && handleTask instanceof QueueExecutor)
+		{
+			QueueExecutor queue=(QueueExecutor)handleTask;
+			for(LaneRule r:tags)
+			{
+				if(queue.hasTag(r.value))
+				{
+					return r.lane;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 投递到非默认通道
+	 * @param lane
+	 * @param task
+	 */
+	void offer(int lane,Runnable task) {
+		queues[lane].offer(task);
+	}
+
+	/**
+	 * 按优先级取任务
+	 * @param systemQueue 默认通道
+	 * @param ticket 工作线程取任务的次数,用于防饿死轮换
+	 * @return
+	 */
+	Runnable poll(Queue<Runnable> systemQueue,int ticket) {
+		ticket&=Integer.MAX_VALUE;//计数溢出后保持非负
+		int start=0;
+		if(laneCount>1 && ticket%starvationInterval==0)
+		{//从较低的通道开始
+			start=1+(ticket/starvationInterval)%(laneCount-1);
+		}
+		for(int i=0;i<laneCount;i++)
+		{
+			int lane=(start+i)%laneCount;
+			Queue<Runnable> q=lane==defaultLane?systemQueue:queues[lane];
+			Runnable task=q.poll();
+			if(task!=null)
+			{
+				return task;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 非默认通道中的任务,关闭时转移到系统队列
+	 * @return
+	 */
+	List<Runnable> drain() {
+		List<Runnable> list=new ArrayList<>();
+		for(Queue<Runnable> q:queues)
+		{
+			Runnable task;
+			while(q!=null && (task=q.poll())!=null)
+			{
+				list.add(task);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * 通道中排队的任务数量,不含默认通道
+	 * @param lane
+	 * @return
+	 */
+	public int size(int lane) {
+		Queue<Runnable> q=queues[lane];
+		return q==null?0:q.size();
+	}
+
+	@Override
+	public String toString() {
+		return "PriorityLanes [laneCount=" + laneCount + ", defaultLane=" + defaultLane + ", starvationInterval="
+				+ starvationInterval + "]";
+	}
+
+	private static final class IndexRange{
+		final int from;
+		final int to;
+		final int lane;
+		IndexRange(int from, int to, int lane) {
+			this.from = from;
+			this.to = to;
+			this.lane = lane;
+		}
+	}
+
+	private static final class LaneRule{
+		final String value;
+		final int lane;
+		LaneRule(String value, int lane) {
+			this.value = value;
+			this.lane = lane;
+		}
+	}
+
+	public static class Builder{
+		final int laneCount;
+		int defaultLane;
+		int starvationInterval=DEFAULT_STARVATION_INTERVAL;
+		final List<IndexRange> indexRanges=new ArrayList<>();
+		final List<LaneRule> keyPrefixes=new ArrayList<>();
+		final List<LaneRule> tags=new ArrayList<>();
+
+		/**
+		 * @param laneCount 通道数量,默认通道为最低优先级
+		 */
+		public Builder(int laneCount) {
+			if(laneCount<=0)
+			{
+				throw new IllegalArgumentException("laneCount:"+laneCount);
+			}
+			this.laneCount=laneCount;
+			this.defaultLane=laneCount-1;
+		}
+
+		private void checkLane(int lane) {
+			if(lane<0 || lane>=laneCount)
+			{
+				throw new IllegalArgumentException("lane:"+lane);
+			}
+		}
+
+		/**
+		 * 没有匹配规则的队列使用的通道,默认为最低优先级
+		 * @param lane
+		 * @return
+		 */
+		public Builder setDefaultLane(int lane) {
+			checkLane(lane);
+			this.defaultLane=lane;
+			return this;
+		}
+
+		/**
+		 * 防饿死间隔,每取多少次任务从较低通道开始查找一次,默认8
+		 * @param starvationInterval
+		 * @return
+		 */
+		public Builder setStarvationInterval(int starvationInterval) {
+			if(starvationInterval<=0)
+			{
+				throw new IllegalArgumentException("starvationInterval:"+starvationInterval);
+			}
+			this.starvationInterval=starvationInterval;
+			return this;
+		}
+
+		/**
+		 * 索引范围[from,to]的队列分配到通道,按无符号索引比较
+		 * @param from
+		 * @param to
+		 * @param lane
+		 * @return
+		 */
+		public Builder addIndexRange(short from,short to,int lane) {
+			checkLane(lane);
+			int f=from & 0xFFFF;
+			int t=to & 0xFFFF;
+			if(f>t)
+			{
+				throw new IllegalArgumentException("from:"+f+",to:"+t);
+			}
+			indexRanges.add(new IndexRange(f, t, lane));
+			return this;
+		}
+
+		/**
+		 * 键值以prefix开头的队列分配到通道,按添加顺序匹配
+		 * @param prefix
+		 * @param lane
+		 * @return
+		 */
+		public Builder addKeyPrefix(String prefix,int lane) {
+			Objects.requireNonNull(prefix);
+			checkLane(lane);
+			keyPrefixes.add(new LaneRule(prefix, lane));
+			return this;
+		}
+
+		/**
+		 * 带有标签的队列分配到通道,优先于索引范围和键值前缀
+		 * 标签通过{@link QueueExecutor#addTag(String)}添加,应在队列使用之前设置
+		 * @param tag
+		 * @param lane
+		 * @return
+		 */
+		public Builder addTag(String tag,int lane) {
+			Objects.requireNonNull(tag);
+			checkLane(lane);
+			tags.add(new LaneRule(tag, lane));
+			return this;
+		}
+
+		public PriorityLanes build()
+		{
+			return new PriorityLanes(this);
+		}
+	}
+}
@@ -27,6 +27,7 @@ import net.jueb.util4j.queue.queueExecutor.groupExecutor.IndexQueueGroupManager.
 import net.jueb.util4j.queue.queueExecutor.groupExecutor.KeyQueueGroupManager;
 import net.jueb.util4j.queue.queueExecutor.groupExecutor.KeyQueueGroupManager.KeyGroupEventListener;
 import net.jueb.util4j.queue.queueExecutor.groupExecutor.QueueGroupExecutor;
+import net.jueb.util4j.queue.queueExecutor.queue.DisruptorRunnableQueue;
 import net.jueb.util4j.queue.queueExecutor.queue.RunnableQueueEventWrapper;
 
 public class QueuesExecutorService extends AbstractExecutorService implements QueueGroupExecutor{
@@ -100,6 +101,11 @@ public class QueuesExecutorService extends AbstractExecutorService implements Qu
      */
     private final Executor assistExecutor;
     
+    /**
+     * 优先级通道,为null时所有就绪队列进入系统队列
+     */
+    private volatile PriorityLanes priorityLanes;
+    
     public QueuesExecutorService() {
         this(DEFAULT_INITIAL_THREAD_POOL_SIZE, DEFAULT_MAX_THREAD_POOL);
     }
@@ -168,6 +174,16 @@ public class QueuesExecutorService extends AbstractExecutorService implements Qu
         this.iqm.setGroupEventListener(new IndexGroupEventListener() {
 			@Override
 			public void onQueueHandleTask(short solt, Runnable handleTask) {
+				PriorityLanes lanes=priorityLanes;
+				if(lanes!=null)
+				{
+					int lane=lanes.laneOf(solt, handleTask);
+					if(lane!=lanes.getDefaultLane())
+					{
+						laneExecute(lanes, lane, handleTask);
+						return;
+					}
+				}
 				//当sqm有可以处理某队列的任务产生时,丢到系统队列,当系统队列
 				systemExecute(handleTask);
 			}
@@ -177,6 +193,16 @@ public class QueuesExecutorService extends AbstractExecutorService implements Qu
 			
 			@Override
 			public void onQueueHandleTask(String key, Runnable handleTask) {
+				PriorityLanes lanes=priorityLanes;
+				if(lanes!=null)
+				{
+					int lane=lanes.laneOf(key, handleTask);
+					if(lane!=lanes.getDefaultLane())
+					{
+						laneExecute(lanes, lane, handleTask);
+						return;
+					}
+				}
 				//当sqm有可以处理某队列的任务产生时,丢到系统队列,当系统队列
 				systemExecute(handleTask);
 			}
@@ -196,6 +222,18 @@ public class QueuesExecutorService extends AbstractExecutorService implements Qu
 		this.threadFactory = threadFactory;
 	}
 	
+	public PriorityLanes getPriorityLanes() {
+		return priorityLanes;
+	}
+
+	/**
+	 * 设置优先级通道,应在使用之前设置,运行中替换会使旧通道中排队的队列不再被处理
+	 * @param priorityLanes null不区分优先级
+	 */
+	public void setPriorityLanes(PriorityLanes priorityLanes) {
+		this.priorityLanes = priorityLanes;
+	}
+
 	public Executor getAssistExecutor() {
 		return assistExecutor;
 	}
@@ -362,6 +400,9 @@ public class QueuesExecutorService extends AbstractExecutorService implements Qu
     private void doWakeUpWorker() {
         if (idleWorkers.get() == 0) {
             synchronized (workers) {
+            	if (shutdown) {
+            		return;//关闭后退出任务不能再补充线程
+            	}
             	if (workers.size() >= getMaximumPoolSize()) {
                     return;
                 }
@@ -421,6 +462,11 @@ public class QueuesExecutorService extends AbstractExecutorService implements Qu
      * @author juebanlin
      */
     class Worker implements Runnable {
+    	/**
+    	 * 取任务次数,用于优先级通道防饿死
+    	 */
+    	int pollTicket;
+    	
 		public void run() {
             long lastRunTaskTime=System.currentTimeMillis();
             try {
@@ -479,7 +525,8 @@ public class QueuesExecutorService extends AbstractExecutorService implements Qu
 		 */
 		private Runnable findTask()
 		{
-        	return systemQueue.poll();//执行系统任务
+        	PriorityLanes lanes=priorityLanes;
+        	return lanes==null?systemQueue.poll():lanes.poll(systemQueue, pollTicket++);//执行系统任务
 		}
         
         WorkerWaitCondition workerWaitCondition=new WorkerWaitCondition();
@@ -554,7 +601,7 @@ public class QueuesExecutorService extends AbstractExecutorService implements Qu
     {
     	wakeUpWorkerIfNecessary();
 	    //如果有线程阻塞等待,则释放阻塞去处理任务
-	    waitConditionStrategy.signalAllWhenBlocking();
+	    waitConditionStrategy.signalWhenBlocking();
     }
     
 	public long getCompletedTaskCount() {
@@ -570,6 +617,19 @@ public class QueuesExecutorService extends AbstractExecutorService implements Qu
 		systemQueue.add(task);
 	}
 	
+	/**
+	 * 投递到非默认的优先级通道
+	 * @param lanes
+	 * @param lane
+	 * @param task
+	 */
+	private void laneExecute(PriorityLanes lanes,int lane,Runnable task)
+	{
+		systemTaskOfferBefore(systemQueue);
+		lanes.offer(lane, task);
+		systemTaskOfferAfter(systemQueue);
+	}
+	
 	protected void systemExecute(List<Runnable> tasks)
 	{
 		if(tasks ==null)
@@ -640,6 +700,7 @@ public class QueuesExecutorService extends AbstractExecutorService implements Qu
         IndexQueueGroupManager iqm=DEFAULT_IndexQueueGroupManager;
         KeyQueueGroupManager kqm=DEFAULT_KeyQueueGroupManager;
         Executor assistExecutor;
+        PriorityLanes priorityLanes;
 		
         public Builder setCorePoolSize(int corePoolSize)
         {
@@ -684,6 +745,17 @@ public class QueuesExecutorService extends AbstractExecutorService implements Qu
         	return this;
         }
         
+        /**
+         * 使用基于Disruptor环形缓冲区的主队列,槽位预分配,调度事件不再分配链表节点
+         * @param bufferSize 环形缓冲区大小,必须是2的幂,建议不小于同时就绪的队列数量
+         * @return
+         */
+        public Builder setDisruptorBossQueue(int bufferSize)
+        {
+        	this.bossQueue=new DisruptorRunnableQueue(bufferSize);
+        	return this;
+        }
+        
         public Builder setIndexQueueGroupManager(IndexQueueGroupManager iqm)
         {
         	this.iqm=iqm;
@@ -696,6 +768,17 @@ public class QueuesExecutorService extends AbstractExecutorService implements Qu
         	return this;
         }
         
+        /**
+         * 优先级通道,高优先级通道的队列先于其它队列被处理
+         * @param priorityLanes
+         * @return
+         */
+        public Builder setPriorityLanes(PriorityLanes priorityLanes)
+        {
+        	this.priorityLanes=priorityLanes;
+        	return this;
+        }
+        
         public QueuesExecutorService build()
 		{
         	QueuesExecutorService qe=new QueuesExecutorService(corePoolSize, 
@@ -707,6 +790,7 @@ public class QueuesExecutorService extends AbstractExecutorService implements Qu
 					bossQueue, 
 					iqm, 
 					kqm,assistExecutor);
+        	qe.setPriorityLanes(priorityLanes);
 			return qe;
 		}
 	}
@@ -714,7 +798,13 @@ public class QueuesExecutorService extends AbstractExecutorService implements Qu
 	@Override
 	public List<Runnable> shutdownNow() {
 		shutdown();
-		return new ArrayList<>(systemQueue);
+		List<Runnable> list=new ArrayList<>(systemQueue);
+		PriorityLanes lanes=priorityLanes;
+		if(lanes!=null)
+		{
+			list.addAll(lanes.drain());
+		}
+		return list;
 	}
 
 	@Override
@@ -0,0 +1,271 @@
+package net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.adapter;
+
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import net.jueb.util4j.queue.queueExecutor.executor.QueueExecutor;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.IndexQueueGroupManager;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.IndexQueueGroupManager.IndexGroupEventListener;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.KeyQueueGroupManager;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.KeyQueueGroupManager.KeyGroupEventListener;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.QueueGroupExecutorService;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.DefaultIndexQueueManager;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.DefaultKeyQueueManager;
+
+/**
+ * 虚拟线程队列组执行器
+ * 队列产生处理任务时为其启动一个虚拟线程处理队列,不再依赖固定数量的工作线程,
+ * 队列任务中的阻塞IO(DB,HTTP)只会挂起虚拟线程,不会占满线程池.
+ * 队列的顺序性仍然由队列管理器保证,同一队列同一时刻只有一个处理任务.
+ * 虚拟线程需要JDK21以上,通过反射创建,在JDK8下可以正常加载,
+ * 不支持时使用{@link Builder#setFallbackExecutor(ExecutorService)}指定的执行器,未指定则构建失败.
+ * @author juebanlin
+ */
+public class VirtualThreadQueueGroupExecutor extends AbstractExecutorService implements QueueGroupExecutorService{
+
+	public static final String DEFAULT_THREAD_NAME_PREFIX="queue-vt-";
+
+	private final ExecutorService executor;
+	private final IndexQueueGroupManager iqm;
+	private final KeyQueueGroupManager kqm;
+
+	/**
+	 * @param executor 处理队列任务的执行器,每个任务一个线程
+	 * @param iqm 索引队列管理器
+	 * @param kqm 键值队列管理器
+	 */
+	public VirtualThreadQueueGroupExecutor(ExecutorService executor,IndexQueueGroupManager iqm,KeyQueueGroupManager kqm) {
+		Objects.requireNonNull(executor);
+		if (iqm==null || kqm==null)
+		{
+			throw new IllegalArgumentException();
+		}
+		this.executor=executor;
+		this.iqm=iqm;
+		this.kqm=kqm;
+		init();
+	}
+
+	protected void init()
+	{
+		this.iqm.setGroupEventListener(new IndexGroupEventListener() {
+			@Override
+			public void onQueueHandleTask(short index, Runnable handleTask) {
+				//队列的处理任务在独立的虚拟线程中执行
+				executor.execute(handleTask);
+			}
+		});
+		this.kqm.setGroupEventListener(new KeyGroupEventListener() {
+			@Override
+			public void onQueueHandleTask(String key, Runnable handleTask) {
+				//队列的处理任务在独立的虚拟线程中执行
+				executor.execute(handleTask);
+			}
+		});
+	}
+
+	/**
+	 * 当前运行环境是否支持虚拟线程
+	 * JDK19/20未开启预览时Thread.ofVirtual存在但调用失败,所以实际创建一次线程工厂来判断,结果只探测一次.
+	 * @return
+	 */
+	public static boolean isVirtualThreadSupported()
+	{
+		return VirtualThreadProbe.SUPPORTED;
+	}
+
+	private static class VirtualThreadProbe{
+		static final boolean SUPPORTED=probe();
+
+		private static boolean probe()
+		{
+			try {
+				newVirtualThreadFactory(DEFAULT_THREAD_NAME_PREFIX);
+				return true;
+			} catch (UnsupportedOperationException e) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * 反射创建虚拟线程工厂
+	 * @param namePrefix 线程名前缀
+	 * @return
+	 * @throws UnsupportedOperationException 不支持虚拟线程
+	 */
+	private static ThreadFactory newVirtualThreadFactory(String namePrefix)
+	{
+		try {
+			Object builder=Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> ofVirtual=Class.forName("java.lang.Thread$Builder$OfVirtual");
+			builder=ofVirtual.getMethod("name", String.class,long.class).invoke(builder, namePrefix,0L);
+			return (ThreadFactory) ofVirtual.getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException | RuntimeException | LinkageError e) {//JDK19/20未开启预览时调用抛出异常
+			throw new UnsupportedOperationException("virtual thread is not supported,require jdk21+",e);
+		}
+	}
+
+	/**
+	 * 反射创建每任务一个虚拟线程的执行器
+	 * @param namePrefix 线程名前缀
+	 * @return
+	 * @throws UnsupportedOperationException 不支持虚拟线程
+	 */
+	public static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix)
+	{
+		ThreadFactory factory=newVirtualThreadFactory(namePrefix);
+		try {
+			Method m=Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+			return (ExecutorService) m.invoke(null, factory);
+		} catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+			throw new UnsupportedOperationException("virtual thread is not supported,require jdk21+",e);
+		}
+	}
+
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		executor.execute(command);
+	}
+
+	@Override
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		return executor.shutdownNow();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return executor.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return executor.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return executor.awaitTermination(timeout, unit);
+	}
+
+	public Iterator<IndexElement<QueueExecutor>> indexIterator() {
+		return iqm.indexIterator();
+	}
+
+	@Override
+	public void execute(short solt, Runnable task) {
+		iqm.getQueueExecutor(solt).execute(task);
+	}
+
+	@Override
+	public void execute(short solt, List<Runnable> tasks) {
+		iqm.getQueueExecutor(solt).execute(tasks);
+	}
+
+	@Override
+	public boolean hasQueueExecutor(short solt) {
+		return iqm.hasQueueExecutor(solt);
+	}
+
+	@Override
+	public QueueExecutor getQueueExecutor(short solt) {
+		return iqm.getQueueExecutor(solt);
+	}
+
+	@Override
+	public void execute(String key, Runnable task) {
+		kqm.getQueueExecutor(key).execute(task);
+	}
+
+	@Override
+	public void execute(String key, List<Runnable> tasks) {
+		kqm.getQueueExecutor(key).execute(tasks);
+	}
+
+	@Override
+	public boolean hasQueueExecutor(String key) {
+		return kqm.hasQueueExecutor(key);
+	}
+
+	@Override
+	public QueueExecutor getQueueExecutor(String key) {
+		return kqm.getQueueExecutor(key);
+	}
+
+	@Override
+	public Iterator<KeyElement<QueueExecutor>> keyIterator() {
+		return kqm.keyIterator();
+	}
+
+	public static class Builder{
+		IndexQueueGroupManager iqm;
+		KeyQueueGroupManager kqm;
+		String threadNamePrefix=DEFAULT_THREAD_NAME_PREFIX;
+		ExecutorService fallbackExecutor;
+
+		public Builder setIndexQueueGroupManager(IndexQueueGroupManager iqm)
+		{
+			this.iqm=iqm;
+			return this;
+		}
+
+		public Builder setKeyQueueGroupManagerr(KeyQueueGroupManager kqm)
+		{
+			this.kqm=kqm;
+			return this;
+		}
+
+		public Builder setThreadNamePrefix(String threadNamePrefix)
+		{
+			Objects.requireNonNull(threadNamePrefix);
+			this.threadNamePrefix=threadNamePrefix;
+			return this;
+		}
+
+		/**
+		 * 不支持虚拟线程(JDK21以下)时使用的执行器
+		 * @param fallbackExecutor optional
+		 * @return
+		 */
+		public Builder setFallbackExecutor(ExecutorService fallbackExecutor)
+		{
+			this.fallbackExecutor=fallbackExecutor;
+			return this;
+		}
+
+		public VirtualThreadQueueGroupExecutor build()
+		{
+			ExecutorService executor;
+			if(fallbackExecutor==null)
+			{
+				executor=newVirtualThreadPerTaskExecutor(threadNamePrefix);
+			}else
+			{
+				try {
+					executor=isVirtualThreadSupported()?newVirtualThreadPerTaskExecutor(threadNamePrefix):fallbackExecutor;
+				} catch (UnsupportedOperationException e) {
+					executor=fallbackExecutor;
+				}
+			}
+			IndexQueueGroupManager iqm=this.iqm!=null?this.iqm:new DefaultIndexQueueManager();
+			KeyQueueGroupManager kqm=this.kqm!=null?this.kqm:new DefaultKeyQueueManager();
+			return new VirtualThreadQueueGroupExecutor(executor, iqm, kqm);
+		}
+	}
+}
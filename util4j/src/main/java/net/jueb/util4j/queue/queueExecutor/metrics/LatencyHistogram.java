@@ -0,0 +1,123 @@
+package net.jueb.util4j.queue.queueExecutor.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 对数线性分桶的延迟直方图(HdrHistogram风格)
+ * 每个2的幂区间再均分为{@link #SUB_BUCKET_COUNT}个子桶,相对误差不超过1/8,
+ * 桶数组在构造时一次分配,记录时只有原子自增,不产生对象.
+ * 读取不加锁,多个统计值之间不保证是同一时刻的快照.
+ * @author juebanlin
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS=3;
+
+	public static final int SUB_BUCKET_COUNT=1<<SUB_BUCKET_BITS;
+
+	private static final int BUCKET_COUNT=(64-SUB_BUCKET_BITS+1)<<SUB_BUCKET_BITS;
+
+	private final AtomicLongArray buckets=new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong count=new AtomicLong();
+	private final AtomicLong sum=new AtomicLong();
+	private final AtomicLong max=new AtomicLong();
+
+	/**
+	 * 记录一个值,负数按0记录
+	 * @param value
+	 */
+	public void record(long value)
+	{
+		if(value<0)
+		{
+			value=0;
+		}
+		buckets.incrementAndGet(bucketIndex(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long m;
+		while(value>(m=max.get()) && !max.compareAndSet(m, value));
+	}
+
+	static int bucketIndex(long value)
+	{
+		if(value<SUB_BUCKET_COUNT)
+		{
+			return (int) value;
+		}
+		int exp=63-Long.numberOfLeadingZeros(value);
+		int sub=(int)(value>>>(exp-SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT-1);
+		return ((exp-SUB_BUCKET_BITS+1)<<SUB_BUCKET_BITS) | sub;
+	}
+
+	/**
+	 * 桶内最大值
+	 * @param index
+	 * @return
+	 */
+	static long bucketUpperBound(int index)
+	{
+		int range=index>>>SUB_BUCKET_BITS;
+		long sub=index & (SUB_BUCKET_COUNT-1);
+		if(range==0)
+		{
+			return sub;
+		}
+		long lower=(SUB_BUCKET_COUNT|sub)<<(range-1);
+		return lower+(1L<<(range-1))-1;
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long c=count.get();
+		return c==0?0:(double)sum.get()/c;
+	}
+
+	/**
+	 * 获取百分位数,返回所在桶的上界(不超过最大值)
+	 * @param percentile 0~100
+	 * @return
+	 */
+	public long getValueAtPercentile(double percentile)
+	{
+		long total=count.get();
+		if(total==0)
+		{
+			return 0;
+		}
+		double p=Math.min(Math.max(percentile, 0), 100);
+		long target=Math.max(1, (long)Math.ceil(p/100*total));
+		long seen=0;
+		for(int i=0;i<BUCKET_COUNT;i++)
+		{
+			seen+=buckets.get(i);
+			if(seen>=target)
+			{
+				return Math.min(bucketUpperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * 清空统计,与并发记录同时进行时可能丢失少量记录
+	 */
+	public void reset()
+	{
+		for(int i=0;i<BUCKET_COUNT;i++)
+		{
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+}
@@ -0,0 +1,169 @@
+package net.jueb.util4j.queue.queueExecutor.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR事件定义,只由{@link QueueFlightRecorder}在支持JFR的运行环境中访问
+ * 编译期依赖jdk.jfr,编译需要JDK8u262及以上或JDK11+;运行环境没有jdk.jfr时此类不会被加载.
+ * @author juebanlin
+ */
+final class QueueFlightEvents {
+
+	private QueueFlightEvents() {
+	}
+
+	static void install()
+	{
+		FlightRecorder.addListener(new FlightRecorderListener() {
+			@Override
+			public void recorderInitialized(FlightRecorder recorder) {
+				update();
+			}
+
+			@Override
+			public void recordingStateChanged(Recording recording) {
+				update();
+			}
+		});
+	}
+
+	/**
+	 * 事件开启并且有录制在运行
+	 */
+	private static void update()
+	{
+		QueueFlightRecorder.setEnabled(enabled(TaskEvent.class), enabled(ActivationEvent.class),
+				enabled(WorkerEvent.class), enabled(WorkerWaitEvent.class));
+	}
+
+	private static boolean enabled(Class<? extends Event> eventClass)
+	{
+		return EventType.getEventType(eventClass).isEnabled();
+	}
+
+	static Object beginTask(String queue,long queueWait)
+	{
+		TaskEvent event=new TaskEvent();
+		event.queue=queue;
+		event.queueWait=queueWait;
+		event.begin();
+		return event;
+	}
+
+	static void endTask(Object event)
+	{
+		((TaskEvent)event).commit();
+	}
+
+	static Object beginActivation(String queue,long systemQueueWait)
+	{
+		ActivationEvent event=new ActivationEvent();
+		event.queue=queue;
+		event.systemQueueWait=systemQueueWait;
+		event.begin();
+		return event;
+	}
+
+	static void endActivation(Object activation,long tasks,boolean yielded)
+	{
+		ActivationEvent event=(ActivationEvent)activation;
+		event.tasks=tasks;
+		event.yielded=yielded;
+		event.commit();
+	}
+
+	static void worker(String action,String thread,int poolSize)
+	{
+		WorkerEvent event=new WorkerEvent();
+		event.action=action;
+		event.thread=thread;
+		event.poolSize=poolSize;
+		event.commit();
+	}
+
+	static Object beginWait()
+	{
+		WorkerWaitEvent event=new WorkerWaitEvent();
+		event.begin();
+		return event;
+	}
+
+	static void endWait(Object wait,boolean gotTask)
+	{
+		WorkerWaitEvent event=(WorkerWaitEvent)wait;
+		event.gotTask=gotTask;
+		event.commit();
+	}
+
+	@Name("net.jueb.util4j.QueueTask")
+	@Label("Queue Task")
+	@Category({"util4j", "Queue"})
+	@Description("任务执行,持续时间为执行时间")
+	@Enabled(false)
+	static final class TaskEvent extends Event{
+		@Label("Queue")
+		String queue;
+
+		@Label("Queue Wait")
+		@Description("在所属队列中的等待时间")
+		@Timespan(Timespan.NANOSECONDS)
+		long queueWait;
+	}
+
+	@Name("net.jueb.util4j.QueueActivation")
+	@Label("Queue Activation")
+	@Category({"util4j", "Queue"})
+	@Description("队列被调度处理一批任务,持续时间为处理时间")
+	static final class ActivationEvent extends Event{
+		@Label("Queue")
+		String queue;
+
+		@Label("System Queue Wait")
+		@Description("激活后在系统队列中的等待时间")
+		@Timespan(Timespan.NANOSECONDS)
+		long systemQueueWait;
+
+		@Label("Tasks")
+		long tasks;
+
+		@Label("Yielded")
+		@Description("是否因为预算用完而让出线程")
+		boolean yielded;
+	}
+
+	@Name("net.jueb.util4j.QueueWorker")
+	@Label("Queue Worker")
+	@Category({"util4j", "Queue"})
+	@Description("工作线程创建和退出")
+	static final class WorkerEvent extends Event{
+		@Label("Action")
+		String action;
+
+		@Label("Thread")
+		String thread;
+
+		@Label("Pool Size")
+		int poolSize;
+	}
+
+	@Name("net.jueb.util4j.QueueWorkerWait")
+	@Label("Queue Worker Wait")
+	@Category({"util4j", "Queue"})
+	@Description("工作线程在等待策略中等待任务")
+	@Threshold("1 ms")
+	static final class WorkerWaitEvent extends Event{
+		@Label("Got Task")
+		boolean gotTask;
+	}
+}
@@ -0,0 +1,177 @@
+package net.jueb.util4j.queue.queueExecutor.metrics;
+
+/**
+ * 队列调度的JFR(Java Flight Recorder)事件
+ * <pre>
+ * net.jueb.util4j.QueueTask 任务从入队到执行完成,字段queueWait为在所属队列中的等待时间,事件量大,默认关闭
+ * net.jueb.util4j.QueueActivation 队列被调度处理一批任务,字段systemQueueWait为激活后在系统队列中的等待时间
+ * net.jueb.util4j.QueueWorker 工作线程创建和退出
+ * net.jueb.util4j.QueueWorkerWait 工作线程在等待策略中等待任务,默认只记录超过1毫秒的等待
+ * </pre>
+ * 通过FlightRecorderListener跟踪录制状态,没有录制或者事件未开启时每个埋点只多一次volatile读,不创建任何对象.
+ * 运行环境没有jdk.jfr(JDK8u262之前)时所有埋点都不生效,事件类不会被加载.
+ * 开启任务事件:jcmd pid JFR.start settings=自定义.jfc,其中net.jueb.util4j.QueueTask#enabled=true.
+ * @author juebanlin
+ */
+public final class QueueFlightRecorder {
+
+	private static volatile boolean taskEnabled;
+	private static volatile boolean activationEnabled;
+	private static volatile boolean workerEnabled;
+	private static volatile boolean waitEnabled;
+
+	private static final boolean AVAILABLE=install();
+
+	private QueueFlightRecorder() {
+	}
+
+	private static boolean install()
+	{
+		try {
+			Class.forName("jdk.jfr.FlightRecorderListener");
+			QueueFlightEvents.install();
+			return true;
+		} catch (Throwable e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 运行环境是否支持JFR事件
+	 * @return
+	 */
+	public static boolean isAvailable() {
+		return AVAILABLE;
+	}
+
+	/**
+	 * 录制状态变化时更新事件开关
+	 */
+	static void setEnabled(boolean task,boolean activation,boolean worker,boolean wait)
+	{
+		taskEnabled=task;
+		activationEnabled=activation;
+		workerEnabled=worker;
+		waitEnabled=wait;
+	}
+
+	public static boolean isTaskEnabled() {
+		return taskEnabled;
+	}
+
+	public static boolean isActivationEnabled() {
+		return activationEnabled;
+	}
+
+	/**
+	 * 包装入队任务,记录入队时间,执行时提交任务事件
+	 * 任务事件未开启或者已经包装过的任务原样返回
+	 * @param queue 队列别名
+	 * @param task
+	 * @return
+	 */
+	public static Runnable wrap(String queue,Runnable task)
+	{
+		if(!taskEnabled || task instanceof RecordedTask || task instanceof QueueMetrics.MeteredTask)
+		{
+			return task;
+		}
+		return new RecordedTask(queue, task, System.nanoTime());
+	}
+
+	/**
+	 * 开始处理一次队列激活
+	 * @param queue 队列别名
+	 * @param activatedNanos 激活时间,未知为0
+	 * @return 事件未开启时为null
+	 */
+	public static Object beginActivation(String queue,long activatedNanos)
+	{
+		if(!activationEnabled)
+		{
+			return null;
+		}
+		return QueueFlightEvents.beginActivation(queue, activatedNanos==0?0:System.nanoTime()-activatedNanos);
+	}
+
+	/**
+	 * @param activation {@link #beginActivation(String, long)}的返回值
+	 * @param tasks 处理的任务数量
+	 * @param yielded 是否因为预算用完而让出线程
+	 */
+	public static void endActivation(Object activation,long tasks,boolean yielded)
+	{
+		if(activation!=null)
+		{
+			QueueFlightEvents.endActivation(activation, tasks, yielded);
+		}
+	}
+
+	/**
+	 * 工作线程创建或退出
+	 * @param action spawn或exit原因
+	 * @param thread
+	 * @param poolSize 之后的线程数量
+	 */
+	public static void worker(String action,Thread thread,int poolSize)
+	{
+		if(workerEnabled)
+		{
+			QueueFlightEvents.worker(action, thread.getName(), poolSize);
+		}
+	}
+
+	/**
+	 * 工作线程开始等待任务
+	 * @return 事件未开启时为null
+	 */
+	public static Object beginWait()
+	{
+		if(!waitEnabled)
+		{
+			return null;
+		}
+		return QueueFlightEvents.beginWait();
+	}
+
+	/**
+	 * @param wait {@link #beginWait()}的返回值
+	 * @param gotTask 是否等到了任务
+	 */
+	public static void endWait(Object wait,boolean gotTask)
+	{
+		if(wait!=null)
+		{
+			QueueFlightEvents.endWait(wait, gotTask);
+		}
+	}
+
+	/**
+	 * 记录入队时间的任务
+	 */
+	public static final class RecordedTask implements Runnable{
+		private final String queue;
+		private final Runnable task;
+		private final long enqueueNanos;
+
+		RecordedTask(String queue,Runnable task,long enqueueNanos) {
+			this.queue=queue;
+			this.task=task;
+			this.enqueueNanos=enqueueNanos;
+		}
+
+		public Runnable getTask() {
+			return task;
+		}
+
+		@Override
+		public void run() {
+			Object event=QueueFlightEvents.beginTask(queue, System.nanoTime()-enqueueNanos);
+			try {
+				task.run();
+			} finally {
+				QueueFlightEvents.endTask(event);
+			}
+		}
+	}
+}
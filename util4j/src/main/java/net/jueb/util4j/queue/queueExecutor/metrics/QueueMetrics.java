@@ -0,0 +1,283 @@
+package net.jueb.util4j.queue.queueExecutor.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * 队列指标
+ * 记录入队/完成数量,排队深度,排队等待时间和执行时间的直方图.
+ * 开启指标后队列入队时把任务包装为{@link MeteredTask}记录入队时间,执行时再记录等待和执行时间;
+ * 未开启时队列只多一次volatile读.
+ * 可以指定父指标,记录时同时汇总到父指标,用于统计整个队列组.
+ * @author juebanlin
+ */
+public class QueueMetrics implements QueueMetricsMXBean{
+
+	private final String name;
+	private final QueueMetrics parent;
+
+	private final AtomicLong enqueuedTaskCount=new AtomicLong();
+	private final AtomicLong completedTaskCount=new AtomicLong();
+	private final AtomicLong depth=new AtomicLong();
+	private final AtomicLong maxDepth=new AtomicLong();
+	private final LatencyHistogram waitTime=new LatencyHistogram();
+	private final LatencyHistogram runTime=new LatencyHistogram();
+
+	private long lastRateNanos=System.nanoTime();
+	private long lastRateCount;
+
+	public QueueMetrics(String name) {
+		this(name, null);
+	}
+
+	/**
+	 * @param name 名称
+	 * @param parent 汇总的父指标,optional
+	 */
+	public QueueMetrics(String name,QueueMetrics parent) {
+		this.name=name;
+		this.parent=parent;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	public QueueMetrics getParent() {
+		return parent;
+	}
+
+	/**
+	 * 包装入队任务,已经包装过的任务(如转交给其它队列的任务)原样返回
+	 * @param task
+	 * @return
+	 */
+	public Runnable wrap(Runnable task)
+	{
+		if(task instanceof MeteredTask)
+		{
+			return task;
+		}
+		onEnqueue();
+		return new MeteredTask(this, task, System.nanoTime());
+	}
+
+	protected void onEnqueue()
+	{
+		enqueuedTaskCount.incrementAndGet();
+		long d=depth.incrementAndGet();
+		long m;
+		while(d>(m=maxDepth.get()) && !maxDepth.compareAndSet(m, d));
+		if(parent!=null)
+		{
+			parent.onEnqueue();
+		}
+	}
+
+	protected void onDequeue(long waitNanos)
+	{
+		depth.decrementAndGet();
+		waitTime.record(waitNanos);
+		if(parent!=null)
+		{
+			parent.onDequeue(waitNanos);
+		}
+	}
+
+	/**
+	 * 任务未执行就被丢弃
+	 */
+	protected void onDiscard()
+	{
+		depth.decrementAndGet();
+		if(parent!=null)
+		{
+			parent.onDiscard();
+		}
+	}
+
+	protected void onComplete(long runNanos)
+	{
+		completedTaskCount.incrementAndGet();
+		runTime.record(runNanos);
+		if(parent!=null)
+		{
+			parent.onComplete(runNanos);
+		}
+	}
+
+	public LatencyHistogram getWaitTime() {
+		return waitTime;
+	}
+
+	public LatencyHistogram getRunTime() {
+		return runTime;
+	}
+
+	@Override
+	public long getEnqueuedTaskCount() {
+		return enqueuedTaskCount.get();
+	}
+
+	@Override
+	public long getCompletedTaskCount() {
+		return completedTaskCount.get();
+	}
+
+	@Override
+	public long getDepth() {
+		return depth.get();
+	}
+
+	@Override
+	public long getMaxDepth() {
+		return maxDepth.get();
+	}
+
+	@Override
+	public synchronized double getThroughput() {
+		long now=System.nanoTime();
+		long count=completedTaskCount.get();
+		long elapsed=now-lastRateNanos;
+		double rate=elapsed<=0?0:(count-lastRateCount)*(double)TimeUnit.SECONDS.toNanos(1)/elapsed;
+		lastRateNanos=now;
+		lastRateCount=count;
+		return rate;
+	}
+
+	private static long micros(long nanos)
+	{
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+
+	@Override
+	public double getWaitTimeMeanMicros() {
+		return waitTime.getMean()/1000;
+	}
+
+	@Override
+	public long getWaitTimeP50Micros() {
+		return micros(waitTime.getValueAtPercentile(50));
+	}
+
+	@Override
+	public long getWaitTimeP99Micros() {
+		return micros(waitTime.getValueAtPercentile(99));
+	}
+
+	@Override
+	public long getWaitTimeMaxMicros() {
+		return micros(waitTime.getMax());
+	}
+
+	@Override
+	public double getRunTimeMeanMicros() {
+		return runTime.getMean()/1000;
+	}
+
+	@Override
+	public long getRunTimeP50Micros() {
+		return micros(runTime.getValueAtPercentile(50));
+	}
+
+	@Override
+	public long getRunTimeP99Micros() {
+		return micros(runTime.getValueAtPercentile(99));
+	}
+
+	@Override
+	public long getRunTimeMaxMicros() {
+		return micros(runTime.getMax());
+	}
+
+	/**
+	 * 清空统计,当前排队深度不清空
+	 */
+	@Override
+	public synchronized void reset() {
+		enqueuedTaskCount.set(0);
+		completedTaskCount.set(0);
+		maxDepth.set(depth.get());
+		waitTime.reset();
+		runTime.reset();
+		lastRateNanos=System.nanoTime();
+		lastRateCount=0;
+	}
+
+	/**
+	 * 注册到平台MBeanServer
+	 * @param objectName 如net.jueb.util4j:type=QueueMetrics,name=xxx
+	 * @throws JMException
+	 */
+	public void registerMBean(String objectName) throws JMException
+	{
+		MBeanServer server=ManagementFactory.getPlatformMBeanServer();
+		server.registerMBean(this, new ObjectName(objectName));
+	}
+
+	/**
+	 * 从平台MBeanServer注销
+	 * @param objectName
+	 * @throws JMException
+	 */
+	public static void unregisterMBean(String objectName) throws JMException
+	{
+		MBeanServer server=ManagementFactory.getPlatformMBeanServer();
+		server.unregisterMBean(new ObjectName(objectName));
+	}
+
+	@Override
+	public String toString() {
+		return "QueueMetrics [name=" + name + ", enqueued=" + getEnqueuedTaskCount() + ", completed="
+				+ getCompletedTaskCount() + ", depth=" + getDepth() + ", maxDepth=" + getMaxDepth()
+				+ ", waitP99Micros=" + getWaitTimeP99Micros() + ", runP99Micros=" + getRunTimeP99Micros() + "]";
+	}
+
+	/**
+	 * 记录了入队时间的任务
+	 * @author juebanlin
+	 */
+	public static final class MeteredTask implements Runnable{
+		private final QueueMetrics metrics;
+		private final Runnable task;
+		private final long enqueueNanos;
+
+		MeteredTask(QueueMetrics metrics,Runnable task,long enqueueNanos) {
+			this.metrics=metrics;
+			this.task=task;
+			this.enqueueNanos=enqueueNanos;
+		}
+
+		public Runnable getTask() {
+			return task;
+		}
+
+		public long getEnqueueNanos() {
+			return enqueueNanos;
+		}
+
+		/**
+		 * 任务被丢弃,不会再执行
+		 */
+		public void discard() {
+			metrics.onDiscard();
+		}
+
+		@Override
+		public void run() {
+			long start=System.nanoTime();
+			metrics.onDequeue(start-enqueueNanos);
+			try {
+				task.run();
+			} finally {
+				metrics.onComplete(System.nanoTime()-start);
+			}
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package net.jueb.util4j.queue.queueExecutor.metrics;
+
+/**
+ * 队列指标JMX接口,时间单位均为微秒
+ * @author juebanlin
+ */
+public interface QueueMetricsMXBean {
+
+	public String getName();
+
+	/**
+	 * 累计入队任务数量
+	 */
+	public long getEnqueuedTaskCount();
+
+	/**
+	 * 累计完成任务数量
+	 */
+	public long getCompletedTaskCount();
+
+	/**
+	 * 当前排队(已入队未开始执行)的任务数量
+	 */
+	public long getDepth();
+
+	/**
+	 * 历史最大排队数量
+	 */
+	public long getMaxDepth();
+
+	/**
+	 * 距上次读取以来每秒完成的任务数量
+	 */
+	public double getThroughput();
+
+	public double getWaitTimeMeanMicros();
+
+	public long getWaitTimeP50Micros();
+
+	public long getWaitTimeP99Micros();
+
+	public long getWaitTimeMaxMicros();
+
+	public double getRunTimeMeanMicros();
+
+	public long getRunTimeP50Micros();
+
+	public long getRunTimeP99Micros();
+
+	public long getRunTimeMaxMicros();
+
+	/**
+	 * 清空统计
+	 */
+	public void reset();
+}
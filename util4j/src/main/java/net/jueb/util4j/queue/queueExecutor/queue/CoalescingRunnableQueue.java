@@ -0,0 +1,227 @@
+package net.jueb.util4j.queue.queueExecutor.queue;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.jueb.util4j.queue.queueExecutor.RunnableQueue;
+import net.jueb.util4j.queue.queueExecutor.metrics.QueueFlightRecorder;
+import net.jueb.util4j.queue.queueExecutor.metrics.QueueMetrics;
+
+/**
+ * 合并队列
+ * {@link CoalescingTask}入队时,如果合并键相同的旧任务还在排队,新任务直接替换旧任务(O(1)),旧任务不再执行,
+ * 新任务占用旧任务的位置,其它任务保持原有顺序.
+ * 替换时offer返回false表示没有新增元素,队列执行器据此释放容量,也不会重复调度.
+ * 普通任务和合并键为null的任务与底层队列行为一致.
+ * @author juebanlin
+ */
+public class CoalescingRunnableQueue extends AbstractQueue<Runnable> implements RunnableQueue{
+
+	private final Queue<Runnable> queue;
+
+	/**
+	 * 排队中的可合并任务
+	 */
+	private final ConcurrentHashMap<Object, Slot> pending=new ConcurrentHashMap<>();
+
+	private final LongAdder coalescedCount=new LongAdder();
+
+	/**
+	 * @param queue 底层队列,需要支持多线程入队
+	 */
+	public CoalescingRunnableQueue(Queue<Runnable> queue) {
+		Objects.requireNonNull(queue);
+		this.queue=queue;
+	}
+
+	@Override
+	public boolean offer(Runnable e) {
+		Objects.requireNonNull(e);
+		Object key=coalesceKey(e);
+		if(key==null)
+		{
+			return queue.offer(e);
+		}
+		Slot slot=pending.get(key);
+		if(slot!=null)
+		{
+			Runnable old;
+			while((old=slot.get())!=null)
+			{
+				if(slot.compareAndSet(old, e))
+				{
+					coalescedCount.increment();
+					discard(old);
+					return false;
+				}
+			}
+		}
+		//没有排队中的同键任务,或者已被取出
+		slot=new Slot(key, e);
+		pending.put(key, slot);
+		if(!queue.offer(slot))
+		{
+			pending.remove(key, slot);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 不能用于失败即抛异常的场景,合并时返回false
+	 */
+	@Override
+	public boolean add(Runnable e) {
+		return offer(e);
+	}
+
+	@Override
+	public Runnable poll() {
+		for(;;)
+		{
+			Runnable r=RingRunnableQueue.detach(queue.poll());
+			if(!(r instanceof Slot))
+			{
+				return r;
+			}
+			Slot slot=(Slot)r;
+			Runnable task=slot.getAndSet(null);
+			pending.remove(slot.key, slot);
+			if(task!=null)
+			{
+				return task;
+			}
+		}
+	}
+
+	@Override
+	public Runnable peek() {
+		Runnable r=queue.peek();
+		if(r instanceof Slot)
+		{
+			return ((Slot)r).get();
+		}
+		return r;
+	}
+
+	@Override
+	public int size() {
+		return queue.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return queue.isEmpty();
+	}
+
+	/**
+	 * 弱一致迭代,不支持remove
+	 */
+	@Override
+	public Iterator<Runnable> iterator() {
+		Iterator<Runnable> it=queue.iterator();
+		return new Iterator<Runnable>() {
+			Runnable next=advance();
+
+			private Runnable advance()
+			{
+				while(it.hasNext())
+				{
+					Runnable r=it.next();
+					if(r instanceof Slot)
+					{
+						r=((Slot)r).get();
+					}
+					if(r!=null)
+					{
+						return r;
+					}
+				}
+				return null;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next!=null;
+			}
+
+			@Override
+			public Runnable next() {
+				if(next==null)
+				{
+					throw new NoSuchElementException();
+				}
+				Runnable r=next;
+				next=advance();
+				return r;
+			}
+		};
+	}
+
+	/**
+	 * 被新任务替换掉的任务数量
+	 * @return
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount.sum();
+	}
+
+	/**
+	 * 执行器按JFR事件,指标的顺序包装任务,拆开后取合并键
+	 * @param task
+	 * @return
+	 */
+	private static Object coalesceKey(Runnable task)
+	{
+		if(task instanceof QueueMetrics.MeteredTask)
+		{
+			task=((QueueMetrics.MeteredTask)task).getTask();
+		}
+		if(task instanceof QueueFlightRecorder.RecordedTask)
+		{
+			task=((QueueFlightRecorder.RecordedTask)task).getTask();
+		}
+		return task instanceof CoalescingTask?((CoalescingTask)task).getCoalesceKey():null;
+	}
+
+	private static void discard(Runnable task)
+	{
+		if(task instanceof QueueMetrics.MeteredTask)
+		{
+			((QueueMetrics.MeteredTask)task).discard();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CoalescingRunnableQueue [queue=" + queue + ", coalesced=" + coalescedCount.sum() + "]";
+	}
+
+	/**
+	 * 排队位置,取出后为null
+	 */
+	private static final class Slot extends AtomicReference<Runnable> implements Runnable{
+		private static final long serialVersionUID = 1L;
+		final Object key;
+
+		Slot(Object key,Runnable task) {
+			super(task);
+			this.key=key;
+		}
+
+		@Override
+		public void run() {
+			Runnable task=getAndSet(null);
+			if(task!=null)
+			{
+				task.run();
+			}
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package net.jueb.util4j.queue.queueExecutor.queue;
+
+import java.util.Objects;
+
+/**
+ * 可合并的任务
+ * 在{@link CoalescingRunnableQueue}中,合并键相同且还未执行的旧任务会被新任务替换,适合只有最新状态有意义的同步任务.
+ * @author juebanlin
+ */
+public interface CoalescingTask extends Runnable{
+
+	/**
+	 * 合并键,为null则不合并
+	 * @return
+	 */
+	public Object getCoalesceKey();
+
+	/**
+	 * 包装为可合并的任务
+	 * @param coalesceKey
+	 * @param task
+	 * @return
+	 */
+	public static CoalescingTask of(Object coalesceKey,Runnable task) {
+		Objects.requireNonNull(task);
+		return new CoalescingTask() {
+			@Override
+			public void run() {
+				task.run();
+			}
+
+			@Override
+			public Object getCoalesceKey() {
+				return coalesceKey;
+			}
+
+			@Override
+			public String toString() {
+				return "CoalescingTask [coalesceKey=" + coalesceKey + ", task=" + task + "]";
+			}
+		};
+	}
+}
@@ -0,0 +1,237 @@
+package net.jueb.util4j.queue.queueExecutor.queue;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.Sequence;
+
+/**
+ * 基于Disruptor环形缓冲区的多生产多消费任务队列,用作执行器的主队列(boss queue)
+ * 槽位预先分配,入队只占位和发布序号,不像ConcurrentLinkedQueue每次分配链表节点.
+ * 消费者之间共享一个工作序号,先读取已发布的槽位再CAS推进序号,成功者获得任务并清空槽位(同WorkerPool).
+ * 消费者的等待/唤醒仍然由执行器的WaitConditionStrategy负责,环形缓冲区自身的等待策略不参与.
+ * 环形缓冲区满时任务转入溢出队列,不阻塞生产者:工作线程自己也会投递任务,阻塞可能导致死锁.
+ * @author juebanlin
+ */
+public class DisruptorRunnableQueue extends AbstractQueue<Runnable>{
+
+	public static final int DEFAULT_BUFFER_SIZE=1<<16;
+
+	private final RingBuffer<Slot> ringBuffer;
+
+	/**
+	 * 最后一个被消费者领取的序号,同时作为生产者的门控序号
+	 */
+	private final Sequence workSequence=new Sequence(-1);
+
+	/**
+	 * 环形缓冲区满时的溢出队列
+	 */
+	private final Queue<Runnable> overflow=new ConcurrentLinkedQueue<>();
+
+	public DisruptorRunnableQueue() {
+		this(DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param bufferSize 环形缓冲区大小,必须是2的幂
+	 */
+	public DisruptorRunnableQueue(int bufferSize) {
+		this.ringBuffer=RingBuffer.createMultiProducer(Slot::new, bufferSize, new BusySpinWaitStrategy());
+		this.ringBuffer.addGatingSequences(workSequence);
+	}
+
+	@Override
+	public boolean offer(Runnable e) {
+		Objects.requireNonNull(e);
+		long sequence;
+		try {
+			sequence=ringBuffer.tryNext();
+		} catch (InsufficientCapacityException ex) {
+			return overflow.offer(e);
+		}
+		fill(ringBuffer.get(sequence), e);
+		ringBuffer.publish(sequence);
+		return true;
+	}
+
+	/**
+	 * 写入槽位,门控序号只保证上一轮的任务已被领取,领取者可能还没清空,等它清空后再写
+	 * @param slot
+	 * @param task
+	 */
+	private static void fill(Slot slot,Runnable task)
+	{
+		while(slot.task!=null)
+		{
+			Thread.yield();
+		}
+		Slot.TASK.lazySet(slot, task);
+	}
+
+	/**
+	 * 批量添加,一次占用连续的序号并批量发布
+	 */
+	@Override
+	public boolean addAll(Collection<? extends Runnable> c) {
+		Object[] tasks=c.toArray();
+		int n=tasks.length;
+		if(n==0)
+		{
+			return false;
+		}
+		for(Object e:tasks)
+		{//占位之后不能失败,先检查
+			Objects.requireNonNull(e);
+		}
+		if(n>ringBuffer.getBufferSize())
+		{
+			return super.addAll(c);
+		}
+		long hi;
+		try {
+			hi=ringBuffer.tryNext(n);
+		} catch (InsufficientCapacityException ex) {
+			for(Object e:tasks)
+			{
+				offer((Runnable)e);
+			}
+			return true;
+		}
+		long lo=hi-n+1;
+		for(int i=0;i<n;i++)
+		{
+			fill(ringBuffer.get(lo+i), (Runnable)tasks[i]);
+		}
+		ringBuffer.publish(lo, hi);
+		return true;
+	}
+
+	@Override
+	public Runnable poll() {
+		if(!overflow.isEmpty())
+		{//溢出的任务先于之后进入环形缓冲区的任务
+			Runnable task=overflow.poll();
+			if(task!=null)
+			{
+				return task;
+			}
+		}
+		for(;;)
+		{
+			long current=workSequence.get();
+			long next=current+1;
+			if(!ringBuffer.isPublished(next))
+			{
+				return null;
+			}
+			//先读再CAS:CAS成功说明读取的是本轮的任务
+			Slot slot=ringBuffer.get(next);
+			Runnable task=slot.task;
+			if(workSequence.compareAndSet(current, next))
+			{//清空后生产者才能写入下一轮,槽位不再持有已领取的任务
+				Slot.TASK.lazySet(slot, null);
+				return task;
+			}
+		}
+	}
+
+	@Override
+	public Runnable peek() {
+		long next=workSequence.get()+1;
+		if(ringBuffer.isPublished(next))
+		{
+			Runnable task=ringBuffer.get(next).task;
+			if(task!=null && workSequence.get()<next)
+			{
+				return task;
+			}
+		}
+		return overflow.peek();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return !ringBuffer.isPublished(workSequence.get()+1) && overflow.isEmpty();
+	}
+
+	/**
+	 * 近似值,包含已占位还未发布的任务
+	 */
+	@Override
+	public int size() {
+		long size=ringBuffer.getCursor()-workSequence.get();
+		return (int)Math.max(0, Math.min(Integer.MAX_VALUE, size+overflow.size()));
+	}
+
+	/**
+	 * 当前任务的快照,不支持remove
+	 */
+	@Override
+	public Iterator<Runnable> iterator() {
+		List<Runnable> snapshot=new ArrayList<>();
+		long cursor=ringBuffer.getCursor();
+		for(long seq=workSequence.get()+1;seq<=cursor;seq++)
+		{
+			if(!ringBuffer.isPublished(seq))
+			{
+				break;
+			}
+			Runnable task=ringBuffer.get(seq).task;
+			if(task==null || workSequence.get()>=seq)
+			{//已被领取
+				continue;
+			}
+			snapshot.add(task);
+		}
+		snapshot.addAll(overflow);
+		Iterator<Runnable> it=snapshot.iterator();
+		return new Iterator<Runnable>() {
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public Runnable next() {
+				return it.next();
+			}
+		};
+	}
+
+	public int getBufferSize() {
+		return ringBuffer.getBufferSize();
+	}
+
+	/**
+	 * 溢出队列中的任务数量
+	 * @return
+	 */
+	public int getOverflowSize() {
+		return overflow.size();
+	}
+
+	@Override
+	public String toString() {
+		return "DisruptorRunnableQueue [bufferSize=" + ringBuffer.getBufferSize() + ", size=" + size() + "]";
+	}
+
+	/**
+	 * 预分配的槽位,可见性由发布序号保证
+	 * 领取者清空槽位,生产者等槽位为空后才写入,已执行的任务不会被环形缓冲区一直引用
+	 */
+	static final class Slot{
+		static final AtomicReferenceFieldUpdater<Slot, Runnable> TASK=AtomicReferenceFieldUpdater.newUpdater(Slot.class, Runnable.class, "task");
+		volatile Runnable task;
+	}
+}
@@ -0,0 +1,294 @@
+package net.jueb.util4j.queue.queueExecutor.queue;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import net.jueb.util4j.queue.queueExecutor.RunnableQueue;
+
+/**
+ * 预分配任务槽位的多生产单消费环形队列
+ * 槽位本身就是取出的任务,入队只写入槽位字段,不像链表队列每次分配节点,配合{@link TaskTranslator}投递时稳定状态下不产生新对象.
+ * 每个槽位有一个序号,生产者CAS推进尾序号占位,写入后发布序号;消费者取出槽位并执行,下一次poll时才归还上一个槽位,
+ * 因此槽位在执行期间不会被生产者覆盖,取出的任务不能在下一次poll之后再执行或保存,需要保存或转交时先用{@link #detach(Runnable)}转换.
+ * 环形队列满时任务转入溢出队列,溢出队列不为空时新任务也进入溢出队列,环形队列全部取出后才从溢出队列取,保持同一生产者的顺序.
+ * 只支持单个消费者,与MPSC队列相同,并发poll抛出IllegalStateException;每个队列预分配capacity个槽位,适合任务密集的少量队列.
+ * @author juebanlin
+ */
+public class RingRunnableQueue extends AbstractQueue<Runnable> implements RunnableQueue{
+
+	public static final int DEFAULT_CAPACITY=1024;
+
+	private static final TaskTranslator<Runnable,Object> RUN_TASK=(task,unused)->task.run();
+
+	private static final AtomicLongFieldUpdater<Slot> SEQUENCE=AtomicLongFieldUpdater.newUpdater(Slot.class, "sequence");
+	private static final AtomicLongFieldUpdater<RingRunnableQueue> HEAD=AtomicLongFieldUpdater.newUpdater(RingRunnableQueue.class, "head");
+	private static final AtomicIntegerFieldUpdater<RingRunnableQueue> POLLING=AtomicIntegerFieldUpdater.newUpdater(RingRunnableQueue.class, "polling");
+
+	private final Slot[] slots;
+	private final int mask;
+
+	/**
+	 * 生产者占位的尾序号
+	 */
+	private final AtomicLong tail=new AtomicLong();
+
+	/**
+	 * 消费者的头序号
+	 */
+	private volatile long head;
+
+	/**
+	 * 已取出还未归还的槽位,只由消费者访问
+	 */
+	private Slot taken;
+
+	/**
+	 * 正在poll,检查单消费者约束,1是0否
+	 */
+	private volatile int polling;
+
+	/**
+	 * 环形队列满时的溢出队列
+	 */
+	private final Queue<Runnable> overflow=new ConcurrentLinkedQueue<>();
+
+	public RingRunnableQueue() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity 槽位数量,必须是2的幂
+	 */
+	public RingRunnableQueue(int capacity) {
+		if(capacity<=0 || Integer.bitCount(capacity)!=1)
+		{
+			throw new IllegalArgumentException("capacity must be a power of 2:"+capacity);
+		}
+		this.slots=new Slot[capacity];
+		this.mask=capacity-1;
+		for(int i=0;i<capacity;i++)
+		{
+			slots[i]=new Slot(i);
+		}
+	}
+
+	@Override
+	public boolean offer(Runnable e) {
+		Objects.requireNonNull(e);
+		return offer(RUN_TASK, e, null);
+	}
+
+	/**
+	 * 写入任务槽位
+	 * @param translator 任务逻辑
+	 * @param arg1
+	 * @param arg2
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public <A,B> boolean offer(TaskTranslator<A,B> translator,A arg1,B arg2) {
+		Objects.requireNonNull(translator);
+		Slot slot=overflow.isEmpty()?claim():null;
+		if(slot==null)
+		{
+			return overflow.offer(translator==RUN_TASK?(Runnable)arg1:TaskTranslator.task(translator, arg1, arg2));
+		}
+		slot.translator=(TaskTranslator<Object,Object>)translator;
+		slot.arg1=arg1;
+		slot.arg2=arg2;
+		SEQUENCE.lazySet(slot, slot.sequence+1);
+		return true;
+	}
+
+	/**
+	 * 占用一个空闲槽位
+	 * @return 已满返回null
+	 */
+	private Slot claim() {
+		for(;;)
+		{
+			long pos=tail.get();
+			Slot slot=slots[(int)pos & mask];
+			long seq=slot.sequence;
+			if(seq==pos)
+			{
+				if(tail.compareAndSet(pos, pos+1))
+				{
+					return slot;
+				}
+			}else if(seq<pos)
+			{//上一轮的槽位还未归还
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * 归还上一次取出的槽位
+	 */
+	private void releaseTaken() {
+		Slot slot=taken;
+		if(slot!=null)
+		{
+			taken=null;
+			slot.translator=null;
+			slot.arg1=null;
+			slot.arg2=null;
+			SEQUENCE.lazySet(slot, slot.sequence+mask);
+		}
+	}
+
+	/**
+	 * 取出任务,返回的槽位在下一次poll时归还
+	 * @throws IllegalStateException 其它线程正在poll
+	 */
+	@Override
+	public Runnable poll() {
+		if(!POLLING.compareAndSet(this, 0, 1))
+		{//多个消费者会归还对方正在执行的槽位
+			throw new IllegalStateException("concurrent poll on single consumer queue");
+		}
+		try {
+			releaseTaken();
+			long h=head;
+			Slot slot=slots[(int)h & mask];
+			if(slot.sequence==h+1)
+			{
+				HEAD.lazySet(this, h+1);
+				taken=slot;
+				return slot;
+			}
+			if(tail.get()!=h)
+			{//头部槽位已占位还未发布,之后的槽位和溢出队列可能有同一生产者更晚的任务,与MPSC队列一样返回null等待重新调度
+				return null;
+			}
+			return overflow.poll();
+		} finally {
+			POLLING.lazySet(this, 0);
+		}
+	}
+
+	/**
+	 * 把poll取出的槽位转换为独立的任务,需要在下一次poll之前调用
+	 * 丢弃,保存或者转交给其它队列的任务需要先转换,否则槽位归还后会被覆盖.
+	 * @param task poll返回的任务
+	 * @return 不是槽位时原样返回
+	 */
+	public static Runnable detach(Runnable task) {
+		if(task instanceof Slot)
+		{
+			Slot slot=(Slot)task;
+			return (Object)slot.translator==RUN_TASK?(Runnable)slot.arg1:TaskTranslator.task(slot.translator, slot.arg1, slot.arg2);
+		}
+		return task;
+	}
+
+	@Override
+	public Runnable peek() {
+		long h=head;
+		Slot slot=slots[(int)h & mask];
+		if(slot.sequence==h+1)
+		{
+			return slot;
+		}
+		if(tail.get()!=h)
+		{
+			return null;
+		}
+		return overflow.peek();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		long h=head;
+		return slots[(int)h & mask].sequence!=h+1 && overflow.isEmpty();
+	}
+
+	/**
+	 * 近似值,包含已占位还未发布的任务
+	 */
+	@Override
+	public int size() {
+		long size=tail.get()-head;
+		return (int)Math.max(0, Math.min(Integer.MAX_VALUE, size+overflow.size()));
+	}
+
+	/**
+	 * 当前任务的快照,不支持remove
+	 */
+	@Override
+	public Iterator<Runnable> iterator() {
+		List<Runnable> snapshot=new ArrayList<>();
+		long t=tail.get();
+		for(long pos=head;pos<t;pos++)
+		{
+			Slot slot=slots[(int)pos & mask];
+			TaskTranslator<Object,Object> translator=slot.translator;
+			Object arg1=slot.arg1;
+			Object arg2=slot.arg2;
+			if(slot.sequence!=pos+1 || translator==null)
+			{//未发布或已被取出
+				continue;
+			}
+			snapshot.add((Object)translator==RUN_TASK?(Runnable)arg1:TaskTranslator.task(translator, arg1, arg2));
+		}
+		snapshot.addAll(overflow);
+		Iterator<Runnable> it=snapshot.iterator();
+		return new Iterator<Runnable>() {
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public Runnable next() {
+				return it.next();
+			}
+		};
+	}
+
+	public int getCapacity() {
+		return slots.length;
+	}
+
+	/**
+	 * 溢出队列中的任务数量
+	 * @return
+	 */
+	public int getOverflowSize() {
+		return overflow.size();
+	}
+
+	@Override
+	public String toString() {
+		return "RingRunnableQueue [capacity=" + slots.length + ", size=" + size() + "]";
+	}
+
+	/**
+	 * 预分配的任务槽位
+	 * 序号等于pos表示空闲,等于pos+1表示已发布,归还时推进到pos+capacity供下一轮使用
+	 */
+	static final class Slot implements Runnable{
+		volatile long sequence;
+		TaskTranslator<Object,Object> translator;
+		Object arg1;
+		Object arg2;
+
+		Slot(long sequence) {
+			this.sequence=sequence;
+		}
+
+		@Override
+		public void run() {
+			translator.run(arg1, arg2);
+		}
+	}
+}
@@ -14,7 +14,7 @@ public abstract class RunnableQueueEventWrapper extends RunnableQueueWrapper{
 	}
 	
 	@Override
-	public final boolean add(Runnable e) {
+	public boolean add(Runnable e) {
 		onAddBefore();
         boolean bool=super.add(e);
         onAddAfter(bool);
@@ -22,7 +22,7 @@ public abstract class RunnableQueueEventWrapper extends RunnableQueueWrapper{
 	}
 	
 	@Override
-    public final boolean offer(Runnable e) {
+    public boolean offer(Runnable e) {
 		onAddBefore();
         boolean bool=super.offer(e);
         onAddAfter(bool);
@@ -30,7 +30,15 @@ public abstract class RunnableQueueEventWrapper extends RunnableQueueWrapper{
     }
 		
 	@Override
-	public final boolean addAll(Collection<? extends Runnable> c) {
+	public <A,B> boolean offer(TaskTranslator<A,B> translator,A arg1,B arg2) {
+		onAddBefore();
+		boolean bool=super.offer(translator, arg1, arg2);
+		onAddAfter(bool);
+		return bool;
+	}
+		
+	@Override
+	public boolean addAll(Collection<? extends Runnable> c) {
 		onAddBefore();
         boolean bool=super.addAll(c);
         onAddAfter(bool);
@@ -2,6 +2,7 @@ package net.jueb.util4j.queue.queueExecutor.queue;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Queue;
 import java.util.Spliterator;
@@ -9,6 +10,8 @@ import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
+import org.jctools.queues.MessagePassingQueue;
+
 import net.jueb.util4j.queue.queueExecutor.RunnableQueue;
 
 /**
@@ -133,11 +136,62 @@ public class RunnableQueueWrapper implements RunnableQueue{
     public boolean offer(Runnable e) {
         return queue.offer(e);
     }
+	
+	/**
+	 * 投递任务逻辑和参数,底层是{@link RingRunnableQueue}时直接写入任务槽位,否则包装为普通任务
+	 * @param translator
+	 * @param arg1
+	 * @param arg2
+	 * @return
+	 */
+	public <A,B> boolean offer(TaskTranslator<A,B> translator,A arg1,B arg2) {
+		if(queue instanceof RingRunnableQueue)
+		{
+			return ((RingRunnableQueue)queue).offer(translator, arg1, arg2);
+		}
+		return queue.offer(TaskTranslator.task(translator, arg1, arg2));
+	}
 		
+	/**
+	 * 批量添加
+	 * ConcurrentLinkedQueue的addAll先在本地链接好节点再一次CAS挂到队尾,直接委托;
+	 * JCTools队列的addAll是逐个offer,改用{@link MessagePassingQueue#fill}批量发布,
+	 * 链表队列一次交换队尾,数组队列按队列实现批量占位.
+	 */
 	@Override
 	public boolean addAll(Collection<? extends Runnable> c) {
+		if(queue instanceof MessagePassingQueue && c instanceof List && c.size()>1)
+		{
+			return fill(c);
+		}
         return queue.addAll(c);
 	}
+	
+	@SuppressWarnings("unchecked")
+	private boolean fill(Collection<? extends Runnable> c)
+	{
+		for(Runnable e:c)
+		{//fill过程中不能失败,先检查
+			Objects.requireNonNull(e);
+		}
+		MessagePassingQueue<Runnable> mpq=(MessagePassingQueue<Runnable>) queue;
+		final Iterator<? extends Runnable> it=c.iterator();
+		int remaining=c.size();
+		while(remaining>0)
+		{
+			int filled=mpq.fill(it::next, remaining);
+			if(filled<=0)
+			{//队列已满,剩余任务按Queue.add的语义处理
+				while(it.hasNext())
+				{
+					queue.add(it.next());
+				}
+				return true;
+			}
+			remaining-=filled;
+		}
+		return true;
+	}
 
 	@Override
 	public String toString() {
@@ -0,0 +1,34 @@
+package net.jueb.util4j.queue.queueExecutor.queue;
+
+/**
+ * 带参数的任务逻辑
+ * 投递时只传入逻辑和参数,由队列写入预分配的任务槽位,执行时调用{@link #run(Object, Object)}.
+ * 使用不捕获变量的lambda或者静态常量,投递本身不产生新对象,例:
+ * <pre>
+ * static final TaskTranslator&lt;Player,Msg&gt; HANDLE=(p,m)->p.handle(m);
+ * group.execute(index,HANDLE,player,msg);
+ * </pre>
+ * 队列不支持任务槽位时退化为{@link #task(TaskTranslator, Object, Object)}包装的普通任务.
+ * @author juebanlin
+ */
+@FunctionalInterface
+public interface TaskTranslator<A,B> {
+
+	/**
+	 * 在队列中执行
+	 * @param arg1
+	 * @param arg2
+	 */
+	void run(A arg1,B arg2);
+
+	/**
+	 * 包装为普通任务
+	 * @param translator
+	 * @param arg1
+	 * @param arg2
+	 * @return
+	 */
+	static <A,B> Runnable task(TaskTranslator<A,B> translator,A arg1,B arg2) {
+		return ()->translator.run(arg1, arg2);
+	}
+}
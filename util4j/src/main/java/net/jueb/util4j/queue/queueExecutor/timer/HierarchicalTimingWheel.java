@@ -0,0 +1,614 @@
+package net.jueb.util4j.queue.queueExecutor.timer;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.jueb.util4j.thread.NamedThreadFactory;
+
+/**
+ * 分层哈希时间轮
+ * 第0层256个槽,第1~3层各64个槽,按tick(默认1毫秒)推进,覆盖2^26个tick,更远的任务先放在最高层,层层下放.
+ * 高层的槽在低层转完一圈时下放(cascade)到低层,只有第0层的槽会到期执行.
+ * 所有槽位由单个时间轮线程维护,提交和取消只是入MPSC队列,插入和取消都是O(1),不受挂起任务数量影响.
+ * 到期时把任务交给指定的Executor(一般是某个索引/键值队列),时间轮线程不执行任务本身.
+ * 投递由派发执行器完成,默认是单个派发线程,按到期顺序投递,目标队列满时阻塞的是派发线程而不是时间轮线程.
+ * 没有任务时时间轮线程一直休眠,有任务时只在下一个非空槽或下放时刻唤醒.
+ * @author juebanlin
+ */
+public class HierarchicalTimingWheel {
+	protected final Logger log=LoggerFactory.getLogger(getClass());
+
+	private static final int ROOT_BITS=8;
+	private static final int ROOT_SIZE=1<<ROOT_BITS;
+	private static final int ROOT_MASK=ROOT_SIZE-1;
+	private static final int LEVEL_BITS=6;
+	private static final int LEVEL_SIZE=1<<LEVEL_BITS;
+	private static final int LEVEL_MASK=LEVEL_SIZE-1;
+	private static final int LEVEL1_SHIFT=ROOT_BITS;
+	private static final int LEVEL2_SHIFT=ROOT_BITS+LEVEL_BITS;
+	private static final int LEVEL3_SHIFT=ROOT_BITS+2*LEVEL_BITS;
+	/**
+	 * 时间轮覆盖的tick数量
+	 */
+	private static final long MAX_TICKS=1L<<(ROOT_BITS+3*LEVEL_BITS);
+
+	private static final int STATE_INIT=0;
+	private static final int STATE_STARTED=1;
+	private static final int STATE_STOPPED=2;
+
+	public static final long DEFAULT_TICK_MILLS=1;
+
+	private final long tickNanos;
+	private final ThreadFactory threadFactory;
+	private final Executor dispatchExecutor;
+	/**
+	 * 自己创建的派发线程池,停止时关闭
+	 */
+	private final ExecutorService ownedDispatchExecutor;
+	private final Bucket[] root=newBuckets(ROOT_SIZE);
+	private final Bucket[] level1=newBuckets(LEVEL_SIZE);
+	private final Bucket[] level2=newBuckets(LEVEL_SIZE);
+	private final Bucket[] level3=newBuckets(LEVEL_SIZE);
+
+	private final Queue<Timeout> pendingAdds=new ConcurrentLinkedQueue<>();
+	private final Queue<Timeout> pendingCancels=new ConcurrentLinkedQueue<>();
+	private final AtomicLong pendingTimeouts=new AtomicLong();
+
+	private volatile int state=STATE_INIT;
+	private volatile long startTime;
+	private volatile Thread workerThread;
+	/**
+	 * 时间轮线程休眠到的tick,醒着时为0,提交更早到期的任务时需要唤醒
+	 */
+	private volatile long wakeupTick;
+
+	/**
+	 * 下一个要处理的tick,仅时间轮线程访问
+	 */
+	private long currentTick;
+
+	public HierarchicalTimingWheel() {
+		this(new NamedThreadFactory("queue-timer", true),DEFAULT_TICK_MILLS,TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param threadFactory 时间轮线程工厂
+	 * @param tickDuration 每个tick的时长,即定时精度
+	 * @param unit
+	 */
+	public HierarchicalTimingWheel(ThreadFactory threadFactory,long tickDuration,TimeUnit unit) {
+		this(threadFactory, tickDuration, unit, null);
+	}
+
+	/**
+	 * @param threadFactory 时间轮线程工厂
+	 * @param tickDuration 每个tick的时长,即定时精度
+	 * @param unit
+	 * @param dispatchExecutor 把到期任务投递给目标执行器的派发执行器,为null时用threadFactory创建单个派发线程.
+	 * 传入Runnable::run时在时间轮线程直接投递,此时目标执行器不能阻塞.
+	 */
+	public HierarchicalTimingWheel(ThreadFactory threadFactory,long tickDuration,TimeUnit unit,Executor dispatchExecutor) {
+		Objects.requireNonNull(threadFactory);
+		if(tickDuration<=0)
+		{
+			throw new IllegalArgumentException("tickDuration:"+tickDuration);
+		}
+		this.threadFactory=threadFactory;
+		this.tickNanos=unit.toNanos(tickDuration);
+		if(dispatchExecutor==null)
+		{//单线程保证按到期顺序投递,空闲时线程退出
+			ThreadPoolExecutor pool=new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+			pool.allowCoreThreadTimeOut(true);
+			this.ownedDispatchExecutor=pool;
+			this.dispatchExecutor=pool;
+		}else
+		{
+			this.ownedDispatchExecutor=null;
+			this.dispatchExecutor=dispatchExecutor;
+		}
+	}
+
+	private static Bucket[] newBuckets(int size)
+	{
+		Bucket[] buckets=new Bucket[size];
+		for(int i=0;i<size;i++)
+		{
+			buckets[i]=new Bucket();
+		}
+		return buckets;
+	}
+
+	private static class DefaultHolder{
+		static final HierarchicalTimingWheel INSTANCE=new HierarchicalTimingWheel();
+	}
+
+	/**
+	 * 全局共享的时间轮,守护线程,1毫秒精度
+	 * @return
+	 */
+	public static HierarchicalTimingWheel getDefault()
+	{
+		return DefaultHolder.INSTANCE;
+	}
+
+	/**
+	 * 启动时间轮线程,提交任务时会自动启动
+	 */
+	public synchronized void start()
+	{
+		switch (state) {
+		case STATE_INIT:
+			startTime=System.nanoTime();
+			workerThread=threadFactory.newThread(this::runWorker);
+			state=STATE_STARTED;
+			workerThread.start();
+			break;
+		case STATE_STARTED:
+			break;
+		default:
+			throw new IllegalStateException("timing wheel stopped");
+		}
+	}
+
+	/**
+	 * 停止时间轮,未到期的任务全部丢弃,已到期的任务仍会投递
+	 * @return 丢弃的任务数量
+	 */
+	public synchronized long stop()
+	{
+		if(state==STATE_STARTED)
+		{
+			state=STATE_STOPPED;
+			LockSupport.unpark(workerThread);
+		}else
+		{
+			state=STATE_STOPPED;
+		}
+		if(ownedDispatchExecutor!=null)
+		{
+			ownedDispatchExecutor.shutdown();
+		}
+		return pendingTimeouts.get();
+	}
+
+	/**
+	 * 未到期的任务数量
+	 * @return
+	 */
+	public long getPendingTimeouts()
+	{
+		return pendingTimeouts.get();
+	}
+
+	public long getTickDuration(TimeUnit unit)
+	{
+		return unit.convert(tickNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * 延迟后把任务投递给target执行
+	 * @param target 执行任务的执行器
+	 * @param task
+	 * @param delay
+	 * @param unit
+	 * @return
+	 */
+	public QueueTimeout schedule(Executor target,Runnable task,long delay,TimeUnit unit)
+	{
+		return newTimeout(target, task, delay, 0, unit);
+	}
+
+	/**
+	 * 固定频率把任务投递给target执行
+	 * 投递到队列的任务抛出异常后停止后续投递.
+	 * 如果任务执行比周期慢,任务会在队列中堆积,不会并发执行.
+	 * @param target 执行任务的执行器
+	 * @param task
+	 * @param initialDelay
+	 * @param period
+	 * @param unit
+	 * @return
+	 */
+	public QueueTimeout scheduleAtFixedRate(Executor target,Runnable task,long initialDelay,long period,TimeUnit unit)
+	{
+		if(period<=0)
+		{
+			throw new IllegalArgumentException("period:"+period);
+		}
+		return newTimeout(target, task, initialDelay, period, unit);
+	}
+
+	private QueueTimeout newTimeout(Executor target,Runnable task,long delay,long period,TimeUnit unit)
+	{
+		Objects.requireNonNull(target);
+		Objects.requireNonNull(task);
+		Objects.requireNonNull(unit);
+		if(state!=STATE_STARTED)
+		{
+			try {
+				start();
+			} catch (IllegalStateException e) {
+				throw new RejectedExecutionException(e.getMessage());
+			}
+		}
+		long delayNanos=Math.min(Math.max(0, unit.toNanos(delay)), Long.MAX_VALUE>>2);
+		Timeout t=new Timeout(target, task, unit.toNanos(period));
+		t.deadlineNanos=System.nanoTime()-startTime+delayNanos;
+		t.deadlineTick=toTick(t.deadlineNanos);
+		pendingTimeouts.incrementAndGet();
+		pendingAdds.add(t);
+		if(t.deadlineTick<wakeupTick)
+		{//时间轮线程休眠到更晚的时刻或空闲休眠
+			LockSupport.unpark(workerThread);
+		}
+		return t;
+	}
+
+	private long toTick(long deadlineNanos)
+	{
+		if(deadlineNanos<=0)
+		{
+			return 0;
+		}
+		return (deadlineNanos-1)/tickNanos+1;
+	}
+
+	private void runWorker()
+	{
+		while(state==STATE_STARTED)
+		{
+			transferCancels();
+			transferAdds();
+			long now=System.nanoTime();
+			if(startTime+currentTick*tickNanos-now<=0)
+			{
+				tick(currentTick);
+				continue;
+			}
+			long next=nextTick();
+			wakeupTick=next;
+			if(pendingAdds.isEmpty() && state==STATE_STARTED)
+			{//先发布wakeupTick再检查,提交线程要么被这里看到,要么看到wakeupTick后唤醒
+				if(next==Long.MAX_VALUE)
+				{
+					LockSupport.park(this);
+				}else
+				{
+					LockSupport.parkNanos(this, startTime+next*tickNanos-now);
+				}
+			}
+			wakeupTick=0;
+			if(next==Long.MAX_VALUE)
+			{//空闲期间槽里只有已取消的任务,直接跳到当前时刻,不逐个tick追赶
+				long elapsed=(System.nanoTime()-startTime)/tickNanos;
+				if(elapsed>currentTick)
+				{
+					currentTick=elapsed;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 下一个需要处理的tick:第0层下一个非空槽,或者第0层转完一圈需要下放的时刻
+	 * @return 没有未到期任务时返回Long.MAX_VALUE
+	 */
+	private long nextTick()
+	{
+		if(pendingTimeouts.get()==0)
+		{
+			return Long.MAX_VALUE;
+		}
+		long wrap=(currentTick|ROOT_MASK)+1;
+		for(long i=currentTick;i<wrap;i++)
+		{
+			if(root[(int)(i & ROOT_MASK)].head!=null)
+			{
+				return i;
+			}
+		}
+		return wrap;
+	}
+
+	private void transferCancels()
+	{
+		Timeout t;
+		while((t=pendingCancels.poll())!=null)
+		{
+			if(t.bucket!=null)
+			{
+				t.bucket.remove(t);
+			}
+		}
+	}
+
+	private void transferAdds()
+	{
+		Timeout t;
+		while((t=pendingAdds.poll())!=null)
+		{
+			if(t.state==TIMEOUT_INIT)
+			{
+				place(t);
+			}
+		}
+	}
+
+	/**
+	 * 按到期tick放入对应层的槽,已到期的放入当前槽
+	 * @param t
+	 */
+	private void place(Timeout t)
+	{
+		long now=currentTick;
+		long expires=Math.max(t.deadlineTick, now);
+		long delta=expires-now;
+		Bucket bucket;
+		if(delta<ROOT_SIZE)
+		{
+			bucket=root[(int)(expires & ROOT_MASK)];
+		}else if(delta<1L<<LEVEL2_SHIFT)
+		{
+			bucket=level1[(int)((expires>>>LEVEL1_SHIFT) & LEVEL_MASK)];
+		}else if(delta<1L<<LEVEL3_SHIFT)
+		{
+			bucket=level2[(int)((expires>>>LEVEL2_SHIFT) & LEVEL_MASK)];
+		}else
+		{
+			if(delta>=MAX_TICKS)
+			{//超出范围的先放在最远处,下放时按真实到期时间重新放置
+				expires=now+MAX_TICKS-1;
+			}
+			bucket=level3[(int)((expires>>>LEVEL3_SHIFT) & LEVEL_MASK)];
+		}
+		bucket.add(t);
+	}
+
+	/**
+	 * 处理一个tick:第0层转完一圈时先从高层下放,然后执行第0层当前槽
+	 * @param tick
+	 */
+	private void tick(long tick)
+	{
+		int index=(int)(tick & ROOT_MASK);
+		if(index==0 && tick>0)
+		{
+			int i1=(int)((tick>>>LEVEL1_SHIFT) & LEVEL_MASK);
+			cascade(level1[i1]);
+			if(i1==0)
+			{
+				int i2=(int)((tick>>>LEVEL2_SHIFT) & LEVEL_MASK);
+				cascade(level2[i2]);
+				if(i2==0)
+				{
+					cascade(level3[(int)((tick>>>LEVEL3_SHIFT) & LEVEL_MASK)]);
+				}
+			}
+		}
+		Timeout t=root[index].detach();
+		//之后放置的任务最早在下一个tick执行
+		currentTick=tick+1;
+		while(t!=null)
+		{
+			Timeout next=t.next;
+			t.next=null;
+			if(t.state==TIMEOUT_INIT)
+			{
+				if(t.deadlineTick>tick)
+				{
+					place(t);
+				}else
+				{
+					expire(t);
+				}
+			}
+			t=next;
+		}
+	}
+
+	private void cascade(Bucket bucket)
+	{
+		Timeout t=bucket.detach();
+		while(t!=null)
+		{
+			Timeout next=t.next;
+			t.next=null;
+			if(t.state==TIMEOUT_INIT)
+			{
+				place(t);
+			}
+			t=next;
+		}
+	}
+
+	private void expire(Timeout t)
+	{
+		if(t.periodNanos>0)
+		{
+			dispatch(t.target, t);
+			if(t.state==TIMEOUT_INIT)
+			{
+				t.deadlineNanos+=t.periodNanos;
+				t.deadlineTick=toTick(t.deadlineNanos);
+				place(t);
+			}
+		}else if(STATE.compareAndSet(t, TIMEOUT_INIT, TIMEOUT_EXPIRED))
+		{
+			pendingTimeouts.decrementAndGet();
+			dispatch(t.target, t.task);
+		}
+	}
+
+	/**
+	 * 交给派发执行器投递,时间轮线程不调用可能阻塞的target
+	 * @param target
+	 * @param task
+	 */
+	private void dispatch(Executor target,Runnable task)
+	{
+		try {
+			dispatchExecutor.execute(()->dispatchNow(target, task));
+		} catch (RejectedExecutionException e) {//派发执行器已关闭,直接投递
+			dispatchNow(target, task);
+		}
+	}
+
+	private void dispatchNow(Executor target,Runnable task)
+	{
+		try {
+			target.execute(task);
+		} catch (Throwable e) {
+			log.error("timeout dispatch error:"+e.getMessage(),e);
+		}
+	}
+
+	private static final int TIMEOUT_INIT=0;
+	private static final int TIMEOUT_CANCELLED=1;
+	private static final int TIMEOUT_EXPIRED=2;
+
+	private static final AtomicIntegerFieldUpdater<Timeout> STATE=AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+	private final class Timeout implements QueueTimeout,Runnable{
+		final Executor target;
+		final Runnable task;
+		final long periodNanos;
+		/**
+		 * 相对startTime的到期时间
+		 */
+		volatile long deadlineNanos;
+		long deadlineTick;
+		volatile int state=TIMEOUT_INIT;
+
+		Timeout prev;
+		Timeout next;
+		Bucket bucket;
+
+		Timeout(Executor target,Runnable task,long periodNanos) {
+			this.target=target;
+			this.task=task;
+			this.periodNanos=periodNanos;
+		}
+
+		@Override
+		public boolean cancel() {
+			if(STATE.compareAndSet(this, TIMEOUT_INIT, TIMEOUT_CANCELLED))
+			{
+				pendingTimeouts.decrementAndGet();
+				pendingCancels.add(this);
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return state==TIMEOUT_CANCELLED;
+		}
+
+		@Override
+		public boolean isExpired() {
+			return state==TIMEOUT_EXPIRED;
+		}
+
+		@Override
+		public boolean isPeriodic() {
+			return periodNanos>0;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(startTime+deadlineNanos-System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * 周期任务在目标队列中执行,异常时取消后续投递
+		 */
+		@Override
+		public void run() {
+			try {
+				task.run();
+			} catch (RuntimeException|Error e) {
+				if(cancel())
+				{
+					log.error("periodic task cancelled,task="+task+",error:"+e,e);
+				}
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * 槽,双向链表,仅时间轮线程访问
+	 */
+	private static final class Bucket{
+		Timeout head;
+		Timeout tail;
+
+		void add(Timeout t)
+		{
+			t.bucket=this;
+			t.prev=tail;
+			t.next=null;
+			if(tail==null)
+			{
+				head=t;
+			}else
+			{
+				tail.next=t;
+			}
+			tail=t;
+		}
+
+		void remove(Timeout t)
+		{
+			if(t.prev==null)
+			{
+				head=t.next;
+			}else
+			{
+				t.prev.next=t.next;
+			}
+			if(t.next==null)
+			{
+				tail=t.prev;
+			}else
+			{
+				t.next.prev=t.prev;
+			}
+			t.prev=null;
+			t.next=null;
+			t.bucket=null;
+		}
+
+		/**
+		 * 取出整条链表,链表节点只保留next
+		 * @return
+		 */
+		Timeout detach()
+		{
+			Timeout t=head;
+			head=null;
+			tail=null;
+			for(Timeout i=t;i!=null;i=i.next)
+			{
+				i.prev=null;
+				i.bucket=null;
+			}
+			return t;
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package net.jueb.util4j.queue.queueExecutor.timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时任务句柄
+ * @author juebanlin
+ */
+public interface QueueTimeout {
+
+	/**
+	 * 取消定时任务,已经投递到队列的任务不受影响
+	 * @return 是否由本次调用取消
+	 */
+	public boolean cancel();
+
+	public boolean isCancelled();
+
+	/**
+	 * 单次任务是否已经到期投递
+	 * @return
+	 */
+	public boolean isExpired();
+
+	/**
+	 * 是否周期任务
+	 * @return
+	 */
+	public boolean isPeriodic();
+
+	/**
+	 * 距离下次到期的时间
+	 * @param unit
+	 * @return
+	 */
+	public long getDelay(TimeUnit unit);
+}
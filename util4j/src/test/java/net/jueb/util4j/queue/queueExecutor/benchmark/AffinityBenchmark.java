@@ -0,0 +1,127 @@
+package net.jueb.util4j.queue.queueExecutor.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.QueueGroupExecutor;
+
+/**
+ * 共享系统队列与亲和模式的缓存局部性对比
+ * 每个索引队列持有stateKb大小的状态(类似房间或地图分片),任务随机读写该状态,
+ * 亲和模式下同一队列总在同一线程上执行,状态留在该核心的缓存中.
+ * 状态总量(queueCount*stateKb)应当超过单核L2而小于L3,差异最明显.
+ * @author juebanlin
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AffinityBenchmark {
+
+	public static final int BATCH = 1024;
+
+	@Param({QueueGroupExecutors.DEFAULT, QueueGroupExecutors.DEFAULT_AFFINITY})
+	public String executor;
+
+	@Param({"4", "8"})
+	public int threads;
+
+	@Param({"64"})
+	public int queueCount;
+
+	@Param({"64", "256"})
+	public int stateKb;
+
+	@Param({"256"})
+	public int touches;
+
+	QueueGroupExecutors.Handle handle;
+
+	/**
+	 * 每个队列的状态,只会被该队列的任务访问
+	 */
+	long[][] states;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		handle = QueueGroupExecutors.build(executor, threads, "MPSC", "parking");
+		states = new long[queueCount][stateKb * 1024 / 8];
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		handle.shutdown();
+	}
+
+	@State(Scope.Thread)
+	public static class Producer {
+		final AtomicLong done = new AtomicLong();
+		long expected;
+		int seq;
+		Runnable[] tasks;
+
+		@Setup(Level.Trial)
+		public void setup(AffinityBenchmark b) {
+			tasks = new Runnable[b.queueCount];
+			for (int q = 0; q < b.queueCount; q++) {
+				long[] state = b.states[q];
+				int touches = b.touches;
+				tasks[q] = () -> {
+					int mask = state.length - 1;
+					long seed = state[0] + 1;
+					for (int i = 0; i < touches; i++) {
+						seed = seed * 6364136223846793005L + 1442695040888963407L;
+						int idx = (int) (seed >>> 33) & mask;
+						state[idx] += seed;
+					}
+					state[0] = seed;
+					done.incrementAndGet();
+				};
+			}
+		}
+	}
+
+	@Benchmark
+	@Threads(4)
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@OperationsPerInvocation(BATCH)
+	public long throughput(Producer p) {
+		QueueGroupExecutor qe = handle.executor;
+		int queueCount = p.tasks.length;
+		for (int i = 0; i < BATCH; i++) {
+			int q = p.seq++ % queueCount;
+			qe.execute((short) q, p.tasks[q]);
+		}
+		p.expected += BATCH;
+		while (p.done.get() < p.expected) {
+			Thread.yield();
+		}
+		return p.expected;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder().include(AffinityBenchmark.class.getSimpleName()).build();
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,102 @@
+package net.jueb.util4j.queue.queueExecutor.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 批量投递基准测试
+ * <pre>
+ * perTask: 逐个execute(Runnable)投递batchSize个任务到同一个索引队列
+ * batch: 一次execute(List)投递同样的任务
+ * 两者都等待全部任务执行完,结果为每批的平均耗时
+ * 运行: mvn -Pjmh test-compile exec:exec -Djmh.args="BatchEnqueueBenchmark"
+ * </pre>
+ * @author juebanlin
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchEnqueueBenchmark {
+
+	@Param({"DEFAULT", "MPSC", "MPMC"})
+	public String queueFactory;
+
+	@Param({"16", "256"})
+	public int batchSize;
+
+	@Param({"4"})
+	public int threads;
+
+	QueueGroupExecutors.Handle handle;
+
+	final AtomicLong done = new AtomicLong();
+	List<Runnable> tasks;
+	long expected;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		handle = QueueGroupExecutors.build(QueueGroupExecutors.DEFAULT, threads, queueFactory, "sleeping");
+		tasks = new ArrayList<>(batchSize);
+		Runnable task = done::incrementAndGet;
+		for (int i = 0; i < batchSize; i++) {
+			tasks.add(task);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		handle.shutdown();
+	}
+
+	private long await() {
+		expected += batchSize;
+		while (done.get() < expected) {
+			Thread.yield();
+		}
+		return expected;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public long perTask() {
+		for (int i = 0; i < batchSize; i++) {
+			handle.executor.execute((short) 1, tasks.get(i));
+		}
+		return await();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public long batch() {
+		handle.executor.execute((short) 1, tasks);
+		return await();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder().include(BatchEnqueueBenchmark.class.getSimpleName()).build();
+		new Runner(opt).run();
+	}
+}
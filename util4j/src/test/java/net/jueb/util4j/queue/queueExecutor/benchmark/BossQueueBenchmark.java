@@ -0,0 +1,116 @@
+package net.jueb.util4j.queue.queueExecutor.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.QueueGroupExecutor;
+
+/**
+ * 主队列ConcurrentLinkedQueue与Disruptor环形缓冲区的对比
+ * throughput:4个生产者线程往queueCount个索引队列投递空任务,每次队列就绪都会经过主队列;
+ * latency:单个任务从投递到执行完成的往返时间分布.
+ * 使用GC profiler运行(main方法已添加),对比gc.alloc.rate.norm观察每次调度的分配量.
+ * @author juebanlin
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BossQueueBenchmark {
+
+	public static final int BATCH = 1024;
+
+	@Param({QueueGroupExecutors.QUEUES_SERVICE, QueueGroupExecutors.DEFAULT})
+	public String executor;
+
+	@Param({QueueGroupExecutors.BOSS_CLQ, QueueGroupExecutors.BOSS_DISRUPTOR})
+	public String bossQueue;
+
+	@Param({"4"})
+	public int threads;
+
+	@Param({"1024"})
+	public int queueCount;
+
+	QueueGroupExecutors.Handle handle;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		handle = QueueGroupExecutors.build(executor, threads, "MPSC", "parking", false, bossQueue);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		handle.shutdown();
+	}
+
+	@State(Scope.Thread)
+	public static class Producer {
+		final AtomicLong done = new AtomicLong();
+		long expected;
+		int seq;
+		Runnable task;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			task = done::incrementAndGet;
+		}
+	}
+
+	@Benchmark
+	@Threads(4)
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@OperationsPerInvocation(BATCH)
+	public long throughput(Producer p) {
+		QueueGroupExecutor qe = handle.executor;
+		for (int i = 0; i < BATCH; i++) {
+			qe.execute((short) (p.seq++ % queueCount), p.task);
+		}
+		p.expected += BATCH;
+		while (p.done.get() < p.expected) {
+			Thread.yield();
+		}
+		return p.expected;
+	}
+
+	@Benchmark
+	@Threads(1)
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public long latency(Producer p) {
+		handle.executor.execute((short) (p.seq++ % queueCount), p.task);
+		p.expected++;
+		while (p.done.get() < p.expected) {
+			Thread.yield();
+		}
+		return p.expected;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder().include(BossQueueBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class).build();
+		new Runner(opt).run();
+	}
+}
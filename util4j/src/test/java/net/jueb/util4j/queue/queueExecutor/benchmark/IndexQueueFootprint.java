@@ -0,0 +1,57 @@
+package net.jueb.util4j.queue.queueExecutor.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.DefaultIndexQueueManager;
+
+/**
+ * 索引队列管理器的内存占用
+ * 分别统计空管理器,使用连续的部分索引,使用分散的部分索引,提前初始化全部队列几种情况下每个管理器的保留堆大小.
+ * 分散索引每页只用到一个插槽,是分页分配的最坏情况.
+ * 没有引入JOL,这里用多次GC之后的堆使用量差值估算,同时创建count个实例取平均以降低误差.
+ * 运行参数建议-Xmx2g -XX:+UseSerialGC,结果受对象头压缩(-XX:+UseCompressedOops)影响.
+ * @author juebanlin
+ */
+public class IndexQueueFootprint {
+
+	public static void main(String[] args) throws Exception {
+		int count=args.length>0?Integer.parseInt(args[0]):8;
+		int touched=args.length>1?Integer.parseInt(args[1]):1024;
+		report("empty", count, 0, 1, false);
+		report("touched_"+touched, count, touched, 1, false);
+		report("sparse_"+touched, count, touched, DefaultIndexQueueManager.MAX_SOLT_COUNT/touched, false);
+		report("initQueues", count, 0, 1, true);
+	}
+
+	private static void report(String name,int count,int touched,int stride,boolean initQueues) throws Exception
+	{
+		List<DefaultIndexQueueManager> holder=new ArrayList<>(count);
+		long before=usedHeap();
+		for(int i=0;i<count;i++)
+		{
+			DefaultIndexQueueManager iqm=new DefaultIndexQueueManager.Builder().setInitQueues(initQueues).build();
+			for(int s=0;s<touched;s++)
+			{
+				iqm.getQueueExecutor((short)(s*stride));
+			}
+			holder.add(iqm);
+		}
+		long after=usedHeap();
+		System.out.println(String.format("%-16s %,12d bytes/manager", name, (after-before)/count));
+		holder.clear();
+	}
+
+	private static long usedHeap() throws InterruptedException
+	{
+		Runtime rt=Runtime.getRuntime();
+		long used=Long.MAX_VALUE;
+		for(int i=0;i<5;i++)
+		{
+			System.gc();
+			Thread.sleep(50);
+			used=Math.min(used, rt.totalMemory()-rt.freeMemory());
+		}
+		return used;
+	}
+}
@@ -0,0 +1,168 @@
+package net.jueb.util4j.queue.queueExecutor.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.jueb.util4j.queue.queueExecutor.QueueFactory;
+import net.jueb.util4j.queue.queueExecutor.executor.QueueExecutor;
+import net.jueb.util4j.queue.queueExecutor.executor.impl.RunnableQueueExecutorEventWrapper;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.KeyQueueGroupManager;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.DefaultKeyQueueManager;
+
+/**
+ * 键值队列查找/创建基准测试
+ * DefaultKeyQueueManager在1/4/16/64个生产者线程下的吞吐量,与原来全局addLock+HashMap的查找方式(reference)对比.
+ * 每轮迭代重建管理器,keyCount个key第一次访问走创建分支,之后走查找分支;
+ * newKeyPercent控制每次操作中访问全新key的比例,模拟高扇出下持续创建队列.
+ * bounded限制队列数量为keyCount,全新key使队列数量超限,衡量数量回收对生产者的影响.
+ * @author juebanlin
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class KeyQueueLookupBenchmark {
+
+	@Param({"reference", "unbounded", "bounded"})
+	public String manager;
+
+	@Param({"10000", "1000000"})
+	public int keyCount;
+
+	@Param({"0", "1"})
+	public int newKeyPercent;
+
+	String[] keys;
+	Function<String, QueueExecutor> lookup;
+
+	@Setup(Level.Trial)
+	public void initKeys() {
+		keys = new String[keyCount];
+		for (int i = 0; i < keyCount; i++) {
+			keys[i] = "player_" + i;
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void initManager() {
+		KeyQueueGroupManager kqm;
+		switch (manager) {
+		case "reference":
+			lookup = new LockedHashMapLookup(QueueFactory.MPSC_QUEUE_FACTORY)::getQueueExecutor;
+			return;
+		case "bounded":
+			kqm = new DefaultKeyQueueManager.Builder().setMpScQueueFactory().setMaxQueueCount(keyCount).build();
+			break;
+		default:
+			kqm = new DefaultKeyQueueManager.Builder().setMpScQueueFactory().build();
+			break;
+		}
+		kqm.setGroupEventListener((key, handleTask) -> handleTask.run());
+		lookup = kqm::getQueueExecutor;
+	}
+
+	/**
+	 * 原DefaultKeyQueueManager的查找方式:不加锁读HashMap,未命中时在全局addLock内创建并放入
+	 * 原实现加锁后没有重新查找,并发未命中会重复创建队列,这里补上重新查找,只保留锁和HashMap的开销.
+	 */
+	static final class LockedHashMapLookup {
+		private final Map<String, QueueExecutor> queues = new HashMap<>();
+		private final Object addLock = new Object();
+		private final QueueFactory queueFactory;
+
+		LockedHashMapLookup(QueueFactory queueFactory) {
+			this.queueFactory = queueFactory;
+		}
+
+		QueueExecutor getQueueExecutor(String index) {
+			QueueExecutor qe = queues.get(index);
+			if (qe == null) {
+				synchronized (addLock) {
+					qe = queues.get(index);
+					if (qe == null) {
+						RunnableQueueExecutorEventWrapper tq = new RunnableQueueExecutorEventWrapper(queueFactory.buildQueue()) {
+							@Override
+							protected void onAddBefore() {
+							}
+
+							@Override
+							protected void onAddAfter(boolean offeredSucceed) {
+							}
+						};
+						tq.setAlias("key_" + index);
+						tq.setAttribute("key", index);
+						queues.put(index, tq);
+						qe = tq;
+					}
+				}
+			}
+			return qe;
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Producer {
+		int seq = (int) Thread.currentThread().getId() * 7919;
+		long fresh;
+		final String prefix = "fresh_" + Thread.currentThread().getId() + "_";
+	}
+
+	private QueueExecutor lookup(Producer p) {
+		int n = p.seq++;
+		if (newKeyPercent > 0 && (n & 0x7FFFFFFF) % 100 < newKeyPercent) {
+			return lookup.apply(p.prefix + (p.fresh++));
+		}
+		return lookup.apply(keys[(n & 0x7FFFFFFF) % keys.length]);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public QueueExecutor threads_1(Producer p) {
+		return lookup(p);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public QueueExecutor threads_4(Producer p) {
+		return lookup(p);
+	}
+
+	@Benchmark
+	@Threads(16)
+	public QueueExecutor threads_16(Producer p) {
+		return lookup(p);
+	}
+
+	@Benchmark
+	@Threads(64)
+	public QueueExecutor threads_64(Producer p) {
+		return lookup(p);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder().include(KeyQueueLookupBenchmark.class.getSimpleName()).build();
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,161 @@
+package net.jueb.util4j.queue.queueExecutor.benchmark;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.QueueGroupExecutor;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.DefaultIndexQueueManager;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.DefaultKeyQueueManager;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.DefaultQueueGroupExecutor;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.PriorityLanes;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.QueuesExecutorService;
+
+/**
+ * 线程池饱和时高优先级通道的延迟
+ * 后台线程持续往bulkQueues个"bulk"键值队列投递任务,使积压保持在backlog左右,
+ * 测量"ctrl"队列(控制流量,如登录,心跳回复)单个任务从投递到完成的时间分布.
+ * lanes=false时ctrl任务排在全部积压之后,lanes=true时ctrl分配到通道0优先处理.
+ * @author juebanlin
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PriorityLaneBenchmark {
+
+	@Param({QueueGroupExecutors.QUEUES_SERVICE, QueueGroupExecutors.DEFAULT})
+	public String executor;
+
+	@Param({"false", "true"})
+	public boolean lanes;
+
+	@Param({"4"})
+	public int threads;
+
+	@Param({"256"})
+	public int bulkQueues;
+
+	@Param({"10000"})
+	public int backlog;
+
+	@Param({"200"})
+	public long bulkWork;
+
+	QueueGroupExecutor qe;
+	Runnable shutdown;
+	Thread bulkProducer;
+	volatile boolean running;
+
+	final AtomicLong bulkPosted = new AtomicLong();
+	final AtomicLong bulkDone = new AtomicLong();
+
+	@Setup(Level.Trial)
+	public void setup() {
+		PriorityLanes pl = lanes ? new PriorityLanes.Builder(2).addKeyPrefix("ctrl", 0).build() : null;
+		DefaultIndexQueueManager iqm = new DefaultIndexQueueManager();
+		DefaultKeyQueueManager kqm = new DefaultKeyQueueManager();
+		if (QueueGroupExecutors.DEFAULT.equals(executor)) {
+			DefaultQueueGroupExecutor e = new DefaultQueueGroupExecutor.Builder()
+					.setCorePoolSize(threads).setMaxPoolSize(threads)
+					.setWaitConditionStrategy(QueueGroupExecutors.waitStrategy("parking"))
+					.setBossQueue(new ConcurrentLinkedQueue<>())
+					.setIndexQueueGroupManager(iqm).setKeyQueueGroupManagerr(kqm)
+					.setPriorityLanes(pl).build();
+			e.prestartAllCoreThreads();
+			qe = e;
+			shutdown = e::shutdown;
+		} else {
+			QueuesExecutorService e = new QueuesExecutorService.Builder()
+					.setCorePoolSize(threads).setMaxPoolSize(threads)
+					.setWaitConditionStrategy(QueueGroupExecutors.waitStrategy("parking"))
+					.setBossQueue(new ConcurrentLinkedQueue<>())
+					.setIndexQueueGroupManager(iqm).setKeyQueueGroupManagerr(kqm)
+					.setAssistExecutor(Runnable::run)
+					.setPriorityLanes(pl).build();
+			for (int i = 0; i < threads; i++) {
+				e.wakeUpWorkerIfNecessary();
+			}
+			qe = e;
+			shutdown = e::shutdown;
+		}
+		long tokens = bulkWork;
+		Runnable bulkTask = () -> {
+			Blackhole.consumeCPU(tokens);
+			bulkDone.incrementAndGet();
+		};
+		running = true;
+		bulkProducer = new Thread(() -> {
+			int seq = 0;
+			while (running) {
+				if (bulkPosted.get() - bulkDone.get() < backlog) {
+					for (int i = 0; i < 256; i++) {
+						qe.execute("bulk" + (seq++ % bulkQueues), bulkTask);
+					}
+					bulkPosted.addAndGet(256);
+				} else {
+					Thread.yield();
+				}
+			}
+		}, "bulk-producer");
+		bulkProducer.setDaemon(true);
+		bulkProducer.start();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws InterruptedException {
+		running = false;
+		bulkProducer.join();
+		shutdown.run();
+	}
+
+	@State(Scope.Thread)
+	public static class Control {
+		final AtomicLong done = new AtomicLong();
+		long expected;
+		Runnable task;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			task = done::incrementAndGet;
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public long controlLatency(Control c) {
+		qe.execute("ctrl", c.task);
+		c.expected++;
+		while (c.done.get() < c.expected) {
+			Thread.yield();
+		}
+		return c.expected;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder().include(PriorityLaneBenchmark.class.getSimpleName()).build();
+		new Runner(opt).run();
+	}
+}
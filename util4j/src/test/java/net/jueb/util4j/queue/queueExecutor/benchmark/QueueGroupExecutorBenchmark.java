@@ -0,0 +1,148 @@
+package net.jueb.util4j.queue.queueExecutor.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.QueueGroupExecutor;
+
+/**
+ * 队列组执行器基准测试
+ * <pre>
+ * throughput: 每次调用投递BATCH个任务到queueCount个队列并等待全部执行完,得出端到端吞吐量
+ * latency: 执行器空闲时投递单个任务并自旋等待其开始执行,SampleTime模式给出p50/p99入队到执行的延迟
+ * target: index=索引队列,key=键值队列,boss=直接投递主队列
+ * waitStrategy只对default和queuesService有效,线程池适配器可以用-p只跑一种
+ * 运行: mvn -Pjmh test-compile exec:exec -Djmh.args="QueueGroupExecutorBenchmark -p executor=default"
+ * </pre>
+ * @author juebanlin
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueGroupExecutorBenchmark {
+
+	public static final int BATCH = 1024;
+
+	@Param({QueueGroupExecutors.DEFAULT, QueueGroupExecutors.QUEUES_SERVICE,
+		QueueGroupExecutors.THREAD_POOL, QueueGroupExecutors.SCHEDULED})
+	public String executor;
+
+	@Param({"DEFAULT", "MPSC", "MPMC"})
+	public String queueFactory;
+
+	@Param({"sleeping", "yielding", "busySpin", "blocking", "parking"})
+	public String waitStrategy;
+
+	@Param({"index", "key", "boss"})
+	public String target;
+
+	@Param({"4"})
+	public int threads;
+
+	@Param({"64"})
+	public int queueCount;
+
+	QueueGroupExecutors.Handle handle;
+	Submitter submitter;
+
+	/**
+	 * 投递方式
+	 */
+	interface Submitter {
+		void submit(int i, Runnable task);
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		handle = QueueGroupExecutors.build(executor, threads, queueFactory, waitStrategy);
+		QueueGroupExecutor qe = handle.executor;
+		switch (target) {
+		case "index":
+			submitter = (i, task) -> qe.execute((short) (i % queueCount), task);
+			break;
+		case "key": {
+			String[] keys = new String[queueCount];
+			for (int i = 0; i < queueCount; i++) {
+				keys[i] = "key_" + i;
+			}
+			submitter = (i, task) -> qe.execute(keys[i % queueCount], task);
+			break;
+		}
+		case "boss":
+			submitter = (i, task) -> handle.boss.execute(task);
+			break;
+		default:
+			throw new IllegalArgumentException("unknown target:" + target);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		handle.shutdown();
+	}
+
+	/**
+	 * 每个生产者线程自己的完成计数
+	 */
+	@State(Scope.Thread)
+	public static class Producer {
+		final AtomicLong done = new AtomicLong();
+		final Runnable task = done::incrementAndGet;
+		long expected;
+		volatile boolean ran;
+		final Runnable ping = () -> ran = true;
+		int seq;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@OperationsPerInvocation(BATCH)
+	public long throughput(Producer p) {
+		for (int i = 0; i < BATCH; i++) {
+			submitter.submit(p.seq++, p.task);
+		}
+		p.expected += BATCH;
+		while (p.done.get() < p.expected) {
+			Thread.yield();
+		}
+		return p.expected;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public boolean latency(Producer p) {
+		p.ran = false;
+		submitter.submit(p.seq++, p.ping);
+		while (!p.ran) {
+			// 自旋等待任务开始执行
+		}
+		return p.ran;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder().include(QueueGroupExecutorBenchmark.class.getSimpleName()).build();
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,229 @@
+package net.jueb.util4j.queue.queueExecutor.benchmark;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import net.jueb.util4j.lock.waiteStrategy.BlockingWaitConditionStrategy;
+import net.jueb.util4j.lock.waiteStrategy.BusySpinWaitConditionStrategy;
+import net.jueb.util4j.lock.waiteStrategy.ParkingWaitConditionStrategy;
+import net.jueb.util4j.lock.waiteStrategy.SleepingWaitConditionStrategy;
+import net.jueb.util4j.lock.waiteStrategy.WaitConditionStrategy;
+import net.jueb.util4j.lock.waiteStrategy.YieldingWaitConditionStrategy;
+import net.jueb.util4j.queue.queueExecutor.QueueFactory;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.IndexQueueGroupManager;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.KeyQueueGroupManager;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.QueueGroupExecutor;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.DefaultIndexQueueManager;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.DefaultKeyQueueManager;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.DefaultQueueGroupExecutor;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.QueuesExecutorService;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.adapter.ScheduledThreadPoolQueueGroupExecutor;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.adapter.ThreadPoolQueueGroupExecutor;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.adapter.VirtualThreadQueueGroupExecutor;
+import net.jueb.util4j.queue.queueExecutor.queue.DisruptorRunnableQueue;
+
+/**
+ * 基准测试用的执行器构建工具
+ * 按名字构建各种队列组执行器,每次都使用新的队列管理器和主队列,避免实例之间共享状态.
+ * @author juebanlin
+ */
+public class QueueGroupExecutors {
+
+	public static final String DEFAULT = "default";
+	public static final String DEFAULT_WORK_STEALING = "defaultWorkStealing";
+	public static final String DEFAULT_AFFINITY = "defaultAffinity";
+	public static final String QUEUES_SERVICE = "queuesService";
+	public static final String THREAD_POOL = "threadPool";
+	public static final String SCHEDULED = "scheduled";
+	/**
+	 * 虚拟线程执行器,需要JDK21
+	 */
+	public static final String VIRTUAL = "virtual";
+
+	/**
+	 * 主队列:ConcurrentLinkedQueue
+	 */
+	public static final String BOSS_CLQ = "clq";
+	/**
+	 * 主队列:Disruptor环形缓冲区
+	 */
+	public static final String BOSS_DISRUPTOR = "disruptor";
+
+	/**
+	 * 构建好的执行器
+	 */
+	public static class Handle {
+		/**
+		 * 队列组执行器
+		 */
+		public final QueueGroupExecutor executor;
+		/**
+		 * 直接投递到主队列(boss queue)的执行器
+		 */
+		public final Executor boss;
+		private final Runnable shutdown;
+
+		Handle(QueueGroupExecutor executor, Executor boss, Runnable shutdown) {
+			this.executor = executor;
+			this.boss = boss;
+			this.shutdown = shutdown;
+		}
+
+		public void shutdown() {
+			shutdown.run();
+		}
+	}
+
+	public static QueueFactory queueFactory(String name) {
+		switch (name) {
+		case "MPSC":
+			return QueueFactory.MPSC_QUEUE_FACTORY;
+		case "MPMC":
+			return QueueFactory.MPMC_QUEUE_FACTORY;
+		case "DEFAULT":
+			return QueueFactory.DEFAULT_QUEUE_FACTORY;
+		case "RING":
+			return QueueFactory.RING_QUEUE_FACTORY;
+		default:
+			throw new IllegalArgumentException("unknown queueFactory:" + name);
+		}
+	}
+
+	public static Queue<Runnable> bossQueue(String name) {
+		switch (name) {
+		case BOSS_CLQ:
+			return new ConcurrentLinkedQueue<>();
+		case BOSS_DISRUPTOR:
+			return new DisruptorRunnableQueue();
+		default:
+			throw new IllegalArgumentException("unknown bossQueue:" + name);
+		}
+	}
+
+	public static WaitConditionStrategy waitStrategy(String name) {
+		switch (name) {
+		case "sleeping":
+			return new SleepingWaitConditionStrategy();
+		case "yielding":
+			return new YieldingWaitConditionStrategy();
+		case "busySpin":
+			return new BusySpinWaitConditionStrategy();
+		case "blocking":
+			return new BlockingWaitConditionStrategy();
+		case "parking":
+			return new ParkingWaitConditionStrategy();
+		default:
+			throw new IllegalArgumentException("unknown waitStrategy:" + name);
+		}
+	}
+
+	/**
+	 * @param executor 执行器名字
+	 * @param threads 工作线程数量
+	 * @param queueFactory 队列工厂名字
+	 * @param waitStrategy 等待策略名字,仅对default和queuesService有效
+	 * @return
+	 */
+	public static Handle build(String executor, int threads, String queueFactory, String waitStrategy) {
+		return build(executor, threads, queueFactory, waitStrategy, false);
+	}
+
+	/**
+	 * @param executor 执行器名字
+	 * @param threads 工作线程数量
+	 * @param queueFactory 队列工厂名字
+	 * @param waitStrategy 等待策略名字,仅对default和queuesService有效
+	 * @param metrics 是否开启队列指标统计
+	 * @return
+	 */
+	public static Handle build(String executor, int threads, String queueFactory, String waitStrategy,
+			boolean metrics) {
+		return build(executor, threads, queueFactory, waitStrategy, metrics, BOSS_CLQ);
+	}
+
+	/**
+	 * @param executor 执行器名字
+	 * @param threads 工作线程数量
+	 * @param queueFactory 队列工厂名字
+	 * @param waitStrategy 等待策略名字,仅对default和queuesService有效
+	 * @param metrics 是否开启队列指标统计
+	 * @param bossQueue 主队列名字,仅对default和queuesService有效
+	 * @return
+	 */
+	public static Handle build(String executor, int threads, String queueFactory, String waitStrategy,
+			boolean metrics, String bossQueue) {
+		QueueFactory qf = queueFactory(queueFactory);
+		DefaultIndexQueueManager iqm = new DefaultIndexQueueManager(qf);
+		DefaultKeyQueueManager kqm = new DefaultKeyQueueManager(qf);
+		iqm.setMetricsEnabled(metrics);
+		kqm.setMetricsEnabled(metrics);
+		switch (executor) {
+		case DEFAULT:
+		case DEFAULT_WORK_STEALING:
+		case DEFAULT_AFFINITY: {
+			BossExposedExecutor e = new BossExposedExecutor(threads, waitStrategy(waitStrategy),
+					bossQueue(bossQueue), iqm, kqm);
+			e.setWorkStealing(DEFAULT_WORK_STEALING.equals(executor));
+			e.setAffinity(DEFAULT_AFFINITY.equals(executor));
+			e.prestartAllCoreThreads();
+			for (int i = 0; i < threads; i++) {
+				e.wakeUpWorkerIfNecessary();
+			}
+			return new Handle(e, e::systemExecute, e::shutdown);
+		}
+		case QUEUES_SERVICE: {
+			QueuesExecutorService e = new QueuesExecutorService.Builder()
+					.setCorePoolSize(threads).setMaxPoolSize(threads)
+					.setWaitConditionStrategy(waitStrategy(waitStrategy))
+					.setBossQueue(bossQueue(bossQueue))
+					.setIndexQueueGroupManager(iqm).setKeyQueueGroupManagerr(kqm)
+					.setAssistExecutor(Runnable::run).build();
+			for (int i = 0; i < threads; i++) {
+				e.wakeUpWorkerIfNecessary();
+			}
+			return new Handle(e, e, e::shutdown);
+		}
+		case THREAD_POOL: {
+			ThreadPoolQueueGroupExecutor e = new ThreadPoolQueueGroupExecutor(threads, threads,
+					new LinkedBlockingQueue<>(), iqm, kqm);
+			e.prestartAllCoreThreads();
+			return new Handle(e, e, e::shutdown);
+		}
+		case SCHEDULED: {
+			ScheduledThreadPoolQueueGroupExecutor e = new ScheduledThreadPoolQueueGroupExecutor(threads,
+					Executors.defaultThreadFactory(), new ThreadPoolExecutor.AbortPolicy(), iqm, kqm);
+			e.prestartAllCoreThreads();
+			return new Handle(e, e, e::shutdown);
+		}
+		case VIRTUAL: {
+			VirtualThreadQueueGroupExecutor e = new VirtualThreadQueueGroupExecutor.Builder()
+					.setIndexQueueGroupManager(iqm).setKeyQueueGroupManagerr(kqm).build();
+			return new Handle(e, e, e::shutdown);
+		}
+		default:
+			throw new IllegalArgumentException("unknown executor:" + executor);
+		}
+	}
+
+	/**
+	 * 暴露主队列投递方法的DefaultQueueGroupExecutor
+	 */
+	static class BossExposedExecutor extends DefaultQueueGroupExecutor {
+
+		BossExposedExecutor(int threads, WaitConditionStrategy waitConditionStrategy, Queue<Runnable> bossQueue,
+				IndexQueueGroupManager iqm, KeyQueueGroupManager kqm) {
+			super(threads, threads, 30, TimeUnit.SECONDS, Executors.defaultThreadFactory(), waitConditionStrategy,
+					bossQueue, iqm, kqm, null);
+		}
+
+		@Override
+		public void systemExecute(Runnable task) {
+			super.systemExecute(task);
+		}
+	}
+}
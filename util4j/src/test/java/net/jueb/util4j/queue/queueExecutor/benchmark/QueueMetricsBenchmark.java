@@ -0,0 +1,86 @@
+package net.jueb.util4j.queue.queueExecutor.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 队列指标开销基准测试
+ * <pre>
+ * 对比开启和关闭队列指标时索引队列的端到端吞吐量,关闭时应与未引入指标前一致
+ * 运行: mvn -Pjmh test-compile exec:exec -Djmh.args="QueueMetricsBenchmark"
+ * </pre>
+ * @author juebanlin
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueMetricsBenchmark {
+
+	public static final int BATCH = 1024;
+
+	@Param({"false", "true"})
+	public boolean metrics;
+
+	@Param({"4"})
+	public int threads;
+
+	@Param({"64"})
+	public int queueCount;
+
+	QueueGroupExecutors.Handle handle;
+
+	final AtomicLong done = new AtomicLong();
+	final Runnable task = done::incrementAndGet;
+	long expected;
+	int seq;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		handle = QueueGroupExecutors.build(QueueGroupExecutors.DEFAULT, threads, "DEFAULT", "sleeping", metrics);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		handle.shutdown();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@OperationsPerInvocation(BATCH)
+	public long throughput() {
+		for (int i = 0; i < BATCH; i++) {
+			handle.executor.execute((short) (seq++ % queueCount), task);
+		}
+		expected += BATCH;
+		while (done.get() < expected) {
+			Thread.yield();
+		}
+		return expected;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder().include(QueueMetricsBenchmark.class.getSimpleName()).build();
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,128 @@
+package net.jueb.util4j.queue.queueExecutor.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.QueueGroupExecutor;
+import net.jueb.util4j.queue.queueExecutor.queue.TaskTranslator;
+
+/**
+ * 索引队列投递的分配量对比
+ * lambda:每个任务创建一个捕获参数的Runnable;translator:静态TaskTranslator加参数投递.
+ * MPSC队列每次入队分配链表节点,RING队列写入预分配槽位,RING+translator在稳定状态下不分配.
+ * 使用GC profiler运行(main方法已添加),对比gc.alloc.rate.norm,结果为每个任务的分配字节数.
+ * 剩余的分配来自队列就绪时投递到主队列的调度,可配合Disruptor主队列消除.
+ * @author juebanlin
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskHandOffBenchmark {
+
+	public static final int BATCH = 1024;
+
+	static final TaskTranslator<Producer, Integer> HANDLE = Producer::handle;
+
+	@Param({"MPSC", "RING"})
+	public String queueFactory;
+
+	@Param({QueueGroupExecutors.BOSS_CLQ, QueueGroupExecutors.BOSS_DISRUPTOR})
+	public String bossQueue;
+
+	@Param({"4"})
+	public int threads;
+
+	@Param({"16"})
+	public int queueCount;
+
+	QueueGroupExecutors.Handle handle;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		handle = QueueGroupExecutors.build(QueueGroupExecutors.DEFAULT, threads, queueFactory, "parking", false,
+				bossQueue);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		handle.shutdown();
+	}
+
+	@State(Scope.Thread)
+	public static class Producer {
+		final AtomicLong done = new AtomicLong();
+		long expected;
+		int seq;
+		/**
+		 * 小整数走Integer缓存,参数装箱不分配
+		 */
+		final Integer arg = 1;
+
+		void handle(Integer value) {
+			done.addAndGet(value);
+		}
+
+		long await() {
+			expected += BATCH;
+			while (done.get() < expected) {
+				Thread.yield();
+			}
+			return expected;
+		}
+	}
+
+	@Benchmark
+	@Threads(2)
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@OperationsPerInvocation(BATCH)
+	public long lambda(Producer p) {
+		QueueGroupExecutor qe = handle.executor;
+		Integer arg = p.arg;
+		for (int i = 0; i < BATCH; i++) {
+			qe.execute((short) (p.seq++ % queueCount), () -> p.handle(arg));
+		}
+		return p.await();
+	}
+
+	@Benchmark
+	@Threads(2)
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@OperationsPerInvocation(BATCH)
+	public long translator(Producer p) {
+		QueueGroupExecutor qe = handle.executor;
+		for (int i = 0; i < BATCH; i++) {
+			qe.execute((short) (p.seq++ % queueCount), HANDLE, p, p.arg);
+		}
+		return p.await();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder().include(TaskHandOffBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class).build();
+		new Runner(opt).run();
+	}
+}
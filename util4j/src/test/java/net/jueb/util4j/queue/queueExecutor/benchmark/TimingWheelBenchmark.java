@@ -0,0 +1,110 @@
+package net.jueb.util4j.queue.queueExecutor.benchmark;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.jueb.util4j.queue.queueExecutor.timer.HierarchicalTimingWheel;
+import net.jueb.util4j.queue.queueExecutor.timer.QueueTimeout;
+
+/**
+ * 时间轮与ScheduledThreadPoolExecutor对比
+ * <pre>
+ * 预先挂起outstanding个1小时后到期的定时任务,
+ * scheduleCancel: 多个线程提交随机延迟(1~600秒)的定时任务后立即取消,模拟超时器的常见用法,
+ * 挂起数量保持不变,结果为每秒提交+取消的次数.
+ * ScheduledThreadPoolExecutor开启removeOnCancelPolicy,取消时从堆中移除.
+ * 运行: mvn -Pjmh test-compile exec:exec -Djmh.args="TimingWheelBenchmark -jvmArgs -Xmx4g"
+ * </pre>
+ * @author juebanlin
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TimingWheelBenchmark {
+
+	@Param({"wheel", "jdk"})
+	public String timer;
+
+	@Param({"1000000"})
+	public int outstanding;
+
+	HierarchicalTimingWheel wheel;
+	ScheduledThreadPoolExecutor jdk;
+
+	static final Runnable NOOP = () -> {
+	};
+	static final Executor DIRECT = Runnable::run;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		switch (timer) {
+		case "wheel":
+			wheel = new HierarchicalTimingWheel();
+			for (int i = 0; i < outstanding; i++) {
+				wheel.schedule(DIRECT, NOOP, 3600 + i % 600, TimeUnit.SECONDS);
+			}
+			break;
+		case "jdk":
+			jdk = new ScheduledThreadPoolExecutor(1);
+			jdk.setRemoveOnCancelPolicy(true);
+			for (int i = 0; i < outstanding; i++) {
+				jdk.schedule(NOOP, 3600 + i % 600, TimeUnit.SECONDS);
+			}
+			break;
+		default:
+			throw new IllegalArgumentException("unknown timer:" + timer);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (wheel != null) {
+			wheel.stop();
+		}
+		if (jdk != null) {
+			jdk.shutdownNow();
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	@Threads(4)
+	public boolean scheduleCancel() {
+		long delay = 1 + ThreadLocalRandom.current().nextInt(600);
+		if (wheel != null) {
+			QueueTimeout t = wheel.schedule(DIRECT, NOOP, delay, TimeUnit.SECONDS);
+			return t.cancel();
+		}
+		ScheduledFuture<?> f = jdk.schedule(NOOP, delay, TimeUnit.SECONDS);
+		return f.cancel(false);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder().include(TimingWheelBenchmark.class.getSimpleName()).build();
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,123 @@
+package net.jueb.util4j.queue.queueExecutor.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 工作线程等待策略基准测试
+ * <pre>
+ * wakeup: 执行器空闲idleMicros微秒后投递单个任务,SampleTime模式给出唤醒空闲线程的延迟分布
+ * idleCpu: 执行器完全空闲,每次调用测量10ms内进程消耗的CPU时间,
+ *          辅助计数cpuNanos的结果即空闲时平均占用的CPU核数(cpu纳秒/墙钟纳秒)
+ * 运行: mvn -Pjmh test-compile exec:exec -Djmh.args="WaitStrategyBenchmark"
+ * </pre>
+ * @author juebanlin
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WaitStrategyBenchmark {
+
+	public static final long IDLE_SAMPLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	@Param({"sleeping", "yielding", "busySpin", "blocking", "parking"})
+	public String waitStrategy;
+
+	@Param({"4"})
+	public int threads;
+
+	@Param({"0", "1000"})
+	public long idleMicros;
+
+	QueueGroupExecutors.Handle handle;
+
+	volatile boolean ran;
+	final Runnable ping = () -> ran = true;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		handle = QueueGroupExecutors.build(QueueGroupExecutors.DEFAULT, threads, "DEFAULT", waitStrategy);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		handle.shutdown();
+	}
+
+	/**
+	 * 每次投递之前让执行器空闲一段时间,使工作线程进入等待策略的深度等待阶段
+	 */
+	@Setup(Level.Invocation)
+	public void idle() {
+		if (idleMicros > 0) {
+			LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(idleMicros));
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public boolean wakeup() {
+		ran = false;
+		handle.executor.execute((short) 1, ping);
+		while (!ran) {
+			// 自旋等待任务开始执行
+		}
+		return ran;
+	}
+
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class CpuCounter {
+		/**
+		 * 进程消耗的CPU时间
+		 */
+		public long cpuNanos;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			cpuNanos = 0;
+		}
+	}
+
+	@SuppressWarnings("restriction")
+	static long processCpuNanos() {
+		return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+				.getProcessCpuTime();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public void idleCpu(CpuCounter counter) {
+		long begin = processCpuNanos();
+		LockSupport.parkNanos(IDLE_SAMPLE_NANOS);
+		counter.cpuNanos += processCpuNanos() - begin;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder().include(WaitStrategyBenchmark.class.getSimpleName()).build();
+		new Runner(opt).run();
+	}
+}
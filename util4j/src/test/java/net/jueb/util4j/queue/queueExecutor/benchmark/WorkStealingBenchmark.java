@@ -0,0 +1,105 @@
+package net.jueb.util4j.queue.queueExecutor.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.QueueGroupExecutor;
+
+/**
+ * 共享系统队列与工作窃取模式的扩展性对比
+ * 4个生产者线程往queueCount个索引队列投递任务,每个任务消耗work个CPU token,
+ * 工作线程数量从4到64,观察吞吐量随线程数的变化.
+ * @author juebanlin
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkStealingBenchmark {
+
+	public static final int BATCH = 1024;
+
+	@Param({QueueGroupExecutors.DEFAULT, QueueGroupExecutors.DEFAULT_WORK_STEALING})
+	public String executor;
+
+	@Param({"4", "8", "16", "32", "64"})
+	public int threads;
+
+	@Param({"1024"})
+	public int queueCount;
+
+	@Param({"100"})
+	public long work;
+
+	QueueGroupExecutors.Handle handle;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		handle = QueueGroupExecutors.build(executor, threads, "MPSC", "sleeping");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		handle.shutdown();
+	}
+
+	@State(Scope.Thread)
+	public static class Producer {
+		final AtomicLong done = new AtomicLong();
+		long expected;
+		int seq;
+		Runnable task;
+
+		@Setup(Level.Trial)
+		public void setup(WorkStealingBenchmark b) {
+			long tokens = b.work;
+			task = () -> {
+				Blackhole.consumeCPU(tokens);
+				done.incrementAndGet();
+			};
+		}
+	}
+
+	@Benchmark
+	@Threads(4)
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@OperationsPerInvocation(BATCH)
+	public long throughput(Producer p) {
+		QueueGroupExecutor qe = handle.executor;
+		for (int i = 0; i < BATCH; i++) {
+			qe.execute((short) (p.seq++ % queueCount), p.task);
+		}
+		p.expected += BATCH;
+		while (p.done.get() < p.expected) {
+			Thread.yield();
+		}
+		return p.expected;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder().include(WorkStealingBenchmark.class.getSimpleName()).build();
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,89 @@
+package net.jueb.util4j.test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import net.jueb.util4j.cache.map.ConcurrentLRUMap;
+import net.jueb.util4j.cache.map.LRULinkedHashMap;
+
+/**
+ * LRU缓存多线程读多写少吞吐
+ * 容量CAPACITY,热点键都在缓存中,键在容量范围内随机,各线程读取(默认99%),未命中或按比例写入,每种线程数运行seconds秒,输出每秒操作数和命中率.
+ * 运行参数:线程数列表 秒数 写入百分比,默认1,2,4,8,16 2 1.
+ * @author Administrator
+ */
+public class TestConcurrentLRUMap {
+
+	static final int CAPACITY=10000;
+	static final int KEYS=CAPACITY;
+
+	public static void main(String[] args) throws Exception {
+		String threads=args.length>0?args[0]:"1,2,4,8,16";
+		int seconds=args.length>1?Integer.parseInt(args[1]):2;
+		int writePercent=args.length>2?Integer.parseInt(args[2]):1;
+		System.out.println(String.format("%-18s %8s %16s %8s", "map", "threads", "ops/s", "hit"));
+		for(String t:threads.split(","))
+		{
+			int n=Integer.parseInt(t.trim());
+			run("LRULinkedHashMap", n, seconds, writePercent, ()->new LRULinkedHashMap<>(CAPACITY));
+			run("ConcurrentLRUMap", n, seconds, writePercent, ()->new ConcurrentLRUMap<>(CAPACITY));
+		}
+	}
+
+	static void run(String name,int threads,int seconds,int writePercent,Supplier<Map<Integer,Integer>> factory) throws Exception
+	{
+		Map<Integer,Integer> map=factory.get();
+		for(int i=0;i<CAPACITY;i++)
+		{
+			map.put(i, i);
+		}
+		LongAdder ops=new LongAdder();
+		LongAdder hits=new LongAdder();
+		CountDownLatch start=new CountDownLatch(1);
+		CountDownLatch end=new CountDownLatch(threads);
+		long[] deadline=new long[1];
+		for(int t=0;t<threads;t++)
+		{
+			new Thread(()->{
+				ThreadLocalRandom random=ThreadLocalRandom.current();
+				long count=0;
+				long hit=0;
+				try {
+					start.await();
+					while(System.nanoTime()<deadline[0])
+					{
+						for(int i=0;i<256;i++)
+						{
+							Integer key=random.nextInt(KEYS);
+							if(random.nextInt(100)<writePercent)
+							{
+								map.put(key, key);
+							}else if(map.get(key)!=null)
+							{
+								hit++;
+							}else
+							{
+								map.put(key, key);
+							}
+						}
+						count+=256;
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}finally {
+					ops.add(count);
+					hits.add(hit);
+					end.countDown();
+				}
+			}).start();
+		}
+		deadline[0]=System.nanoTime()+TimeUnit.SECONDS.toNanos(seconds);
+		start.countDown();
+		end.await();
+		System.out.println(String.format("%-18s %8d %,16d %7.2f%%", name, threads, ops.sum()/seconds, hits.sum()*100.0/ops.sum()));
+	}
+}
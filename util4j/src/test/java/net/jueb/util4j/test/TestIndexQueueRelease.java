@@ -0,0 +1,137 @@
+package net.jueb.util4j.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import net.jueb.util4j.queue.queueExecutor.QueueFactory;
+import net.jueb.util4j.queue.queueExecutor.executor.QueueExecutor;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.DefaultIndexQueueManager;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.DefaultQueueGroupExecutor;
+
+/**
+ * 索引队列释放时的顺序检查
+ * 释放线程不断释放空闲队列,每个索引由一个生产者按序号投递:
+ * 先取得队列引用,等该队列被释放后交替地先通过旧引用再通过索引,或者先通过索引再通过旧引用投递相邻的两个任务,
+ * 前者旧队列复活,后者旧队列的任务转交给新队列.
+ * 检查每个索引的任务按序号执行且没有并发执行,释放确实发生过.
+ * 分别使用默认队列和环形队列,环形队列转交的是取出的槽位.
+ * 检查失败抛出异常.
+ * @author juebanlin
+ */
+public class TestIndexQueueRelease {
+
+	static final int PRODUCERS=4;
+	static final int INDEXES_PER_PRODUCER=4;
+	static final int ROUNDS=2000;
+
+	public static void main(String[] args) throws Exception {
+		run("default", QueueFactory.DEFAULT_QUEUE_FACTORY);
+		run("ring", QueueFactory.ring(8));
+	}
+
+	static void run(String name,QueueFactory queueFactory) throws Exception
+	{
+		DefaultIndexQueueManager iqm=new DefaultIndexQueueManager.Builder().setQueueFactory(queueFactory).build();
+		DefaultQueueGroupExecutor qe=new DefaultQueueGroupExecutor.Builder()
+				.setCorePoolSize(4).setMaxPoolSize(4).setIndexQueueGroupManager(iqm).build();
+		int indexes=PRODUCERS*INDEXES_PER_PRODUCER;
+		AtomicIntegerArray last=new AtomicIntegerArray(indexes);
+		AtomicBoolean[] running=new AtomicBoolean[indexes];
+		for(int i=0;i<indexes;i++)
+		{
+			running[i]=new AtomicBoolean();
+		}
+		AtomicInteger errors=new AtomicInteger();
+		AtomicInteger staleRounds=new AtomicInteger();
+		CountDownLatch done=new CountDownLatch(indexes*ROUNDS*2);
+		AtomicBoolean stop=new AtomicBoolean();
+		Thread releaser=new Thread(()->{
+			while(!stop.get())
+			{
+				iqm.releaseIdleQueues();
+				Thread.yield();
+			}
+		});
+		releaser.start();
+		Thread[] producers=new Thread[PRODUCERS];
+		for(int p=0;p<PRODUCERS;p++)
+		{
+			final int first=p*INDEXES_PER_PRODUCER;
+			producers[p]=new Thread(()->{
+				for(int round=0;round<ROUNDS;round++)
+				{
+					for(int i=0;i<INDEXES_PER_PRODUCER;i++)
+					{
+						int index=first+i;
+						QueueExecutor old=iqm.getQueueExecutor((short)index);
+						long deadline=System.nanoTime()+TimeUnit.MILLISECONDS.toNanos(5);
+						while(iqm.hasQueueExecutor((short)index) && System.nanoTime()<deadline)
+						{//等待释放线程释放该队列
+							Thread.yield();
+						}
+						if(!iqm.hasQueueExecutor((short)index))
+						{
+							staleRounds.incrementAndGet();
+						}
+						int seq=round*2+1;
+						if((round & 1)==0)
+						{
+							old.execute(newTask(index, seq, last, running, errors, done));
+							qe.execute((short)index, newTask(index, seq+1, last, running, errors, done));
+						}else
+						{
+							qe.execute((short)index, newTask(index, seq, last, running, errors, done));
+							old.execute(newTask(index, seq+1, last, running, errors, done));
+						}
+					}
+				}
+			});
+			producers[p].start();
+		}
+		for(Thread t:producers)
+		{
+			t.join();
+		}
+		boolean finished=done.await(30, TimeUnit.SECONDS);
+		stop.set(true);
+		releaser.join();
+		qe.shutdown();
+		check(finished, "任务未全部执行,剩余:"+done.getCount());
+		check(errors.get()==0, "顺序错误或并发执行:"+errors.get());
+		for(int i=0;i<indexes;i++)
+		{
+			check(last.get(i)==ROUNDS*2, "索引"+i+"最后序号:"+last.get(i));
+		}
+		check(staleRounds.get()>0, "没有通过已释放的队列投递");
+		System.out.println("TestIndexQueueRelease "+name+" ok,staleRounds="+staleRounds.get());
+	}
+
+	static Runnable newTask(int index,int seq,AtomicIntegerArray last,AtomicBoolean[] running,AtomicInteger errors,CountDownLatch done)
+	{
+		return ()->{
+			if(!running[index].compareAndSet(false, true))
+			{
+				errors.incrementAndGet();
+			}
+			if(last.get(index)!=seq-1)
+			{
+				errors.incrementAndGet();
+			}
+			last.set(index, seq);
+			Thread.yield();//拉长执行时间,新旧队列并发执行时更容易被发现
+			running[index].set(false);
+			done.countDown();
+		};
+	}
+
+	static void check(boolean ok,String msg)
+	{
+		if(!ok)
+		{
+			throw new IllegalStateException(msg);
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package net.jueb.util4j.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import net.jueb.util4j.queue.queueExecutor.QueueFactory;
+import net.jueb.util4j.queue.queueExecutor.executor.QueueExecutor;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.DefaultKeyQueueManager;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.DefaultQueueGroupExecutor;
+
+/**
+ * 键值队列回收时的顺序检查
+ * 回收线程不断回收空闲队列,每个key由一个生产者按序号投递相邻的两个任务,三种方式轮换:
+ * 等该队列被回收后先通过旧引用再通过key投递(旧队列复活);
+ * 等该队列被回收后先通过key再通过旧引用投递(旧队列的任务转交给新队列);
+ * 不等待直接先通过旧引用再通过key投递,与正在进行的回收竞争.
+ * 检查每个key的任务按序号执行且没有并发执行,回收确实发生过.
+ * 分别使用默认队列和环形队列,环形队列转交的是取出的槽位.
+ * 检查失败抛出异常.
+ * @author juebanlin
+ */
+public class TestKeyQueueEvict {
+
+	static final int PRODUCERS=4;
+	static final int KEYS_PER_PRODUCER=4;
+	static final int ROUNDS=3000;
+
+	public static void main(String[] args) throws Exception {
+		run("default", QueueFactory.DEFAULT_QUEUE_FACTORY);
+		run("ring", QueueFactory.ring(8));
+	}
+
+	static void run(String name,QueueFactory queueFactory) throws Exception
+	{
+		DefaultKeyQueueManager kqm=new DefaultKeyQueueManager(queueFactory);
+		kqm.setIdleTimeout(1, TimeUnit.MILLISECONDS);
+		DefaultQueueGroupExecutor qe=new DefaultQueueGroupExecutor.Builder()
+				.setCorePoolSize(4).setMaxPoolSize(4).setKeyQueueGroupManagerr(kqm).build();
+		int keys=PRODUCERS*KEYS_PER_PRODUCER;
+		AtomicIntegerArray last=new AtomicIntegerArray(keys);
+		AtomicBoolean[] running=new AtomicBoolean[keys];
+		for(int i=0;i<keys;i++)
+		{
+			running[i]=new AtomicBoolean();
+		}
+		AtomicInteger errors=new AtomicInteger();
+		AtomicInteger staleRounds=new AtomicInteger();
+		CountDownLatch done=new CountDownLatch(keys*ROUNDS*2);
+		AtomicBoolean stop=new AtomicBoolean();
+		Thread evictor=new Thread(()->{
+			while(!stop.get())
+			{
+				kqm.cleanIdleQueues();
+				Thread.yield();
+			}
+		});
+		evictor.start();
+		Thread[] producers=new Thread[PRODUCERS];
+		for(int p=0;p<PRODUCERS;p++)
+		{
+			final int first=p*KEYS_PER_PRODUCER;
+			producers[p]=new Thread(()->{
+				for(int round=0;round<ROUNDS;round++)
+				{
+					for(int i=0;i<KEYS_PER_PRODUCER;i++)
+					{
+						int index=first+i;
+						String key="key"+index;
+						QueueExecutor old=kqm.getQueueExecutor(key);
+						int mode=round%3;
+						if(mode==2)
+						{//等到队列接近可回收,与回收线程竞争
+							long until=System.nanoTime()+TimeUnit.MICROSECONDS.toNanos(900+(round%5)*100);
+							while(System.nanoTime()<until)
+							{
+								Thread.yield();
+							}
+						}else
+						{
+							long deadline=System.nanoTime()+TimeUnit.MILLISECONDS.toNanos(5);
+							while(kqm.hasQueueExecutor(key) && System.nanoTime()<deadline)
+							{//等待回收线程回收该队列
+								Thread.yield();
+							}
+							if(!kqm.hasQueueExecutor(key))
+							{
+								staleRounds.incrementAndGet();
+							}
+						}
+						int seq=round*2+1;
+						if(mode==1)
+						{
+							qe.execute(key, newTask(index, seq, last, running, errors, done));
+							old.execute(newTask(index, seq+1, last, running, errors, done));
+						}else
+						{
+							old.execute(newTask(index, seq, last, running, errors, done));
+							qe.execute(key, newTask(index, seq+1, last, running, errors, done));
+						}
+					}
+				}
+			});
+			producers[p].start();
+		}
+		for(Thread t:producers)
+		{
+			t.join();
+		}
+		boolean finished=done.await(30, TimeUnit.SECONDS);
+		stop.set(true);
+		evictor.join();
+		qe.shutdown();
+		check(finished, "任务未全部执行,剩余:"+done.getCount());
+		check(errors.get()==0, "顺序错误或并发执行:"+errors.get());
+		for(int i=0;i<keys;i++)
+		{
+			check(last.get(i)==ROUNDS*2, "key"+i+"最后序号:"+last.get(i));
+		}
+		check(staleRounds.get()>0, "没有通过已回收的队列投递");
+		System.out.println("TestKeyQueueEvict "+name+" ok,staleRounds="+staleRounds.get()+",evicted="+kqm.getEvictedQueueCount());
+	}
+
+	static Runnable newTask(int index,int seq,AtomicIntegerArray last,AtomicBoolean[] running,AtomicInteger errors,CountDownLatch done)
+	{
+		return ()->{
+			if(!running[index].compareAndSet(false, true))
+			{
+				errors.incrementAndGet();
+			}
+			if(last.get(index)!=seq-1)
+			{
+				errors.incrementAndGet();
+			}
+			last.set(index, seq);
+			Thread.yield();//拉长执行时间,新旧队列并发执行时更容易被发现
+			running[index].set(false);
+			done.countDown();
+		};
+	}
+
+	static void check(boolean ok,String msg)
+	{
+		if(!ok)
+		{
+			throw new IllegalStateException(msg);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package net.jueb.util4j.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.jueb.util4j.queue.queueExecutor.executor.QueueBound;
+import net.jueb.util4j.queue.queueExecutor.executor.QueueBound.OverflowPolicy;
+import net.jueb.util4j.queue.queueExecutor.executor.QueueExecutor;
+import net.jueb.util4j.queue.queueExecutor.executor.QueueFutureTask;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.DefaultIndexQueueManager;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.DefaultQueueGroupExecutor;
+import net.jueb.util4j.queue.queueExecutor.queue.RingRunnableQueue;
+import net.jueb.util4j.queue.queueExecutor.queue.TaskTranslator;
+
+/**
+ * RingRunnableQueue槽位检查
+ * 1.detach转换后的任务在槽位归还并被覆盖后仍执行原来的逻辑.
+ * 2.环形队列作为DROP_OLDEST队列时,被丢弃的带结果任务以RejectedExecutionException完成,其余正常完成.
+ * 检查失败抛出异常.
+ * @author juebanlin
+ */
+public class TestRingRunnableQueue {
+
+	static final TaskTranslator<StringBuilder,String> APPEND=(sb,s)->sb.append(s);
+
+	public static void main(String[] args) throws Exception {
+		testDetach();
+		testDropOldestFuture();
+		System.out.println("TestRingRunnableQueue ok");
+	}
+
+	static void testDetach()
+	{
+		RingRunnableQueue queue=new RingRunnableQueue(2);
+		StringBuilder sb=new StringBuilder();
+		queue.offer(()->sb.append("a"));
+		queue.offer(APPEND, sb, "b");
+		Runnable a=RingRunnableQueue.detach(queue.poll());
+		Runnable b=RingRunnableQueue.detach(queue.poll());
+		//两个槽位都归还并写入新任务
+		queue.offer(()->sb.append("x"));
+		queue.offer(APPEND, sb, "y");
+		queue.poll();
+		a.run();
+		b.run();
+		check("ab".equals(sb.toString()), "转换后的任务应保持原逻辑:"+sb);
+		Runnable plain=()->{};
+		check(RingRunnableQueue.detach(plain)==plain, "非槽位任务应原样返回");
+	}
+
+	static void testDropOldestFuture() throws Exception
+	{
+		QueueBound bound=new QueueBound.Builder(4).setPolicy(OverflowPolicy.DROP_OLDEST).build();
+		DefaultIndexQueueManager iqm=new DefaultIndexQueueManager.Builder().setRingQueueFactory(8).setQueueBound(bound).build();
+		DefaultQueueGroupExecutor qe=new DefaultQueueGroupExecutor.Builder()
+				.setCorePoolSize(1).setMaxPoolSize(1).setIndexQueueGroupManager(iqm).build();
+		QueueExecutor queue=iqm.getQueueExecutor((short)1);
+		CountDownLatch block=new CountDownLatch(1);
+		queue.execute(()->{
+			try {
+				block.await();
+			} catch (InterruptedException e) {
+			}
+		});
+		List<CompletableFuture<Integer>> futures=new ArrayList<>();
+		for(int i=0;i<20;i++)
+		{
+			final int v=i;
+			futures.add(QueueFutureTask.submit(queue, ()->v));
+		}
+		block.countDown();
+		int done=0;
+		int rejected=0;
+		for(CompletableFuture<Integer> f:futures)
+		{
+			try {
+				f.get(5, TimeUnit.SECONDS);
+				done++;
+			} catch (ExecutionException e) {
+				check(e.getCause() instanceof RejectedExecutionException, "丢弃的任务应以RejectedExecutionException完成:"+e.getCause());
+				rejected++;
+			} catch (TimeoutException e) {
+				throw new IllegalStateException("被丢弃的任务没有完成", e);
+			}
+		}
+		qe.shutdown();
+		check(rejected>0 && done>0 && done+rejected==futures.size(), "done="+done+",rejected="+rejected);
+	}
+
+	static void check(boolean ok,String msg)
+	{
+		if(!ok)
+		{
+			throw new IllegalStateException(msg);
+		}
+	}
+}
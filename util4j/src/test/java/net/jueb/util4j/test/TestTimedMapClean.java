@@ -0,0 +1,86 @@
+package net.jueb.util4j.test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.jueb.util4j.cache.map.TimedMapImpl;
+
+/**
+ * TimedMapImpl清理耗时和写入阻塞
+ * 每种规模先写入size个键值对,其中expirePercent%在短时间后过期,其余1小时后过期,
+ * 然后一个线程循环覆盖写入一组不过期的键,同时执行一次cleanExpire,记录清理耗时和清理期间单次put的最大耗时.
+ * 再执行一次没有到期键值对的cleanExpire,对比空清理的开销.
+ * 运行参数建议-Xmx4g,默认规模100000,1000000,5000000.
+ * @author Administrator
+ */
+public class TestTimedMapClean {
+
+	static final long LONG_TTL=TimeUnit.HOURS.toMillis(1);
+	static final long SHORT_TTL=50;
+
+	public static void main(String[] args) throws Exception {
+		int expirePercent=args.length>1?Integer.parseInt(args[1]):1;
+		String sizes=args.length>0?args[0]:"100000,1000000,5000000";
+		for(String s:sizes.split(","))
+		{
+			run(Integer.parseInt(s.trim()), expirePercent);
+			System.gc();
+		}
+	}
+
+	static void run(int size,int expirePercent) throws Exception
+	{
+		TimedMapImpl<Integer,Integer> map=new TimedMapImpl<>(Runnable::run, false);
+		int expireStep=expirePercent>0?100/expirePercent:Integer.MAX_VALUE;
+		for(int i=0;i<size;i++)
+		{
+			map.put(i, i, i%expireStep==0?SHORT_TTL:LONG_TTL);
+		}
+		Thread.sleep(SHORT_TTL+TimedMapImpl.EXPIRE_TICK_MILLIS*2);
+		Writer writer=new Writer(map, size);
+		Thread thread=new Thread(writer, "writer");
+		thread.start();
+		Thread.sleep(100);//写入线程预热
+		writer.maxNanos=0;
+		long start=System.nanoTime();
+		Map<Integer,Integer> removed=map.cleanExpire();
+		long cleanNanos=System.nanoTime()-start;
+		long stall=writer.maxNanos;
+		start=System.nanoTime();
+		map.cleanExpire();
+		long idleNanos=System.nanoTime()-start;
+		writer.running=false;
+		thread.join();
+		System.out.println(String.format("size=%,d expired=%,d clean=%.2fms idleClean=%.3fms writerMaxStall=%.2fms writes=%,d",
+				size, removed.size(), cleanNanos/1e6, idleNanos/1e6, stall/1e6, writer.count));
+	}
+
+	static class Writer implements Runnable{
+		final TimedMapImpl<Integer,Integer> map;
+		final int base;
+		volatile boolean running=true;
+		volatile long maxNanos;
+		long count;
+
+		Writer(TimedMapImpl<Integer,Integer> map,int base) {
+			this.map=map;
+			this.base=base;
+		}
+
+		@Override
+		public void run() {
+			int key=0;
+			while(running)
+			{
+				long t=System.nanoTime();
+				map.put(base+(key++&0xffff), key, LONG_TTL);
+				t=System.nanoTime()-t;
+				if(t>maxNanos)
+				{
+					maxNanos=t;
+				}
+				count++;
+			}
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package net.jueb.util4j.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import net.jueb.util4j.cache.map.TimedMap.EventListener;
+import net.jueb.util4j.cache.map.TimedMapImpl;
+
+/**
+ * TimedMapImpl过期行为检查
+ * 1.到期的键值对被cleanExpire清理并触发监听器,未到期和永不过期的保留.
+ * 2.访问过的键值对在原过期时间之后的清理中重新入桶,不被清理,到新的过期时间后才被清理.
+ * 3.containsKey/get遇到已过期未清理的键值对返回不存在并移除.
+ * 检查失败抛出异常.
+ * @author Administrator
+ */
+public class TestTimedMapExpire {
+
+	static final long TTL=500;
+	static final long TICK=TimedMapImpl.EXPIRE_TICK_MILLIS;
+
+	public static void main(String[] args) throws Exception {
+		testExpire();
+		testRebucket();
+		testContainsKey();
+		System.out.println("TestTimedMapExpire ok");
+	}
+
+	static void testExpire() throws Exception
+	{
+		TimedMapImpl<String,String> map=new TimedMapImpl<>(Runnable::run, false);
+		Recorder recorder=new Recorder();
+		map.put("short", "1", TTL, recorder);
+		map.put("long", "2", TTL*100, recorder);
+		map.put("forever", "3", 0, recorder);
+		check(map.cleanExpire().isEmpty(), "未到期不应清理");
+		check(map.containsKey("short"), "未到期应存在");
+		Thread.sleep(TTL+TICK*2);
+		Map<String,String> removed=map.cleanExpire();
+		check(removed.size()==1 && "1".equals(removed.get("short")), "应只清理short:"+removed);
+		check(recorder.keys.size()==1 && recorder.keys.get(0).equals("short") && recorder.expires.get(0), "监听器应收到short超时移除:"+recorder.keys);
+		check(map.size()==2 && map.containsKey("long") && map.containsKey("forever"), "long和forever应保留");
+	}
+
+	static void testRebucket() throws Exception
+	{
+		TimedMapImpl<String,String> map=new TimedMapImpl<>(Runnable::run, false);
+		Recorder recorder=new Recorder();
+		long start=System.currentTimeMillis();
+		map.put("k", "v", TTL, recorder);
+		sleepUntil(start+TTL*3/5);
+		check("v".equals(map.get("k")), "访问时应存在");//过期时间延后到start+TTL*8/5
+		sleepUntil(start+TTL+TICK*2);
+		Map<String,String> removed=map.cleanExpire();
+		check(removed.isEmpty() && map.size()==1, "访问过的键值对在原过期时间后不应被清理:"+removed);
+		check(recorder.keys.isEmpty(), "不应触发监听器");
+		sleepUntil(start+TTL*8/5+TICK*2);
+		removed=map.cleanExpire();
+		check(removed.size()==1 && map.size()==0, "重新入桶后应在新的过期时间被清理:"+removed);
+		check(recorder.keys.size()==1 && recorder.expires.get(0), "监听器应收到超时移除");
+	}
+
+	static void testContainsKey() throws Exception
+	{
+		TimedMapImpl<String,String> map=new TimedMapImpl<>(Runnable::run, false);
+		Recorder recorder=new Recorder();
+		map.put("k", "v", TTL, recorder);
+		check(map.containsKey("k"), "未到期应存在");
+		Thread.sleep(TTL+TICK);
+		check(map.size()==1, "未清理前size包含过期键值对");
+		check(!map.containsKey("k"), "过期后containsKey应返回false");
+		check(map.size()==0, "containsKey发现过期应移除");
+		check(recorder.keys.size()==1 && recorder.expires.get(0), "监听器应收到超时移除");
+		check(map.get("k")==null, "移除后get应返回null");
+		check(map.cleanExpire().isEmpty() && recorder.keys.size()==1, "已移除的键值对不应再次清理");
+	}
+
+	static void sleepUntil(long time) throws InterruptedException
+	{
+		long wait=time-System.currentTimeMillis();
+		if(wait>0)
+		{
+			Thread.sleep(wait);
+		}
+	}
+
+	static void check(boolean ok,String msg)
+	{
+		if(!ok)
+		{
+			throw new IllegalStateException(msg);
+		}
+	}
+
+	static class Recorder implements EventListener<String,String>{
+		final List<String> keys=new ArrayList<>();
+		final List<Boolean> expires=new ArrayList<>();
+
+		@Override
+		public synchronized void removed(String key, String value, boolean expire) {
+			keys.add(key);
+			expires.add(expire);
+		}
+	}
+}
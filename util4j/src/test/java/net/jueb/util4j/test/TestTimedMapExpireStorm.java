@@ -0,0 +1,103 @@
+package net.jueb.util4j.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.jueb.util4j.cache.map.ExpireEventDispatcher;
+import net.jueb.util4j.cache.map.TimedMap.BatchEventListener;
+import net.jueb.util4j.cache.map.TimedMapImpl;
+import net.jueb.util4j.queue.queueExecutor.groupExecutor.impl.DefaultQueueGroupExecutor;
+
+/**
+ * 大量键值对同时过期时的事件派发
+ * 写入count个同时过期的键值对,执行一次cleanExpire,统计清理耗时,全部事件回调完成的耗时,监听器回调次数和所有线程的分配量.
+ * 分别对比逐个派发,批量派发到线程池,按键路由到key队列的批量派发.
+ * 运行参数:数量,默认100000.
+ * @author Administrator
+ */
+public class TestTimedMapExpireStorm {
+
+	static final int QUEUES=8;
+	static final String[] QUEUE_NAMES=new String[QUEUES];
+	static {
+		for(int i=0;i<QUEUES;i++)
+		{
+			QUEUE_NAMES[i]="expire-"+i;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int count=args.length>0?Integer.parseInt(args[0]):100000;
+		for(int round=0;round<3;round++)
+		{
+			ExecutorService pool=Executors.newFixedThreadPool(2);
+			run("single", count, new ExpireEventDispatcher<>(pool));
+			run("batch", count, new ExpireEventDispatcher<>(pool, ExpireEventDispatcher.DEFAULT_BATCH_SIZE, 8192));
+			pool.shutdown();
+			DefaultQueueGroupExecutor group=new DefaultQueueGroupExecutor(2, 2);
+			run("ordered", count, new ExpireEventDispatcher<Integer,Integer>(group, k->QUEUE_NAMES[k&(QUEUES-1)], ExpireEventDispatcher.DEFAULT_BATCH_SIZE, 8192));
+			group.shutdown();
+			System.out.println();
+		}
+	}
+
+	static class Listener implements BatchEventListener<Integer, Integer>{
+		final LongAdder events=new LongAdder();
+		final LongAdder callbacks=new LongAdder();
+		@Override
+		public void removed(Integer key, Integer value, boolean expire) {
+			callbacks.increment();
+			events.increment();
+		}
+
+		@Override
+		public void removed(List<Map.Entry<Integer, Integer>> entries, boolean expire) {
+			callbacks.increment();
+			events.add(entries.size());
+		}
+	}
+
+	static void run(String name,int count,ExpireEventDispatcher<Integer,Integer> dispatcher) throws Exception
+	{
+		TimedMapImpl<Integer,Integer> map=new TimedMapImpl<>(dispatcher, false);
+		Listener listener=new Listener();
+		for(int i=0;i<count;i++)
+		{
+			map.put(i, i, 10, listener);
+		}
+		Thread.sleep(10+TimedMapImpl.EXPIRE_TICK_MILLIS*2);
+		long bytes=allocatedBytes();
+		long start=System.nanoTime();
+		map.cleanExpire();
+		long cleanNanos=System.nanoTime()-start;
+		while(listener.events.sum()<count)
+		{
+			Thread.sleep(1);
+		}
+		long doneNanos=System.nanoTime()-start;
+		bytes=allocatedBytes()-bytes;
+		System.out.println(String.format("%-8s clean=%7.2fms delivered=%7.2fms callbacks=%,8d allocated=%,6dKB",
+				name, cleanNanos/1e6, doneNanos/1e6, listener.callbacks.sum(), bytes/1024));
+		TimeUnit.MILLISECONDS.sleep(50);
+	}
+
+	static long allocatedBytes()
+	{
+		com.sun.management.ThreadMXBean mx=(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long sum=0;
+		for(long id:mx.getAllThreadIds())
+		{
+			long b=mx.getThreadAllocatedBytes(id);
+			if(b>0)
+			{
+				sum+=b;
+			}
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,124 @@
+package net.jueb.util4j.test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import net.jueb.util4j.cache.map.AssistTimedMapImpl;
+import net.jueb.util4j.cache.map.ConcurrentAssistTimedMapImpl;
+import net.jueb.util4j.cache.map.ConcurrentTimedMapImpl;
+import net.jueb.util4j.cache.map.TimedMapImpl;
+
+/**
+ * 生命周期map多线程吞吐
+ * 预先写入keys个键值对,各线程随机读写(默认读80%,写20%),每种线程数运行seconds秒,输出每秒操作数.
+ * 运行参数:线程数列表 秒数 写入百分比,默认1,2,4,8,16,32 2 20.
+ * @author Administrator
+ */
+public class TestTimedMapThroughput {
+
+	static final int KEYS=100000;
+	static final long TTL=TimeUnit.HOURS.toMillis(1);
+
+	interface TtlMap{
+		void put(Integer key,Integer value,long ttl);
+		Integer get(Integer key);
+	}
+
+	public static void main(String[] args) throws Exception {
+		String threads=args.length>0?args[0]:"1,2,4,8,16,32";
+		int seconds=args.length>1?Integer.parseInt(args[1]):2;
+		int writePercent=args.length>2?Integer.parseInt(args[2]):20;
+		System.out.println(String.format("%-28s %8s %16s", "map", "threads", "ops/s"));
+		for(String t:threads.split(","))
+		{
+			int n=Integer.parseInt(t.trim());
+			run("TimedMapImpl", n, seconds, writePercent, ()->{
+				TimedMapImpl<Integer,Integer> m=new TimedMapImpl<>(Runnable::run, false);
+				return adapt(m, m::put);
+			});
+			run("ConcurrentTimedMapImpl", n, seconds, writePercent, ()->{
+				ConcurrentTimedMapImpl<Integer,Integer> m=new ConcurrentTimedMapImpl<>(Runnable::run, false);
+				return adapt(m, m::put);
+			});
+			run("AssistTimedMapImpl", n, seconds, writePercent, ()->{
+				AssistTimedMapImpl<Integer,Integer> m=new AssistTimedMapImpl<>(Runnable::run, false);
+				return adapt(m, m::put);
+			});
+			run("ConcurrentAssistTimedMapImpl", n, seconds, writePercent, ()->{
+				ConcurrentAssistTimedMapImpl<Integer,Integer> m=new ConcurrentAssistTimedMapImpl<>(Runnable::run, false);
+				return adapt(m, m::put);
+			});
+		}
+	}
+
+	interface Put{
+		Integer put(Integer key,Integer value,long ttl);
+	}
+
+	static TtlMap adapt(Map<Integer,Integer> map,Put put)
+	{
+		return new TtlMap() {
+			@Override
+			public void put(Integer key, Integer value, long ttl) {
+				put.put(key, value, ttl);
+			}
+
+			@Override
+			public Integer get(Integer key) {
+				return map.get(key);
+			}
+		};
+	}
+
+	static void run(String name,int threads,int seconds,int writePercent,Supplier<TtlMap> factory) throws Exception
+	{
+		TtlMap map=factory.get();
+		for(int i=0;i<KEYS;i++)
+		{
+			map.put(i, i, TTL);
+		}
+		LongAdder ops=new LongAdder();
+		CountDownLatch start=new CountDownLatch(1);
+		CountDownLatch end=new CountDownLatch(threads);
+		long deadline[]=new long[1];
+		for(int t=0;t<threads;t++)
+		{
+			Thread thread=new Thread(()->{
+				ThreadLocalRandom random=ThreadLocalRandom.current();
+				long count=0;
+				try {
+					start.await();
+					while(System.nanoTime()<deadline[0])
+					{
+						for(int i=0;i<256;i++)
+						{
+							Integer key=random.nextInt(KEYS);
+							if(random.nextInt(100)<writePercent)
+							{
+								map.put(key, key, TTL);
+							}else
+							{
+								map.get(key);
+							}
+						}
+						count+=256;
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}finally {
+					ops.add(count);
+					end.countDown();
+				}
+			});
+			thread.start();
+		}
+		deadline[0]=System.nanoTime()+TimeUnit.SECONDS.toNanos(seconds);
+		start.countDown();
+		end.await();
+		System.out.println(String.format("%-28s %8d %,16d", name, threads, ops.sum()/seconds));
+	}
+}
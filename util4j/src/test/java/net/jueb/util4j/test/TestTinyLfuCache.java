@@ -0,0 +1,224 @@
+package net.jueb.util4j.test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.jueb.util4j.cache.map.LRUCache;
+import net.jueb.util4j.cache.map.LRULinkedHashMap;
+import net.jueb.util4j.cache.map.TinyLfuCache;
+
+/**
+ * 有容量上限的缓存命中率和吞吐对比
+ * 命中率:按Zipf分布生成访问序列,未命中时写入,统计TinyLfuCache,LRUCache,LRULinkedHashMap的命中率.
+ * 另外在Zipf访问中混入一段顺序扫描,观察扫描对命中率的影响.
+ * 吞吐:多线程按同一Zipf序列读取,未命中时写入,输出每秒操作数.
+ * LRUCache每次淘汰遍历全部键值对,容量较大时很慢,序列长度不宜过大.
+ * @author Administrator
+ */
+public class TestTinyLfuCache {
+
+	static final int ITEMS=100000;
+
+	interface Cache{
+		Integer get(Integer key);
+		void put(Integer key,Integer value);
+	}
+
+	public static void main(String[] args) throws Exception {
+		int length=args.length>0?Integer.parseInt(args[0]):200000;
+		int seconds=args.length>1?Integer.parseInt(args[1]):2;
+		System.out.println(String.format("%-8s %-6s %8s %10s %10s %16s", "trace", "skew", "capacity", "TinyLfu", "LRUCache", "LRULinkedHashMap"));
+		for(double skew:new double[]{0.8,0.99})
+		{
+			Integer[] trace=zipf(ITEMS, skew, length, 1);
+			Integer[] scan=withScan(trace, ITEMS);
+			for(int capacity:new int[]{100,1000,5000})
+			{
+				report("zipf", skew, capacity, trace);
+				report("zipf+scan", skew, capacity, scan);
+			}
+		}
+		Integer[] trace=zipf(ITEMS, 0.99, 1<<20, 2);
+		System.out.println();
+		System.out.println(String.format("%-18s %8s %16s", "cache", "threads", "ops/s"));
+		for(int threads:new int[]{1,2,4,8})
+		{
+			throughput("TinyLfuCache", threads, seconds, trace, tinyLfu(1000));
+			throughput("LRUCache", threads, seconds, trace, lruCache(1000));
+			throughput("LRULinkedHashMap", threads, seconds, trace, lruLinkedHashMap(1000));
+		}
+	}
+
+	static Cache tinyLfu(int capacity)
+	{
+		TinyLfuCache<Integer,Integer> cache=new TinyLfuCache<>(capacity);
+		return new Cache() {
+			@Override
+			public Integer get(Integer key) {
+				return cache.get(key);
+			}
+			@Override
+			public void put(Integer key, Integer value) {
+				cache.put(key, value);
+			}
+		};
+	}
+
+	static Cache lruCache(int capacity)
+	{
+		LRUCache<Integer,Integer> cache=new LRUCache<>(capacity);
+		return new Cache() {
+			@Override
+			public Integer get(Integer key) {
+				return cache.get(key);
+			}
+			@Override
+			public void put(Integer key, Integer value) {
+				cache.put(key, value);
+			}
+		};
+	}
+
+	static Cache lruLinkedHashMap(int capacity)
+	{
+		LRULinkedHashMap<Integer,Integer> cache=new LRULinkedHashMap<>(capacity);
+		return new Cache() {
+			@Override
+			public Integer get(Integer key) {
+				return cache.get(key);
+			}
+			@Override
+			public void put(Integer key, Integer value) {
+				cache.put(key, value);
+			}
+		};
+	}
+
+	static void report(String name,double skew,int capacity,Integer[] trace)
+	{
+		System.out.println(String.format("%-8s %-6.2f %8d %9.2f%% %9.2f%% %15.2f%%", name, skew, capacity,
+				hitRate(tinyLfu(capacity), trace)*100, hitRate(lruCache(capacity), trace)*100, hitRate(lruLinkedHashMap(capacity), trace)*100));
+	}
+
+	static double hitRate(Cache cache,Integer[] trace)
+	{
+		long hit=0;
+		for(Integer key:trace)
+		{
+			if(cache.get(key)!=null)
+			{
+				hit++;
+			}else
+			{
+				cache.put(key, key);
+			}
+		}
+		return (double)hit/trace.length;
+	}
+
+	/**
+	 * Zipf分布的访问序列,排名打乱后映射为键
+	 */
+	static Integer[] zipf(int items,double skew,int length,long seed)
+	{
+		double[] cdf=new double[items];
+		double sum=0;
+		for(int i=0;i<items;i++)
+		{
+			sum+=1/Math.pow(i+1, skew);
+			cdf[i]=sum;
+		}
+		Random random=new Random(seed);
+		int[] keys=new int[items];
+		for(int i=0;i<items;i++)
+		{
+			keys[i]=i;
+		}
+		for(int i=items-1;i>0;i--)
+		{
+			int j=random.nextInt(i+1);
+			int t=keys[i];
+			keys[i]=keys[j];
+			keys[j]=t;
+		}
+		Integer[] trace=new Integer[length];
+		for(int i=0;i<length;i++)
+		{
+			double u=random.nextDouble()*sum;
+			int rank=java.util.Arrays.binarySearch(cdf, u);
+			if(rank<0)
+			{
+				rank=-rank-1;
+			}
+			trace[i]=keys[Math.min(rank, items-1)];
+		}
+		return trace;
+	}
+
+	/**
+	 * 在序列中间插入一段只访问一次的顺序扫描
+	 */
+	static Integer[] withScan(Integer[] trace,int scanBase)
+	{
+		int scan=trace.length/4;
+		Integer[] result=new Integer[trace.length+scan];
+		int half=trace.length/2;
+		System.arraycopy(trace, 0, result, 0, half);
+		for(int i=0;i<scan;i++)
+		{
+			result[half+i]=scanBase+i;
+		}
+		System.arraycopy(trace, half, result, half+scan, trace.length-half);
+		return result;
+	}
+
+	static void throughput(String name,int threads,int seconds,Integer[] trace,Cache cache) throws Exception
+	{
+		for(int i=0;i<trace.length;i++)
+		{
+			if(cache.get(trace[i])==null)
+			{
+				cache.put(trace[i], trace[i]);
+			}
+		}
+		LongAdder ops=new LongAdder();
+		CountDownLatch start=new CountDownLatch(1);
+		CountDownLatch end=new CountDownLatch(threads);
+		long[] deadline=new long[1];
+		int mask=trace.length-1;
+		for(int t=0;t<threads;t++)
+		{
+			final int offset=t*(trace.length/threads);
+			new Thread(()->{
+				long count=0;
+				int index=offset;
+				try {
+					start.await();
+					while(System.nanoTime()<deadline[0])
+					{
+						for(int i=0;i<256;i++)
+						{
+							Integer key=trace[index++ & mask];
+							if(cache.get(key)==null)
+							{
+								cache.put(key, key);
+							}
+						}
+						count+=256;
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}finally {
+					ops.add(count);
+					end.countDown();
+				}
+			}).start();
+		}
+		deadline[0]=System.nanoTime()+TimeUnit.SECONDS.toNanos(seconds);
+		start.countDown();
+		end.await();
+		System.out.println(String.format("%-18s %8d %,16d", name, threads, ops.sum()/seconds));
+	}
+}